@@ -1,12 +1,27 @@
 package kr.co.g2e.utils.cache;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
 
 /**
  * 캐시구현체가 상속받아야 하는 추상 클래스
  */
 public abstract class AbstractCache {
 
+	/**
+	 * 비동기 요청 스레드 수
+	 */
+	private static final int ASYNC_THREADS = 16;
+
+	/**
+	 * 비동기 요청 스레드풀 (비동기 API 를 제공하지 않는 구현체용)
+	 */
+	private static ExecutorService asyncExecutor = null;
+
 	/**
 	 * 키와 값을 캐시에 설정한다.
 	 * @param key 키
@@ -15,6 +30,34 @@ public abstract class AbstractCache {
 	 */
 	public abstract void set(String key, Object value, int seconds);
 
+	/**
+	 * 키와 값의 맵을 캐시에 설정한다.
+	 * 일괄처리를 지원하는 구현체는 재정의하여 한번의 요청으로 처리한다.
+	 * @param valueMap 키와 값의 맵
+	 * @param seconds 캐시시간(초단위)
+	 */
+	public void set(Map<String, Object> valueMap, int seconds) {
+		for (Map.Entry<String, Object> entry : valueMap.entrySet()) {
+			set(entry.getKey(), entry.getValue(), seconds);
+		}
+	}
+
+	/**
+	 * 키가 캐시에 없을 때만 키와 값을 설정한다.
+	 * 기본 구현은 원자적이지 않으므로 구현체에서 원자적 연산(add, SETNX 등)으로 재정의한다.
+	 * @param key 키
+	 * @param value 값
+	 * @param seconds 캐시시간(초단위)
+	 * @return 설정 여부
+	 */
+	public boolean add(String key, Object value, int seconds) {
+		if (get(key) != null) {
+			return false;
+		}
+		set(key, value, seconds);
+		return true;
+	}
+
 	/**
 	 * 캐시에서 키로 값을 얻어온다.
 	 * @param key 키
@@ -29,6 +72,28 @@ public abstract class AbstractCache {
 	 */
 	public abstract Map<String, Object> get(String[] keys);
 
+	/**
+	 * 캐시에서 키로 값을 얻어오면서 남은 캐시시간을 secondsMap 에 담는다. (NearCache 가 L1 캐시시간을 원격 캐시시간보다 길게 잡지 않도록 사용한다)
+	 * 기본 구현은 get 만 호출하고 남은 캐시시간을 담지 않으며, 값과 남은 캐시시간을 한번의 요청으로 조회할 수 있는 구현체는 재정의한다.
+	 * @param key 키
+	 * @param secondsMap 키와 남은 캐시시간(초단위, 키가 없으면 0, 만료되지 않으면 -1)을 담을 맵
+	 * @return 값
+	 */
+	public Object getWithRemainingSeconds(String key, Map<String, Integer> secondsMap) {
+		return get(key);
+	}
+
+	/**
+	 * 캐시에서 키의 배열로 값들을 얻어오면서 남은 캐시시간들을 secondsMap 에 담는다.
+	 * 기본 구현은 get 만 호출하고 남은 캐시시간을 담지 않으며, 값과 남은 캐시시간을 한번의 요청으로 조회할 수 있는 구현체는 재정의한다.
+	 * @param keys 키
+	 * @param secondsMap 키와 남은 캐시시간(초단위, 키가 없으면 0, 만료되지 않으면 -1)을 담을 맵
+	 * @return 값
+	 */
+	public Map<String, Object> getWithRemainingSeconds(String[] keys, Map<String, Integer> secondsMap) {
+		return get(keys);
+	}
+
 	/**
 	 * 키의 값을 by 만큼 증가시킨다.
 	 * @param key 키
@@ -37,6 +102,25 @@ public abstract class AbstractCache {
 	 */
 	public abstract long incr(String key, int by);
 
+	/**
+	 * 키의 값을 by 만큼 증가시킨다. 키가 없으면 by 로 만들고 캐시시간을 설정한다. (Redis 는 증가시킬 때마다 캐시시간을 다시 설정한다)
+	 * 카운터가 만료되어야 하는 경우(요청 수 제한 등)에 사용하며, 기본 구현은 키가 없을 때 -1 을 리턴하는 구현체(EhCache 등)를 위해 add 로 만든다.
+	 * @param key 키
+	 * @param by 증가시킬 값
+	 * @param seconds 키를 새로 만들 때의 캐시시간(초단위)
+	 * @return 증가된 후 값
+	 */
+	public long incr(String key, int by, int seconds) {
+		long value = incr(key, by);
+		if (value >= 0) {
+			return value;
+		}
+		if (add(key, Long.valueOf(by), seconds)) {
+			return by;
+		}
+		return incr(key, by);
+	}
+
 	/**
 	 * 키의 값을 by 만큼 감소시킨다.
 	 * @param key 키
@@ -51,8 +135,114 @@ public abstract class AbstractCache {
 	 */
 	public abstract void delete(String key);
 
+	/**
+	 * 키의 배열에 해당하는 값들을 캐시에서 삭제한다.
+	 * 일괄처리를 지원하는 구현체는 재정의하여 한번의 요청으로 처리한다.
+	 * @param keys 키
+	 */
+	public void delete(String[] keys) {
+		for (String key : keys) {
+			delete(key);
+		}
+	}
+
 	/**
 	 * 캐시를 모두 비운다.
 	 */
 	public abstract void clear();
+
+	/**
+	 * 캐시 서버에 연결할 수 있는지 확인한다.
+	 * 원격 서버를 사용하는 구현체는 재정의하여 서버 상태를 확인한다.
+	 * @return 사용 가능 여부
+	 */
+	public boolean isAvailable() {
+		return true;
+	}
+
+	/**
+	 * 구현체가 사용하는 백그라운드 스레드를 멈춘다.
+	 * 스레드를 사용하는 구현체는 재정의하며, Cache.shutdown 에서 호출된다.
+	 */
+	public void shutdown() {
+	}
+
+	/**
+	 * 캐시에서 키로 값을 비동기로 얻어온다.
+	 * 기본 구현은 별도의 스레드풀에서 get 을 호출하며, 비동기 API 를 제공하는 구현체는 재정의한다.
+	 * @param key 키
+	 * @return 값의 Future
+	 */
+	public CompletableFuture<Object> getAsync(final String key) {
+		return CompletableFuture.supplyAsync(new Supplier<Object>() {
+			@Override
+			public Object get() {
+				return AbstractCache.this.get(key);
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * 캐시에서 키의 배열로 값들을 비동기로 얻어온다.
+	 * @param keys 키
+	 * @return 값의 Future
+	 */
+	public CompletableFuture<Map<String, Object>> getBulkAsync(final String[] keys) {
+		return CompletableFuture.supplyAsync(new Supplier<Map<String, Object>>() {
+			@Override
+			public Map<String, Object> get() {
+				return AbstractCache.this.get(keys);
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * 키와 값을 캐시에 비동기로 설정한다.
+	 * @param key 키
+	 * @param value 값
+	 * @param seconds 캐시시간(초단위)
+	 * @return 설정 성공 여부의 Future
+	 */
+	public CompletableFuture<Boolean> setAsync(final String key, final Object value, final int seconds) {
+		return CompletableFuture.supplyAsync(new Supplier<Boolean>() {
+			@Override
+			public Boolean get() {
+				set(key, value, seconds);
+				return Boolean.TRUE;
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * 키의 값을 by 만큼 비동기로 증가시킨다.
+	 * @param key 키
+	 * @param by 증가시킬 값
+	 * @return 증가된 후 값의 Future
+	 */
+	public CompletableFuture<Long> incrAsync(final String key, final int by) {
+		return CompletableFuture.supplyAsync(new Supplier<Long>() {
+			@Override
+			public Long get() {
+				return Long.valueOf(incr(key, by));
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * 비동기 요청에 사용할 스레드풀을 리턴한다.
+	 * @return 스레드풀
+	 */
+	protected synchronized static ExecutorService getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			asyncExecutor = Executors.newFixedThreadPool(ASYNC_THREADS, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "cache-async");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return asyncExecutor;
+	}
 }
\ No newline at end of file
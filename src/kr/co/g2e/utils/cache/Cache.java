@@ -3,11 +3,32 @@ package kr.co.g2e.utils.cache;
 import java.io.NotSerializableException;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import kr.co.g2e.utils.config.Config;
+
 /**
  * 캐시 클래스
  */
@@ -33,6 +54,81 @@ public final class Cache {
 	 */
 	private final static int DEFAULT_DURATION = 60 * 60 * 24 * 30;
 
+	/**
+	 * 기본 L1 캐시 최대 건수
+	 */
+	private final static int NEAR_CACHE_SIZE = 10000;
+
+	/**
+	 * 기본 L1 캐시 최대 캐시시간 (10초)
+	 */
+	private final static int NEAR_CACHE_SECONDS = 10;
+
+	/**
+	 * 기본 분산락 유지시간 (5초)
+	 */
+	private final static int LOCK_SECONDS = 5;
+
+	/**
+	 * 분산락 획득 대기시 캐시 재조회 간격 (ms)
+	 */
+	private final static long LOCK_WAIT_INTERVAL = 50;
+
+	/**
+	 * 키별로 진행중인 로딩 작업
+	 */
+	private static final ConcurrentMap<String, FutureTask<Object>> loadingMap = new ConcurrentHashMap<String, FutureTask<Object>>();
+
+	/**
+	 * 키별로 진행중인 백그라운드 갱신 작업
+	 */
+	private static final ConcurrentMap<String, Boolean> refreshingMap = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * 백그라운드 갱신 스레드 수
+	 */
+	private final static int REFRESH_THREADS = 2;
+
+	/**
+	 * 백그라운드 갱신 대기열 크기
+	 */
+	private final static int REFRESH_QUEUE_SIZE = 1000;
+
+	/**
+	 * 기본 갱신 확률 계수
+	 */
+	private final static double DEFAULT_REFRESH_BETA = 1.0;
+
+	/**
+	 * 백그라운드 갱신 스레드풀
+	 */
+	private static ExecutorService refreshExecutor = null;
+
+	/**
+	 * 갱신 확률 계수
+	 */
+	private static volatile double refreshBeta = -1;
+
+	/**
+	 * 캐시 지표
+	 */
+	private static final CacheMetrics metrics = CacheMetrics.getInstance();
+
+	/**
+	 * 로컬 캐시 무효화 버스
+	 */
+	private static volatile InvalidationBus bus = null;
+
+	/**
+	 * 태그 세대값 키의 접두어
+	 */
+	private final static String TAG_PREFIX = "cache.tag.";
+
+	/**
+	 * 네임스페이스 세대값 키의 접두어
+	 */
+	private final static String NAMESPACE_PREFIX = "cache.ns.";
+
 	/**
 	 * 생성자, 외부에서 객체를 인스턴스화 할 수 없도록 설정
 	 */
@@ -45,21 +141,65 @@ public final class Cache {
 	public synchronized static void init() {
 		if (cache == null) {
 			try {
-				cache = Memcached.getInstance();
-				cacheName = "Memcached";
-			} catch (Throwable e) {
+				ClusterCache clusterCache = ClusterCache.getInstance();
+				cache = clusterCache;
+				cacheName = "ClusterCache(" + clusterCache.getBackendName() + ")";
+			} catch (Throwable e0) {
 				try {
-					cache = Redis.getInstance();
-					cacheName = "Redis";
-				} catch (Throwable e2) {
-					cache = EhCache.getInstance();
-					cacheName = "EhCache";
+					cache = Memcached.getInstance();
+					cacheName = "Memcached";
+				} catch (Throwable e) {
+					try {
+						cache = Redis.getInstance();
+						cacheName = "Redis";
+					} catch (Throwable e2) {
+						cache = getLocalCache();
+						cacheName = cache.getClass().getSimpleName();
+					}
 				}
 			}
+			if (!isLocalCache(cache) && Config.getInstance().getBoolean("cache.near.enabled", Boolean.FALSE)) {
+				int maxSize = Config.getInstance().getInt("cache.near.size", NEAR_CACHE_SIZE);
+				int maxSeconds = Config.getInstance().getInt("cache.near.seconds", NEAR_CACHE_SECONDS);
+				cache = new NearCache(cache, maxSize, maxSeconds, CacheSerializerFactory.create(Config.getInstance().getString("cache.serializer", "compact")));
+				cacheName = "NearCache(" + cacheName + ")";
+			}
+			if ((isLocalCache(cache) || cache instanceof NearCache) && isBusEnabled()) {
+				try {
+					bus = new InvalidationBus(InvalidationBus.createTransport(), cache);
+				} catch (Throwable e) {
+					logger.error(String.format("[ %s ] init : 무효화 버스 시작 실패", cacheName), e);
+				}
+			}
+			metrics.register(cacheName);
 			logger.info(String.format("[ %s ] init : 초기화 성공", cacheName));
 		}
 	}
 
+	/**
+	 * 무효화 버스, 백그라운드 갱신 스레드, 캐시구현체의 스레드(ClusterCache 상태확인 등)를 멈추고 캐시 지표의 JMX 등록을 해제한다.
+	 * 웹 애플리케이션을 내릴 때(ServletContextListener.contextDestroyed 등) 호출하여 소켓과 수신 스레드를 정리한다.
+	 */
+	public synchronized static void shutdown() {
+		if (bus != null) {
+			try {
+				bus.close();
+			} catch (Throwable e) {
+				logger.warn(String.format("[ %s ] shutdown : 무효화 버스 종료 실패", cacheName), e);
+			}
+			bus = null;
+		}
+		if (refreshExecutor != null) {
+			refreshExecutor.shutdown();
+			refreshExecutor = null;
+		}
+		if (cache != null) {
+			cache.shutdown();
+		}
+		metrics.unregister();
+		logger.info(String.format("[ %s ] shutdown : 종료 성공", cacheName));
+	}
+
 	/**
 	 * 키와 값을 캐시에 설정한다.
 	 * @param key 키
@@ -67,7 +207,16 @@ public final class Cache {
 	 */
 	public static void set(String key, Object value) {
 		isSerializable(value);
-		cache.set(key, value, DEFAULT_DURATION);
+		long start = System.nanoTime();
+		try {
+			cache.set(key, value, DEFAULT_DURATION);
+		} catch (RuntimeException e) {
+			metrics.recordError("set");
+			throw e;
+		} finally {
+			metrics.record("set", System.nanoTime() - start);
+		}
+		publishDelete(key);
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] set : { key=%s, value=%s, seconds=%d }", cacheName, key, value, DEFAULT_DURATION));
 		}
@@ -81,19 +230,117 @@ public final class Cache {
 	 */
 	public static void set(String key, Object value, int seconds) {
 		isSerializable(value);
-		cache.set(key, value, seconds);
+		long start = System.nanoTime();
+		try {
+			cache.set(key, value, seconds);
+		} catch (RuntimeException e) {
+			metrics.recordError("set");
+			throw e;
+		} finally {
+			metrics.record("set", System.nanoTime() - start);
+		}
+		publishDelete(key);
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] set : { key=%s, value=%s, seconds=%d }", cacheName, key, value, seconds));
 		}
 	}
 
+	/**
+	 * 키와 값을 태그와 함께 캐시에 설정한다.
+	 * 값은 저장 시점의 태그별 세대값과 함께 저장되며, invalidateTag(tag) 로 세대값이 바뀌면 조회되지 않는다.
+	 * @param key 키
+	 * @param value 값
+	 * @param seconds 캐시시간(초단위)
+	 * @param tags 태그 (테이블명, 테넌트 등)
+	 */
+	public static void set(String key, Object value, int seconds, String... tags) {
+		if (tags == null || tags.length == 0) {
+			set(key, value, seconds);
+			return;
+		}
+		isSerializable(value);
+		String[] genKeys = new String[tags.length];
+		for (int i = 0; i < tags.length; i++) {
+			genKeys[i] = TAG_PREFIX + tags[i];
+		}
+		set(key, new TaggedValue(value, tags, getGenerations(genKeys, true)), seconds);
+	}
+
+	/**
+	 * 태그가 붙은 모든 값을 무효화한다.
+	 * 키를 찾아 지우지 않고 태그의 세대값만 바꾸므로 캐시구현체와 관계없이 한번의 요청으로 처리된다.
+	 * @param tag 태그
+	 */
+	public static void invalidateTag(String tag) {
+		renewGeneration(TAG_PREFIX + tag);
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("[ %s ] invalidateTag : { tag=%s }", cacheName, tag));
+		}
+	}
+
+	/**
+	 * 네임스페이스의 현재 세대값이 붙은 키를 리턴한다.
+	 * 이 키로 저장한 값들은 invalidateNamespace(namespace) 후에는 다른 키가 되므로 조회되지 않고 캐시시간이 지나면 사라진다.
+	 * @param namespace 네임스페이스
+	 * @param key 키
+	 * @return 세대값이 붙은 키 (namespace:세대값:key)
+	 */
+	public static String namespaceKey(String namespace, String key) {
+		long generation = getGenerations(new String[] { NAMESPACE_PREFIX + namespace }, true)[0];
+		return namespace + ":" + Long.toHexString(generation) + ":" + key;
+	}
+
+	/**
+	 * 네임스페이스의 모든 값을 무효화한다.
+	 * @param namespace 네임스페이스
+	 */
+	public static void invalidateNamespace(String namespace) {
+		renewGeneration(NAMESPACE_PREFIX + namespace);
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("[ %s ] invalidateNamespace : { namespace=%s }", cacheName, namespace));
+		}
+	}
+
+	/**
+	 * 키와 값의 맵을 캐시에 설정한다.
+	 * @param valueMap 키와 값의 맵
+	 * @param seconds 캐시시간(초단위)
+	 */
+	public static void set(Map<String, Object> valueMap, int seconds) {
+		for (Object value : valueMap.values()) {
+			isSerializable(value);
+		}
+		long start = System.nanoTime();
+		try {
+			cache.set(valueMap, seconds);
+		} catch (RuntimeException e) {
+			metrics.recordError("setBulk");
+			throw e;
+		} finally {
+			metrics.record("setBulk", System.nanoTime() - start);
+		}
+		publishDelete(valueMap.keySet().toArray(new String[valueMap.size()]));
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("[ %s ] set : { value=%s, seconds=%d }", cacheName, valueMap, seconds));
+		}
+	}
+
 	/**
 	 * 키의 값을 1만큼 증가시킨다.
 	 * @param key 키
 	 * @return 증가된 후 값
 	 */
 	public static long incr(String key) {
-		long result = cache.incr(key, 1);
+		long result;
+		long start = System.nanoTime();
+		try {
+			result = cache.incr(key, 1);
+		} catch (RuntimeException e) {
+			metrics.recordError("incr");
+			throw e;
+		} finally {
+			metrics.record("incr", System.nanoTime() - start);
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] incr : { key=%s, by=%d }", cacheName, key, 1));
 		}
@@ -107,20 +354,62 @@ public final class Cache {
 	 * @return 증가된 후 값
 	 */
 	public static long incr(String key, int by) {
-		long result = cache.incr(key, by);
+		long result;
+		long start = System.nanoTime();
+		try {
+			result = cache.incr(key, by);
+		} catch (RuntimeException e) {
+			metrics.recordError("incr");
+			throw e;
+		} finally {
+			metrics.record("incr", System.nanoTime() - start);
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] incr : { key=%s, by=%d }", cacheName, key, by));
 		}
 		return result;
 	}
 
+	/**
+	 * 키의 값을 by 만큼 증가시킨다. 키가 없으면 by 로 만들고 캐시시간을 설정한다.
+	 * @param key 키
+	 * @param by 증가시킬 값
+	 * @param seconds 키를 새로 만들 때의 캐시시간(초단위)
+	 * @return 증가된 후 값
+	 */
+	public static long incr(String key, int by, int seconds) {
+		long result;
+		long start = System.nanoTime();
+		try {
+			result = cache.incr(key, by, seconds);
+		} catch (RuntimeException e) {
+			metrics.recordError("incr");
+			throw e;
+		} finally {
+			metrics.record("incr", System.nanoTime() - start);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("[ %s ] incr : { key=%s, by=%d, seconds=%d }", cacheName, key, by, seconds));
+		}
+		return result;
+	}
+
 	/**
 	 * 키의 값을 1만큼 감소시킨다.
 	 * @param key 키
 	 * @return 감소된 후 값
 	 */
 	public static long decr(String key) {
-		long result = cache.decr(key, 1);
+		long result;
+		long start = System.nanoTime();
+		try {
+			result = cache.decr(key, 1);
+		} catch (RuntimeException e) {
+			metrics.recordError("decr");
+			throw e;
+		} finally {
+			metrics.record("decr", System.nanoTime() - start);
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] decr : { key=%s, by=%d }", cacheName, key, 1));
 		}
@@ -133,7 +422,16 @@ public final class Cache {
 	 * @return 감소된 후 값
 	 */
 	public static long decr(String key, int by) {
-		long result = cache.decr(key, by);
+		long result;
+		long start = System.nanoTime();
+		try {
+			result = cache.decr(key, by);
+		} catch (RuntimeException e) {
+			metrics.recordError("decr");
+			throw e;
+		} finally {
+			metrics.record("decr", System.nanoTime() - start);
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] decr : { key=%s, by=%d }", cacheName, key, by));
 		}
@@ -146,20 +444,95 @@ public final class Cache {
 	 * @return 값
 	 */
 	public static Object get(String key) {
-		Object value = cache.get(key);
+		Object value = getValue(key);
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] get : { key=%s, value=%s }", cacheName, key, value));
 		}
 		return value;
 	}
 
+	/**
+	 * 캐시에서 키로 값을 얻어오고, 값이 없으면 loader 로 값을 만들어 캐시에 설정한 후 리턴한다.
+	 * 같은 JVM 에서 같은 키로 동시에 요청하면 한 스레드만 loader 를 호출하고 나머지는 그 결과를 기다린다.
+	 * 설정파일의 cache.loader.lock=true 이면 원격 캐시에 짧은 분산락(add)을 걸어 한 노드만 값을 만든다.
+	 * loader 가 null 을 리턴하면 캐시에 설정하지 않는다.
+	 * @param key 키
+	 * @param seconds 캐시시간(초단위)
+	 * @param loader 값이 없을 때 값을 만드는 객체
+	 * @return 값
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(final String key, final int seconds, final Callable<T> loader) {
+		Object value = getValue(key);
+		if (value != null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("[ %s ] get : { key=%s, value=%s }", cacheName, key, value));
+			}
+			return (T) value;
+		}
+		return (T) singleFlight(key, new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return load(key, seconds, loader);
+			}
+		});
+	}
+
+	/**
+	 * 캐시에서 키로 값을 얻어오고, 값이 없으면 loader 로 값을 만들어 캐시에 설정한 후 리턴한다.
+	 * 값은 CacheEntry 로 감싸 논리적 만료시각과 함께 저장되며, 실제 캐시시간은 seconds + staleSeconds 이다.
+	 * 만료시각에 가까워질수록 높은 확률로(XFetch) 백그라운드에서 미리 갱신하고,
+	 * 만료시각이 지난 후 유예시간(staleSeconds) 안에서는 이전 값을 리턴하면서 백그라운드에서 갱신한다.
+	 * 갱신 확률 계수는 설정파일의 cache.refresh.beta(기본 1.0) 값을 사용한다.
+	 * @param key 키
+	 * @param seconds 캐시시간(초단위)
+	 * @param staleSeconds 만료 후 이전 값을 사용할 수 있는 유예시간(초단위)
+	 * @param loader 값을 만드는 객체
+	 * @return 값
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(final String key, final int seconds, final int staleSeconds, final Callable<T> loader) {
+		Object value = getEntry(key);
+		if (value instanceof CacheEntry) {
+			CacheEntry entry = (CacheEntry) value;
+			long now = System.currentTimeMillis();
+			if (entry.isExpired(now) || entry.shouldRefresh(now, getRefreshBeta())) {
+				refreshInBackground(key, seconds, staleSeconds, loader);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("[ %s ] get : { key=%s, value=%s, expired=%s }", cacheName, key, entry.getValue(), entry.isExpired(now)));
+			}
+			return (T) entry.getValue();
+		}
+		return (T) singleFlight(key, new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				Object value = cache.get(key);
+				if (value instanceof CacheEntry) {
+					return ((CacheEntry) value).getValue();
+				}
+				return loadEntry(key, seconds, staleSeconds, loader);
+			}
+		});
+	}
+
 	/**
 	 * 캐시에서 키의 배열로 값들을 얻어온다.
 	 * @param keys 키
 	 * @return 값
 	 */
 	public static Map<String, Object> get(String... keys) {
-		Map<String, Object> valueMap = cache.get(keys);
+		Map<String, Object> valueMap;
+		long start = System.nanoTime();
+		try {
+			valueMap = unwrap(cache.get(keys));
+		} catch (RuntimeException e) {
+			metrics.recordError("getBulk");
+			throw e;
+		} finally {
+			metrics.record("getBulk", System.nanoTime() - start);
+		}
+		recordHitMiss(keys.length, valueMap);
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] get : { key=%s, value=%s }", cacheName, Arrays.asList(keys), valueMap));
 		}
@@ -171,24 +544,549 @@ public final class Cache {
 	 * @param key 키
 	 */
 	public static void delete(String key) {
-		cache.delete(key);
+		long start = System.nanoTime();
+		try {
+			cache.delete(key);
+		} catch (RuntimeException e) {
+			metrics.recordError("delete");
+			throw e;
+		} finally {
+			metrics.record("delete", System.nanoTime() - start);
+		}
+		publishDelete(key);
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] delete : { key=%s }", cacheName, key));
 		}
 	}
 
+	/**
+	 * 키의 배열에 해당하는 값들을 캐시에서 삭제한다.
+	 * @param keys 키
+	 */
+	public static void delete(String... keys) {
+		long start = System.nanoTime();
+		try {
+			cache.delete(keys);
+		} catch (RuntimeException e) {
+			metrics.recordError("deleteBulk");
+			throw e;
+		} finally {
+			metrics.record("deleteBulk", System.nanoTime() - start);
+		}
+		publishDelete(keys);
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("[ %s ] delete : { key=%s }", cacheName, Arrays.asList(keys)));
+		}
+	}
+
+	/**
+	 * 캐시에서 키로 값을 비동기로 얻어온다.
+	 * @param key 키
+	 * @return 값의 Future
+	 */
+	public static CompletableFuture<Object> getAsync(String key) {
+		final long start = System.nanoTime();
+		return cache.getAsync(key).thenApply(new Function<Object, Object>() {
+			@Override
+			public Object apply(Object value) {
+				return unwrap(value);
+			}
+		}).whenComplete(new BiConsumer<Object, Throwable>() {
+			@Override
+			public void accept(Object value, Throwable e) {
+				recordAsync("getAsync", start, e);
+				if (e == null) {
+					recordHitMiss(value);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 캐시에서 키의 배열로 값들을 비동기로 얻어온다.
+	 * @param keys 키
+	 * @return 값의 Future
+	 */
+	public static CompletableFuture<Map<String, Object>> getBulkAsync(final String... keys) {
+		final long start = System.nanoTime();
+		return cache.getBulkAsync(keys).thenApply(new Function<Map<String, Object>, Map<String, Object>>() {
+			@Override
+			public Map<String, Object> apply(Map<String, Object> valueMap) {
+				return unwrap(valueMap);
+			}
+		}).whenComplete(new BiConsumer<Map<String, Object>, Throwable>() {
+			@Override
+			public void accept(Map<String, Object> valueMap, Throwable e) {
+				recordAsync("getBulkAsync", start, e);
+				if (e == null) {
+					recordHitMiss(keys.length, valueMap);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 키와 값을 캐시에 비동기로 설정한다.
+	 * @param key 키
+	 * @param value 값
+	 * @param seconds 캐시시간(초단위)
+	 * @return 설정 성공 여부의 Future
+	 */
+	public static CompletableFuture<Boolean> setAsync(String key, Object value, int seconds) {
+		isSerializable(value);
+		publishDelete(key);
+		final long start = System.nanoTime();
+		return cache.setAsync(key, value, seconds).whenComplete(new BiConsumer<Boolean, Throwable>() {
+			@Override
+			public void accept(Boolean result, Throwable e) {
+				recordAsync("setAsync", start, e);
+			}
+		});
+	}
+
+	/**
+	 * 키의 값을 by 만큼 비동기로 증가시킨다.
+	 * @param key 키
+	 * @param by 증가시킬 값
+	 * @return 증가된 후 값의 Future
+	 */
+	public static CompletableFuture<Long> incrAsync(String key, int by) {
+		final long start = System.nanoTime();
+		return cache.incrAsync(key, by).whenComplete(new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(Long result, Throwable e) {
+				recordAsync("incrAsync", start, e);
+			}
+		});
+	}
+
+	/**
+	 * 캐시 지표를 맵으로 리턴한다. (적중률, 연산별 지연시간 백분위수(마이크로초), 오류 건수, 값 크기)
+	 * 같은 지표를 JMX(kr.co.g2e.utils.cache:type=CacheMetrics)로도 조회할 수 있다.
+	 * @return 지표 맵
+	 */
+	public static Map<String, Object> getMetrics() {
+		return metrics.snapshot();
+	}
+
 	/**
 	 * 캐시를 모두 비운다.
 	 */
 	public static void clear() {
-		cache.clear();
+		long start = System.nanoTime();
+		try {
+			cache.clear();
+		} catch (RuntimeException e) {
+			metrics.recordError("clear");
+			throw e;
+		} finally {
+			metrics.record("clear", System.nanoTime() - start);
+		}
+		InvalidationBus current = bus;
+		if (current != null) {
+			current.publishClear();
+		}
 		if (logger.isDebugEnabled()) {
 			logger.debug(String.format("[ %s ] clear : 캐시 클리어 성공", cacheName));
 		}
 	}
 
+	/**
+	 * 원격 캐시를 사용할 수 없을 때 사용할 로컬 캐시구현체를 리턴한다.
+	 * 설정파일의 cache.local=offheap 이면 OffHeapCache, 그 외에는 EhCache 를 사용한다.
+	 * @return 로컬 캐시구현체
+	 */
+	static AbstractCache getLocalCache() {
+		boolean offHeap;
+		try {
+			offHeap = "offheap".equalsIgnoreCase(Config.getInstance().getString("cache.local", "ehcache"));
+		} catch (Throwable e) {
+			offHeap = false;
+		}
+		return offHeap ? OffHeapCache.getInstance() : EhCache.getInstance();
+	}
+
 	//////////////////////////////////////////////////////////////////////////////////////////Private 메소드
 
+	/**
+	 * 다른 노드의 로컬 캐시에 키 삭제를 알린다.
+	 */
+	private static void publishDelete(String... keys) {
+		InvalidationBus current = bus;
+		if (current != null) {
+			current.publishDelete(keys);
+		}
+	}
+
+	/**
+	 * 무효화 버스 사용 여부를 리턴한다.
+	 */
+	private static boolean isBusEnabled() {
+		try {
+			return Config.getInstance().getBoolean("cache.bus.enabled", Boolean.FALSE).booleanValue();
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 로컬 캐시구현체인지 판별한다.
+	 */
+	private static boolean isLocalCache(AbstractCache cache) {
+		return (cache instanceof EhCache) || (cache instanceof OffHeapCache);
+	}
+
+	/**
+	 * 캐시에서 키로 값을 얻어오면서 수행시간과 적중 여부를 기록한다.
+	 */
+	private static Object getValue(String key) {
+		Object value = getEntry(key);
+		return (value instanceof CacheEntry) ? ((CacheEntry) value).getValue() : value;
+	}
+
+	/**
+	 * 캐시에서 키로 값을 얻어오면서 수행시간과 적중 여부를 기록한다. CacheEntry 는 벗기지 않고 그대로 리턴한다.
+	 */
+	private static Object getEntry(String key) {
+		Object value;
+		long start = System.nanoTime();
+		try {
+			value = cache.get(key);
+			if (!(value instanceof CacheEntry)) {
+				value = unwrap(value);
+			}
+		} catch (RuntimeException e) {
+			metrics.recordError("get");
+			throw e;
+		} finally {
+			metrics.record("get", System.nanoTime() - start);
+		}
+		recordHitMiss(value);
+		return value;
+	}
+
+	/**
+	 * 태그가 붙은 값이면 태그의 세대값을 확인하여 원래 값을 리턴하고, 무효화되었으면 null 을 리턴한다.
+	 * CacheEntry 로 감싼 값이면 원래 값을 리턴한다.
+	 */
+	private static Object unwrap(Object value) {
+		if (value instanceof CacheEntry) {
+			return ((CacheEntry) value).getValue();
+		}
+		if (!(value instanceof TaggedValue)) {
+			return value;
+		}
+		TaggedValue tagged = (TaggedValue) value;
+		Map<String, Long> generationMap = getCurrentGenerations(tagged.getTags());
+		return isValid(tagged, generationMap) ? tagged.getValue() : null;
+	}
+
+	/**
+	 * 다건 조회 결과에서 태그가 붙은 값들의 세대값을 한번에 확인하여 원래 값으로 바꾼다.
+	 * CacheEntry 로 감싼 값도 원래 값으로 바꾼다.
+	 */
+	private static Map<String, Object> unwrap(Map<String, Object> valueMap) {
+		Set<String> tags = new LinkedHashSet<String>();
+		boolean wrapped = false;
+		for (Object value : valueMap.values()) {
+			if (value instanceof TaggedValue) {
+				tags.addAll(Arrays.asList(((TaggedValue) value).getTags()));
+				wrapped = true;
+			} else if (value instanceof CacheEntry) {
+				wrapped = true;
+			}
+		}
+		if (!wrapped) {
+			return valueMap;
+		}
+		Map<String, Long> generationMap = tags.isEmpty() ? null : getCurrentGenerations(tags.toArray(new String[tags.size()]));
+		Map<String, Object> resultMap = new HashMap<String, Object>(valueMap);
+		for (Map.Entry<String, Object> entry : resultMap.entrySet()) {
+			if (entry.getValue() instanceof TaggedValue) {
+				TaggedValue tagged = (TaggedValue) entry.getValue();
+				entry.setValue(isValid(tagged, generationMap) ? tagged.getValue() : null);
+			} else if (entry.getValue() instanceof CacheEntry) {
+				entry.setValue(((CacheEntry) entry.getValue()).getValue());
+			}
+		}
+		return resultMap;
+	}
+
+	/**
+	 * 저장 당시의 세대값이 현재 세대값과 모두 같은지 확인한다.
+	 */
+	private static boolean isValid(TaggedValue tagged, Map<String, Long> generationMap) {
+		String[] tags = tagged.getTags();
+		long[] generations = tagged.getGenerations();
+		for (int i = 0; i < tags.length; i++) {
+			Long current = generationMap.get(tags[i]);
+			if (current == null || current.longValue() != generations[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 태그별 현재 세대값을 한번의 요청으로 얻어온다. 세대값이 없는 태그는 맵에 포함되지 않는다.
+	 */
+	private static Map<String, Long> getCurrentGenerations(String[] tags) {
+		String[] genKeys = new String[tags.length];
+		for (int i = 0; i < tags.length; i++) {
+			genKeys[i] = TAG_PREFIX + tags[i];
+		}
+		long[] generations = getGenerations(genKeys, false);
+		Map<String, Long> generationMap = new HashMap<String, Long>();
+		for (int i = 0; i < tags.length; i++) {
+			if (generations[i] != 0) {
+				generationMap.put(tags[i], Long.valueOf(generations[i]));
+			}
+		}
+		return generationMap;
+	}
+
+	/**
+	 * 세대값 키들의 현재 세대값을 얻어온다.
+	 * 세대값이 없으면 create 가 true 일 때 새로 만들어 add 로 저장하고(동시에 만든 경우 먼저 저장된 값을 사용), false 이면 0 을 리턴한다.
+	 * L1 캐시의 이전 세대값을 사용하지 않도록 원격 캐시에서 직접 읽는다.
+	 */
+	private static long[] getGenerations(String[] genKeys, boolean create) {
+		AbstractCache store = getGenerationStore();
+		Map<String, Object> valueMap = store.get(genKeys);
+		long[] generations = new long[genKeys.length];
+		for (int i = 0; i < genKeys.length; i++) {
+			Object value = valueMap.get(genKeys[i]);
+			if (value == null && create) {
+				Long generation = Long.valueOf(newGeneration());
+				if (store.add(genKeys[i], generation, DEFAULT_DURATION)) {
+					value = generation;
+				} else {
+					value = store.get(genKeys[i]);
+				}
+			}
+			generations[i] = (value instanceof Number) ? ((Number) value).longValue() : 0;
+		}
+		return generations;
+	}
+
+	/**
+	 * 세대값을 새 값으로 바꾼다.
+	 */
+	private static void renewGeneration(String genKey) {
+		getGenerationStore().set(genKey, Long.valueOf(newGeneration()), DEFAULT_DURATION);
+		publishDelete(genKey);
+	}
+
+	/**
+	 * 세대값을 저장할 캐시구현체를 리턴한다.
+	 */
+	private static AbstractCache getGenerationStore() {
+		return (cache instanceof NearCache) ? ((NearCache) cache).getRemote() : cache;
+	}
+
+	/**
+	 * 이전 세대값과 겹치지 않는 새 세대값을 만든다. (0 은 세대값 없음을 나타내므로 사용하지 않는다)
+	 */
+	private static long newGeneration() {
+		long generation;
+		do {
+			generation = ThreadLocalRandom.current().nextLong();
+		} while (generation == 0);
+		return generation;
+	}
+
+	/**
+	 * 단건 조회의 적중 여부를 기록한다.
+	 */
+	private static void recordHitMiss(Object value) {
+		if (value != null) {
+			metrics.recordHit(1);
+		} else {
+			metrics.recordMiss(1);
+		}
+	}
+
+	/**
+	 * 다건 조회의 적중 건수를 기록한다.
+	 */
+	private static void recordHitMiss(int keyCount, Map<String, Object> valueMap) {
+		int hit = 0;
+		if (valueMap != null) {
+			for (Object value : valueMap.values()) {
+				if (value != null) {
+					hit++;
+				}
+			}
+		}
+		metrics.recordHit(hit);
+		metrics.recordMiss(keyCount - hit);
+	}
+
+	/**
+	 * 비동기 연산의 수행시간과 오류를 기록한다.
+	 */
+	private static void recordAsync(String operation, long start, Throwable e) {
+		if (e != null) {
+			metrics.recordError(operation);
+		}
+		metrics.record(operation, System.nanoTime() - start);
+	}
+
+	/**
+	 * 같은 키의 작업이 진행중이면 그 결과를 기다리고, 없으면 작업을 실행한다.
+	 */
+	private static Object singleFlight(String key, Callable<Object> callable) {
+		FutureTask<Object> task = new FutureTask<Object>(callable);
+		FutureTask<Object> running = loadingMap.putIfAbsent(key, task);
+		if (running == null) {
+			running = task;
+			try {
+				task.run();
+			} finally {
+				loadingMap.remove(key, task);
+			}
+		}
+		try {
+			return running.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * loader 로 값을 만들어 CacheEntry 로 감싸 캐시에 설정한다.
+	 */
+	private static Object loadEntry(String key, int seconds, int staleSeconds, Callable<?> loader) throws Exception {
+		long start = System.currentTimeMillis();
+		Object value = loader.call();
+		long end = System.currentTimeMillis();
+		if (value != null) {
+			isSerializable(value);
+			cache.set(key, new CacheEntry(value, end - start, end + seconds * 1000L), seconds + staleSeconds);
+			publishDelete(key);
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("[ %s ] set : { key=%s, value=%s, seconds=%d, staleSeconds=%d }", cacheName, key, value, seconds, staleSeconds));
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * 백그라운드에서 값을 갱신한다. 같은 키의 갱신이 진행중이면 무시한다.
+	 */
+	private static void refreshInBackground(final String key, final int seconds, final int staleSeconds, final Callable<?> loader) {
+		if (refreshingMap.putIfAbsent(key, Boolean.TRUE) != null) {
+			return;
+		}
+		try {
+			getRefreshExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						loadEntry(key, seconds, staleSeconds, loader);
+					} catch (Throwable e) {
+						logger.error(String.format("[ %s ] refresh : { key=%s } 갱신 실패", cacheName, key), e);
+					} finally {
+						refreshingMap.remove(key);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshingMap.remove(key);
+		}
+	}
+
+	/**
+	 * 백그라운드 갱신에 사용할 스레드풀을 리턴한다.
+	 */
+	private synchronized static ExecutorService getRefreshExecutor() {
+		if (refreshExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(REFRESH_QUEUE_SIZE), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "cache-refresh");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			refreshExecutor = executor;
+		}
+		return refreshExecutor;
+	}
+
+	/**
+	 * 미리 갱신할 확률 계수를 리턴한다.
+	 */
+	private static double getRefreshBeta() {
+		if (refreshBeta < 0) {
+			try {
+				refreshBeta = Config.getInstance().getDouble("cache.refresh.beta", Double.valueOf(DEFAULT_REFRESH_BETA));
+			} catch (Throwable e) {
+				refreshBeta = DEFAULT_REFRESH_BETA;
+			}
+		}
+		return refreshBeta;
+	}
+
+	/**
+	 * loader 로 값을 만들어 캐시에 설정한다.
+	 * 분산락을 사용하면 락을 얻지 못한 노드는 락 유지시간 동안 다른 노드가 설정한 값을 기다리고,
+	 * 그래도 값이 없으면 직접 값을 만든다.
+	 * 캐시 서버 오류로 락을 얻지 못한 경우(락 값이 보이지 않는 경우)에는 기다리지 않고 바로 값을 만든다.
+	 * 락 값은 임의의 토큰이며, 락이 만료되어 다른 노드가 다시 얻은 경우에는 지우지 않는다.
+	 */
+	private static Object load(String key, int seconds, Callable<?> loader) throws Exception {
+		Object value = unwrap(cache.get(key));
+		if (value != null) {
+			return value;
+		}
+		if (!isLocalCache(cache) && Config.getInstance().getBoolean("cache.loader.lock", Boolean.FALSE)) {
+			int lockSeconds = Config.getInstance().getInt("cache.loader.lock.seconds", LOCK_SECONDS);
+			String lockKey = key + ".lock";
+			String token = UUID.randomUUID().toString();
+			if (cache.add(lockKey, token, lockSeconds)) {
+				try {
+					return loadAndSet(key, seconds, loader);
+				} finally {
+					if (token.equals(cache.get(lockKey))) {
+						cache.delete(lockKey);
+					}
+				}
+			}
+			if (cache.get(lockKey) == null) {
+				return loadAndSet(key, seconds, loader);
+			}
+			long deadline = System.currentTimeMillis() + lockSeconds * 1000L;
+			while (System.currentTimeMillis() < deadline) {
+				Thread.sleep(LOCK_WAIT_INTERVAL);
+				value = unwrap(cache.get(key));
+				if (value != null) {
+					return value;
+				}
+			}
+		}
+		return loadAndSet(key, seconds, loader);
+	}
+
+	/**
+	 * loader 를 호출하고 결과를 캐시에 설정한다.
+	 */
+	private static Object loadAndSet(String key, int seconds, Callable<?> loader) throws Exception {
+		Object value = loader.call();
+		if (value != null) {
+			set(key, value, seconds);
+		}
+		return value;
+	}
+
 	/**
 	 * 직렬화 가능 객체인지 판별한다.
 	 */
@@ -0,0 +1,84 @@
+package kr.co.g2e.utils.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 값과 함께 값을 만드는데 걸린 시간, 논리적 만료시각을 저장하는 캐시 항목
+ * 논리적 만료시각이 지나도 실제 캐시에는 유예시간만큼 더 남아있어 갱신하는 동안 이전 값을 사용할 수 있다.
+ */
+public final class CacheEntry implements Serializable {
+	private static final long serialVersionUID = 3570182395637294417L;
+
+	/**
+	 * 값
+	 */
+	private final Object value;
+
+	/**
+	 * 값을 만드는데 걸린 시간 (ms)
+	 */
+	private final long computeMillis;
+
+	/**
+	 * 논리적 만료시각 (ms)
+	 */
+	private final long expireTime;
+
+	/**
+	 * 생성자
+	 * @param value 값
+	 * @param computeMillis 값을 만드는데 걸린 시간 (ms)
+	 * @param expireTime 논리적 만료시각 (ms)
+	 */
+	public CacheEntry(Object value, long computeMillis, long expireTime) {
+		this.value = value;
+		this.computeMillis = computeMillis;
+		this.expireTime = expireTime;
+	}
+
+	/**
+	 * 값을 리턴한다.
+	 * @return 값
+	 */
+	public Object getValue() {
+		return value;
+	}
+
+	/**
+	 * 값을 만드는데 걸린 시간을 리턴한다.
+	 * @return 시간 (ms)
+	 */
+	public long getComputeMillis() {
+		return computeMillis;
+	}
+
+	/**
+	 * 논리적 만료시각을 리턴한다.
+	 * @return 만료시각 (ms)
+	 */
+	public long getExpireTime() {
+		return expireTime;
+	}
+
+	/**
+	 * 논리적 만료시각이 지났는지 여부를 리턴한다.
+	 * @param now 현재시각 (ms)
+	 * @return 만료 여부
+	 */
+	public boolean isExpired(long now) {
+		return now >= expireTime;
+	}
+
+	/**
+	 * 만료시각 전에 미리 갱신해야 하는지 여부를 리턴한다. (XFetch 알고리즘)
+	 * 만료시각에 가까워질수록, 값을 만드는데 오래 걸릴수록 갱신할 확률이 높아진다.
+	 * @param now 현재시각 (ms)
+	 * @param beta 1.0 이 기본값이며 클수록 더 일찍 갱신한다.
+	 * @return 갱신 여부
+	 */
+	public boolean shouldRefresh(long now, double beta) {
+		double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+		return now - computeMillis * beta * Math.log(random) >= expireTime;
+	}
+}
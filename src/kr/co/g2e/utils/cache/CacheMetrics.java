@@ -0,0 +1,303 @@
+package kr.co.g2e.utils.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.util.Histogram;
+
+/**
+ * 캐시 연산별 건수, 지연시간, 적중/실패/오류 건수, 값 크기를 기록하는 클래스
+ * 싱글톤 패턴으로 JMX(kr.co.g2e.utils.cache:type=CacheMetrics)와 snapshot() 으로 조회할 수 있다.
+ */
+public final class CacheMetrics implements CacheMetricsMBean {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(CacheMetrics.class);
+
+	/**
+	 * 싱글톤 객체
+	 */
+	private static final CacheMetrics INSTANCE = new CacheMetrics();
+
+	/**
+	 * JMX 객체 이름
+	 */
+	private static final String OBJECT_NAME = "kr.co.g2e.utils.cache:type=CacheMetrics";
+
+	/**
+	 * 연산별 지표
+	 */
+	private final ConcurrentMap<String, OperationMetrics> operationMap = new ConcurrentHashMap<String, OperationMetrics>();
+
+	/**
+	 * 적중 건수
+	 */
+	private final LongAdder hitCount = new LongAdder();
+
+	/**
+	 * 실패 건수
+	 */
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * 값 크기 분포 (바이트)
+	 */
+	private final Histogram payloadHistogram = new Histogram();
+
+	/**
+	 * 캐시구현체 이름
+	 */
+	private volatile String cacheName = null;
+
+	/**
+	 * JMX 등록 여부
+	 */
+	private volatile boolean registered = false;
+
+	/**
+	 * 생성자, 외부에서 객체를 인스턴스화 할 수 없도록 설정
+	 */
+	private CacheMetrics() {
+	}
+
+	/**
+	 * 객체의 인스턴스를 리턴해준다.
+	 * @return CacheMetrics 객체의 인스턴스
+	 */
+	public static CacheMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * JMX 서버에 등록한다. 같은 이름으로 등록된 객체(재배포 전의 객체 등)가 있으면 바꾼다.
+	 * @param cacheName 캐시구현체 이름
+	 */
+	public void register(String cacheName) {
+		this.cacheName = cacheName;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(this, objectName);
+			registered = true;
+		} catch (Throwable e) {
+			logger.warn("캐시 지표 JMX 등록 실패", e);
+		}
+	}
+
+	/**
+	 * JMX 서버에서 등록을 해제한다.
+	 */
+	public void unregister() {
+		if (!registered) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+		} catch (Throwable e) {
+			logger.warn("캐시 지표 JMX 해제 실패", e);
+		}
+		registered = false;
+	}
+
+	/**
+	 * 연산의 수행시간을 기록한다.
+	 * @param operation 연산 이름
+	 * @param nanos 수행시간 (나노초)
+	 */
+	public void record(String operation, long nanos) {
+		getOperation(operation).latency.record(nanos / 1000);
+	}
+
+	/**
+	 * 연산의 오류를 기록한다.
+	 * @param operation 연산 이름
+	 */
+	public void recordError(String operation) {
+		getOperation(operation).errorCount.increment();
+	}
+
+	/**
+	 * 적중 건수를 기록한다.
+	 * @param count 건수
+	 */
+	public void recordHit(long count) {
+		hitCount.add(count);
+	}
+
+	/**
+	 * 실패 건수를 기록한다.
+	 * @param count 건수
+	 */
+	public void recordMiss(long count) {
+		missCount.add(count);
+	}
+
+	/**
+	 * 직렬화된 값의 크기를 기록한다.
+	 * @param bytes 크기 (바이트)
+	 */
+	public void recordPayload(int bytes) {
+		payloadHistogram.record(bytes);
+	}
+
+	/**
+	 * 현재 지표를 맵으로 리턴한다.
+	 * @return 지표 맵
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("cacheName", cacheName);
+		result.put("hitCount", getHitCount());
+		result.put("missCount", getMissCount());
+		result.put("hitRatio", getHitRatio());
+		result.put("errorCount", getErrorCount());
+		result.put("payloadBytes", toMap(payloadHistogram));
+		Map<String, Object> operations = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, OperationMetrics> entry : operationMap.entrySet()) {
+			Map<String, Object> operation = toMap(entry.getValue().latency);
+			operation.put("errorCount", entry.getValue().errorCount.sum());
+			operations.put(entry.getKey(), operation);
+		}
+		result.put("operations", operations);
+		return result;
+	}
+
+	@Override
+	public String getCacheName() {
+		return cacheName;
+	}
+
+	@Override
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	@Override
+	public double getHitRatio() {
+		long hit = getHitCount();
+		long total = hit + getMissCount();
+		return (total == 0) ? 0 : (double) hit / total;
+	}
+
+	@Override
+	public long getErrorCount() {
+		long count = 0;
+		for (OperationMetrics operation : operationMap.values()) {
+			count += operation.errorCount.sum();
+		}
+		return count;
+	}
+
+	@Override
+	public long getGetCount() {
+		return getOperation("get").latency.getCount();
+	}
+
+	@Override
+	public long getSetCount() {
+		return getOperation("set").latency.getCount();
+	}
+
+	@Override
+	public long getGetLatencyP50() {
+		return getOperation("get").latency.getPercentile(50);
+	}
+
+	@Override
+	public long getGetLatencyP99() {
+		return getOperation("get").latency.getPercentile(99);
+	}
+
+	@Override
+	public long getSetLatencyP50() {
+		return getOperation("set").latency.getPercentile(50);
+	}
+
+	@Override
+	public long getSetLatencyP99() {
+		return getOperation("set").latency.getPercentile(99);
+	}
+
+	@Override
+	public double getPayloadBytesMean() {
+		return payloadHistogram.getMean();
+	}
+
+	@Override
+	public long getPayloadBytesP99() {
+		return payloadHistogram.getPercentile(99);
+	}
+
+	@Override
+	public String getSummary() {
+		return snapshot().toString();
+	}
+
+	@Override
+	public void reset() {
+		hitCount.reset();
+		missCount.reset();
+		payloadHistogram.reset();
+		operationMap.clear();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 연산 이름으로 지표 객체를 얻어온다.
+	 */
+	private OperationMetrics getOperation(String operation) {
+		OperationMetrics metrics = operationMap.get(operation);
+		if (metrics == null) {
+			OperationMetrics newMetrics = new OperationMetrics();
+			metrics = operationMap.putIfAbsent(operation, newMetrics);
+			if (metrics == null) {
+				metrics = newMetrics;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * 히스토그램을 맵으로 변환한다.
+	 */
+	private Map<String, Object> toMap(Histogram histogram) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("count", histogram.getCount());
+		result.put("mean", histogram.getMean());
+		result.put("p50", histogram.getPercentile(50));
+		result.put("p90", histogram.getPercentile(90));
+		result.put("p99", histogram.getPercentile(99));
+		result.put("p999", histogram.getPercentile(99.9));
+		result.put("max", histogram.getMax());
+		return result;
+	}
+
+	/**
+	 * 연산별 지표 (지연시간은 마이크로초)
+	 */
+	private static final class OperationMetrics {
+		private final Histogram latency = new Histogram();
+		private final LongAdder errorCount = new LongAdder();
+	}
+}
@@ -0,0 +1,82 @@
+package kr.co.g2e.utils.cache;
+
+/**
+ * 캐시 지표를 JMX 로 노출하기 위한 MBean 인터페이스
+ */
+public interface CacheMetricsMBean {
+
+	/**
+	 * 캐시구현체 이름
+	 */
+	String getCacheName();
+
+	/**
+	 * 적중 건수
+	 */
+	long getHitCount();
+
+	/**
+	 * 실패 건수
+	 */
+	long getMissCount();
+
+	/**
+	 * 적중률 (0 ~ 1)
+	 */
+	double getHitRatio();
+
+	/**
+	 * 오류 건수 (모든 연산)
+	 */
+	long getErrorCount();
+
+	/**
+	 * get 연산 건수
+	 */
+	long getGetCount();
+
+	/**
+	 * set 연산 건수
+	 */
+	long getSetCount();
+
+	/**
+	 * get 연산 지연시간 50 백분위수 (마이크로초)
+	 */
+	long getGetLatencyP50();
+
+	/**
+	 * get 연산 지연시간 99 백분위수 (마이크로초)
+	 */
+	long getGetLatencyP99();
+
+	/**
+	 * set 연산 지연시간 50 백분위수 (마이크로초)
+	 */
+	long getSetLatencyP50();
+
+	/**
+	 * set 연산 지연시간 99 백분위수 (마이크로초)
+	 */
+	long getSetLatencyP99();
+
+	/**
+	 * 평균 값 크기 (바이트)
+	 */
+	double getPayloadBytesMean();
+
+	/**
+	 * 값 크기 99 백분위수 (바이트)
+	 */
+	long getPayloadBytesP99();
+
+	/**
+	 * 모든 지표를 문자열로 리턴한다.
+	 */
+	String getSummary();
+
+	/**
+	 * 모든 지표를 초기화한다.
+	 */
+	void reset();
+}
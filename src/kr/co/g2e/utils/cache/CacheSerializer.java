@@ -0,0 +1,21 @@
+package kr.co.g2e.utils.cache;
+
+/**
+ * 캐시에 저장할 키와 값을 바이트배열로 변환하는 직렬화 인터페이스
+ */
+public interface CacheSerializer {
+
+	/**
+	 * 객체를 바이트배열로 직렬화 한다.
+	 * @param obj 직렬화할 객체
+	 * @return 바이트배열
+	 */
+	byte[] serialize(Object obj);
+
+	/**
+	 * 바이트배열을 객체로 역직렬화 한다.
+	 * @param bytes 바이트배열
+	 * @return 역직렬화된 객체, 바이트배열이 null 이면 null
+	 */
+	Object deserialize(byte[] bytes);
+}
@@ -0,0 +1,81 @@
+package kr.co.g2e.utils.cache;
+
+import kr.co.g2e.utils.config.Config;
+
+/**
+ * 설정파일(application.properties)의 cache.serializer 값으로 직렬화 구현체를 생성하는 클래스
+ * compact(기본값), java 또는 CacheSerializer 를 구현한 클래스명을 설정할 수 있다.
+ * cache.compress.enabled=true 이면 cache.compress.threshold(기본 4096 bytes) 보다 큰 값을
+ * cache.compress.level(기본 1) 레벨로 압축한다.
+ * Memcached 는 기존 Transcoder 와 같이 설정이 없어도 16KB 보다 큰 값을 압축한다. (cache.compress.enabled=false 로 끌 수 있다)
+ */
+public final class CacheSerializerFactory {
+
+	/**
+	 * 기본 압축 기준 크기 (4KB)
+	 */
+	private static final int DEFAULT_COMPRESS_THRESHOLD = 4 * 1024;
+
+	/**
+	 * 기본 압축 레벨 (가장 빠른 압축)
+	 */
+	private static final int DEFAULT_COMPRESS_LEVEL = 1;
+
+	/**
+	 * 생성자, 외부에서 객체를 인스턴스화 할 수 없도록 설정
+	 */
+	private CacheSerializerFactory() {
+	}
+
+	/**
+	 * 설정파일에 지정된 값 직렬화 구현체를 생성한다.
+	 * @return 직렬화 구현체
+	 */
+	public static CacheSerializer createValueSerializer() {
+		return createValueSerializer(false, DEFAULT_COMPRESS_THRESHOLD);
+	}
+
+	/**
+	 * 설정파일에 지정된 값 직렬화 구현체를 생성한다. 압축 설정이 없으면 인자로 받은 기본값을 사용한다.
+	 * @param compress 기본 압축 여부
+	 * @param threshold 기본 압축 기준 크기(bytes)
+	 * @return 직렬화 구현체
+	 */
+	public static CacheSerializer createValueSerializer(boolean compress, int threshold) {
+		Config config = Config.getInstance();
+		CacheSerializer serializer = create(config.getString("cache.serializer", "compact"));
+		if (config.getBoolean("cache.compress.enabled", Boolean.valueOf(compress))) {
+			threshold = config.getInt("cache.compress.threshold", threshold);
+			int level = config.getInt("cache.compress.level", DEFAULT_COMPRESS_LEVEL);
+			serializer = new CompressingSerializer(serializer, threshold, level);
+		}
+		return serializer;
+	}
+
+	/**
+	 * 키 직렬화 구현체를 생성한다.
+	 * @return 직렬화 구현체
+	 */
+	public static CacheSerializer createKeySerializer() {
+		return new StringSerializer();
+	}
+
+	/**
+	 * 이름으로 직렬화 구현체를 생성한다.
+	 * @param name compact, java 또는 클래스명
+	 * @return 직렬화 구현체
+	 */
+	public static CacheSerializer create(String name) {
+		if ("compact".equalsIgnoreCase(name)) {
+			return new CompactSerializer();
+		}
+		if ("java".equalsIgnoreCase(name)) {
+			return new JavaSerializer();
+		}
+		try {
+			return (CacheSerializer) Class.forName(name).getDeclaredConstructor().newInstance();
+		} catch (Throwable e) {
+			throw new RuntimeException("직렬화 구현체 설정이 잘못되었습니다. cache.serializer=" + name, e);
+		}
+	}
+}
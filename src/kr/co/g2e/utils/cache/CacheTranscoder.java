@@ -0,0 +1,66 @@
+package kr.co.g2e.utils.cache;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+
+/**
+ * CacheSerializer 를 Memcached 클라이언트에서 사용할 수 있도록 연결하는 Transcoder
+ * 다른 플래그로 저장된 값(incr/decr 카운터, 기존 데이터)은 기본 Transcoder 로 복원한다.
+ */
+public final class CacheTranscoder implements Transcoder<Object> {
+
+	/**
+	 * CacheSerializer 로 저장된 값을 나타내는 플래그
+	 */
+	private static final int SERIALIZER_FLAG = 1 << 4;
+
+	/**
+	 * 직렬화 구현체
+	 */
+	private final CacheSerializer serializer;
+
+	/**
+	 * 기본 Transcoder
+	 */
+	private final SerializingTranscoder defaultTranscoder = new SerializingTranscoder();
+
+	/**
+	 * 캐시 지표
+	 */
+	private final CacheMetrics metrics = CacheMetrics.getInstance();
+
+	/**
+	 * 생성자
+	 * @param serializer 직렬화 구현체
+	 */
+	public CacheTranscoder(CacheSerializer serializer) {
+		this.serializer = serializer;
+	}
+
+	@Override
+	public boolean asyncDecode(CachedData data) {
+		return false;
+	}
+
+	@Override
+	public CachedData encode(Object obj) {
+		byte[] bytes = serializer.serialize(obj);
+		metrics.recordPayload(bytes.length);
+		return new CachedData(SERIALIZER_FLAG, bytes, getMaxSize());
+	}
+
+	@Override
+	public Object decode(CachedData data) {
+		metrics.recordPayload(data.getData().length);
+		if (data.getFlags() == SERIALIZER_FLAG) {
+			return serializer.deserialize(data.getData());
+		}
+		return defaultTranscoder.decode(data);
+	}
+
+	@Override
+	public int getMaxSize() {
+		return CachedData.MAX_SIZE;
+	}
+}
@@ -0,0 +1,431 @@
+package kr.co.g2e.utils.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.config.Config;
+
+/**
+ * 여러 대의 Redis 또는 Memcached 서버를 가상노드를 가진 일관된 해시 링으로 묶는 캐시 구현체
+ * 백그라운드에서 주기적으로 서버 상태를 확인하여 연속으로 실패한 서버는 링에서 일시적으로 제외하고,
+ * 제외된 서버가 담당하던 키 범위만 로컬 캐시(EhCache 또는 OffHeapCache)로 처리한다. 다른 서버의 키 배치는 바뀌지 않는다.
+ * 서버가 복구되면 제외되어 있는 동안 로컬에서 변경된 키를 원격에서 삭제한 후(너무 많으면 서버의 캐시를 비운 후) 다시 링에 참여시킨다.
+ * 설정파일에 cache.cluster.enabled=true 로 설정하면 memcached.servers(없으면 redis.servers)의 서버별로 노드를 만든다.
+ */
+public final class ClusterCache extends AbstractCache {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(ClusterCache.class);
+
+	/**
+	 * 싱글톤 객체
+	 */
+	private static ClusterCache uniqueInstance;
+
+	/**
+	 * 기본 서버당 가상노드 수
+	 */
+	private static final int VIRTUAL_NODES = 160;
+
+	/**
+	 * 기본 상태확인 주기 (초)
+	 */
+	private static final int CHECK_SECONDS = 5;
+
+	/**
+	 * 기본 제외 기준 연속 실패 횟수
+	 */
+	private static final int FAIL_COUNT = 2;
+
+	/**
+	 * 제외되어 있는 동안 기억할 변경된 키의 최대 건수
+	 */
+	private static final int MAX_DIRTY_KEYS = 10000;
+
+	/**
+	 * 해시 링
+	 */
+	private final TreeMap<Long, Node> ring = new TreeMap<Long, Node>();
+
+	/**
+	 * 노드 목록
+	 */
+	private final List<Node> nodes;
+
+	/**
+	 * 제외된 노드의 키를 처리할 로컬 캐시
+	 */
+	private final AbstractCache local;
+
+	/**
+	 * 제외 기준 연속 실패 횟수
+	 */
+	private final int failCount;
+
+	/**
+	 * 상태확인 스레드
+	 */
+	private final ScheduledExecutorService checker;
+
+	/**
+	 * 원격 캐시구현체 이름
+	 */
+	private final String backendName;
+
+	/**
+	 * 생성자, 외부에서 객체를 인스턴스화 할 수 없도록 설정
+	 */
+	private ClusterCache() {
+		Config config = Config.getInstance();
+		if (!config.getBoolean("cache.cluster.enabled", Boolean.FALSE)) {
+			throw new RuntimeException("cache.cluster.enabled 설정이 꺼져있습니다.");
+		}
+		String servers;
+		if (config.containsKey("memcached.servers")) {
+			servers = config.getString("memcached.servers");
+			backendName = "Memcached";
+		} else if (config.containsKey("redis.servers")) {
+			servers = config.getString("redis.servers");
+			backendName = "Redis";
+		} else {
+			throw new RuntimeException("memcached 또는 redis의 호스트설정이 누락되었습니다.");
+		}
+		nodes = new ArrayList<Node>();
+		for (String addr : servers.split("(?:\\s|,)+")) {
+			if ("".equals(addr)) {
+				continue;
+			}
+			AbstractCache backend = "Memcached".equals(backendName) ? new Memcached(addr) : new Redis(addr);
+			nodes.add(new Node(addr, backend));
+		}
+		if (nodes.isEmpty()) {
+			throw new RuntimeException("클러스터 노드설정이 누락되었습니다.");
+		}
+		int virtualNodes = config.getInt("cache.cluster.replicas", VIRTUAL_NODES);
+		for (Node node : nodes) {
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.put(Long.valueOf(hash(node.name + "#" + i)), node);
+			}
+		}
+		local = Cache.getLocalCache();
+		failCount = config.getInt("cache.cluster.fail.count", FAIL_COUNT);
+		int checkSeconds = config.getInt("cache.cluster.check.seconds", CHECK_SECONDS);
+		checker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "cache-cluster-check");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		checker.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				checkNodes();
+			}
+		}, checkSeconds, checkSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * 객체의 인스턴스를 리턴해준다.
+	 *
+	 * @return ClusterCache 객체의 인스턴스
+	 */
+	public synchronized static ClusterCache getInstance() {
+		if (uniqueInstance == null) {
+			uniqueInstance = new ClusterCache();
+		}
+		return uniqueInstance;
+	}
+
+	@Override
+	public void set(String key, Object value, int seconds) {
+		route(key).set(key, value, seconds);
+	}
+
+	@Override
+	public void set(Map<String, Object> valueMap, int seconds) {
+		Map<AbstractCache, Map<String, Object>> groupMap = new HashMap<AbstractCache, Map<String, Object>>();
+		for (Map.Entry<String, Object> entry : valueMap.entrySet()) {
+			AbstractCache target = route(entry.getKey());
+			Map<String, Object> group = groupMap.get(target);
+			if (group == null) {
+				group = new HashMap<String, Object>();
+				groupMap.put(target, group);
+			}
+			group.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<AbstractCache, Map<String, Object>> entry : groupMap.entrySet()) {
+			entry.getKey().set(entry.getValue(), seconds);
+		}
+	}
+
+	@Override
+	public boolean add(String key, Object value, int seconds) {
+		return route(key).add(key, value, seconds);
+	}
+
+	@Override
+	public Object get(String key) {
+		return route(key).get(key);
+	}
+
+	@Override
+	public Map<String, Object> get(String[] keys) {
+		Map<String, Object> resultMap = new HashMap<String, Object>();
+		for (Map.Entry<AbstractCache, List<String>> entry : groupByNode(keys).entrySet()) {
+			List<String> group = entry.getValue();
+			resultMap.putAll(entry.getKey().get(group.toArray(new String[group.size()])));
+		}
+		return resultMap;
+	}
+
+	@Override
+	public Object getWithRemainingSeconds(String key, Map<String, Integer> secondsMap) {
+		return route(key).getWithRemainingSeconds(key, secondsMap);
+	}
+
+	@Override
+	public Map<String, Object> getWithRemainingSeconds(String[] keys, Map<String, Integer> secondsMap) {
+		Map<String, Object> resultMap = new HashMap<String, Object>();
+		for (Map.Entry<AbstractCache, List<String>> entry : groupByNode(keys).entrySet()) {
+			List<String> group = entry.getValue();
+			resultMap.putAll(entry.getKey().getWithRemainingSeconds(group.toArray(new String[group.size()]), secondsMap));
+		}
+		return resultMap;
+	}
+
+	@Override
+	public long incr(String key, int by) {
+		return route(key).incr(key, by);
+	}
+
+	@Override
+	public long incr(String key, int by, int seconds) {
+		return route(key).incr(key, by, seconds);
+	}
+
+	@Override
+	public long decr(String key, int by) {
+		return route(key).decr(key, by);
+	}
+
+	@Override
+	public void delete(String key) {
+		route(key).delete(key);
+	}
+
+	@Override
+	public void delete(String[] keys) {
+		for (Map.Entry<AbstractCache, List<String>> entry : groupByNode(keys).entrySet()) {
+			List<String> group = entry.getValue();
+			entry.getKey().delete(group.toArray(new String[group.size()]));
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (Node node : nodes) {
+			if (node.available) {
+				node.backend.clear();
+			}
+		}
+		local.clear();
+	}
+
+	@Override
+	public boolean isAvailable() {
+		for (Node node : nodes) {
+			if (node.available) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public CompletableFuture<Object> getAsync(String key) {
+		return route(key).getAsync(key);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> setAsync(String key, Object value, int seconds) {
+		return route(key).setAsync(key, value, seconds);
+	}
+
+	@Override
+	public CompletableFuture<Long> incrAsync(String key, int by) {
+		return route(key).incrAsync(key, by);
+	}
+
+	@Override
+	public void shutdown() {
+		checker.shutdownNow();
+	}
+
+	/**
+	 * 원격 캐시구현체 이름을 리턴한다.
+	 * @return Memcached 또는 Redis
+	 */
+	public String getBackendName() {
+		return backendName;
+	}
+
+	/**
+	 * 노드별 상태를 리턴한다.
+	 * @return 노드 주소와 사용 가능 여부의 맵
+	 */
+	public Map<String, Boolean> getNodeStatus() {
+		Map<String, Boolean> result = new LinkedHashMap<String, Boolean>();
+		for (Node node : nodes) {
+			result.put(node.name, Boolean.valueOf(node.available));
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 키를 담당하는 노드를 찾는다.
+	 */
+	private Node getNode(String key) {
+		SortedMap<Long, Node> tail = ring.tailMap(Long.valueOf(hash(key)));
+		return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+	}
+
+	/**
+	 * 키를 처리할 캐시구현체를 리턴한다. 담당 노드가 제외되어 있으면 로컬 캐시를 리턴하고 변경된 키로 기억한다.
+	 */
+	private AbstractCache route(String key) {
+		Node node = getNode(key);
+		if (node.available) {
+			return node.backend;
+		}
+		node.markDirty(key);
+		return local;
+	}
+
+	/**
+	 * 키를 처리할 캐시구현체별로 분류한다.
+	 */
+	private Map<AbstractCache, List<String>> groupByNode(String[] keys) {
+		Map<AbstractCache, List<String>> groupMap = new HashMap<AbstractCache, List<String>>();
+		for (String key : keys) {
+			AbstractCache target = route(key);
+			List<String> group = groupMap.get(target);
+			if (group == null) {
+				group = new ArrayList<String>();
+				groupMap.put(target, group);
+			}
+			group.add(key);
+		}
+		return groupMap;
+	}
+
+	/**
+	 * 모든 노드의 상태를 확인하여 제외하거나 다시 참여시킨다.
+	 */
+	private void checkNodes() {
+		for (Node node : nodes) {
+			boolean alive;
+			try {
+				alive = node.backend.isAvailable();
+			} catch (Throwable e) {
+				alive = false;
+			}
+			if (alive) {
+				node.failures = 0;
+				if (!node.available) {
+					rejoin(node);
+				}
+			} else if (++node.failures >= failCount && node.available) {
+				node.available = false;
+				CacheMetrics.getInstance().recordError("cluster.eject");
+				logger.warn(String.format("[ ClusterCache ] %s 노드를 링에서 제외합니다.", node.name));
+			}
+		}
+	}
+
+	/**
+	 * 제외되어 있는 동안 로컬에서 변경된 키를 원격에서 삭제하고 노드를 다시 참여시킨다.
+	 * 변경된 키가 MAX_DIRTY_KEYS 를 넘었으면 어떤 키가 바뀌었는지 모두 알 수 없으므로 노드의 캐시를 모두 비운다.
+	 */
+	private void rejoin(Node node) {
+		List<String> dirtyKeys = new ArrayList<String>(node.dirtyKeys);
+		try {
+			if (node.overflow) {
+				logger.warn(String.format("[ ClusterCache ] %s 노드가 제외된 동안 변경된 키가 %d건을 넘어 노드의 캐시를 모두 비웁니다.", node.name, MAX_DIRTY_KEYS));
+				node.backend.clear();
+			} else if (!dirtyKeys.isEmpty()) {
+				node.backend.delete(dirtyKeys.toArray(new String[dirtyKeys.size()]));
+			}
+		} catch (Throwable e) {
+			logger.warn(String.format("[ ClusterCache ] %s 노드 복구 중 키 삭제 실패", node.name), e);
+			return;
+		}
+		node.dirtyKeys.removeAll(dirtyKeys);
+		node.overflow = false;
+		node.available = true;
+		logger.info(String.format("[ ClusterCache ] %s 노드를 링에 다시 참여시킵니다.", node.name));
+	}
+
+	/**
+	 * 문자열의 64비트 해시값을 구한다. (FNV-1a 후 비트 섞기)
+	 */
+	private static long hash(String str) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < str.length(); i++) {
+			h ^= str.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+		return h;
+	}
+
+	/**
+	 * 링을 구성하는 서버 노드
+	 */
+	private static final class Node {
+		private final String name;
+		private final AbstractCache backend;
+		private final Set<String> dirtyKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		private volatile boolean available = true;
+		private volatile boolean overflow = false;
+		private int failures = 0;
+
+		private Node(String name, AbstractCache backend) {
+			this.name = name;
+			this.backend = backend;
+		}
+
+		private void markDirty(String key) {
+			if (dirtyKeys.size() < MAX_DIRTY_KEYS) {
+				dirtyKeys.add(key);
+			} else {
+				overflow = true;
+			}
+		}
+	}
+}
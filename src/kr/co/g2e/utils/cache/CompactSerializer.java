@@ -0,0 +1,380 @@
+package kr.co.g2e.utils.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import kr.co.g2e.utils.util.RecordMap;
+import kr.co.g2e.utils.util.RecordSet;
+
+/**
+ * 기본형, 문자열, RecordMap, RecordSet, CacheEntry 를 타입태그 기반의 간결한 바이너리로 변환하는 직렬화 구현체
+ * 지원하지 않는 타입은 java.io 직렬화로 대체하며,
+ * 태그 없이 저장된 java.io 직렬화 데이터와 정수 카운터(incr/decr) 값도 읽을 수 있다.
+ */
+public final class CompactSerializer implements CacheSerializer {
+
+	/**
+	 * 타입태그
+	 */
+	static final byte TYPE_NULL = 0x00;
+	static final byte TYPE_STRING = 0x01;
+	static final byte TYPE_INTEGER = 0x02;
+	static final byte TYPE_LONG = 0x03;
+	static final byte TYPE_DOUBLE = 0x04;
+	static final byte TYPE_FLOAT = 0x05;
+	static final byte TYPE_SHORT = 0x06;
+	static final byte TYPE_BYTE = 0x07;
+	static final byte TYPE_BOOLEAN = 0x08;
+	static final byte TYPE_CHARACTER = 0x09;
+	static final byte TYPE_BIG_DECIMAL = 0x0A;
+	static final byte TYPE_BIG_INTEGER = 0x0B;
+	static final byte TYPE_DATE = 0x0C;
+	static final byte TYPE_RECORD_MAP = 0x0D;
+	static final byte TYPE_RECORD_SET = 0x0E;
+	static final byte TYPE_BYTE_ARRAY = 0x0F;
+	static final byte TYPE_JAVA = 0x10;
+	static final byte TYPE_CACHE_ENTRY = 0x11;
+
+	/**
+	 * java.io 직렬화 스트림의 첫 바이트 (0xACED)
+	 */
+	private static final byte JAVA_STREAM_MAGIC = (byte) 0xAC;
+
+	/**
+	 * RecordSet Row 인코딩 방식 (컬럼순서의 값만 저장 / 키와 값을 모두 저장)
+	 */
+	private static final byte ROW_COLUMNS = 0;
+	private static final byte ROW_MAP = 1;
+
+	/**
+	 * 지원하지 않는 타입을 위한 직렬화 구현체
+	 */
+	private final JavaSerializer javaSerializer = new JavaSerializer();
+
+	@Override
+	public byte[] serialize(Object obj) {
+		SerializerBuffer buffer = SerializerBuffer.acquire();
+		try {
+			DataOutputStream out = new DataOutputStream(buffer);
+			writeObject(out, obj);
+			out.flush();
+			return buffer.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			buffer.release();
+		}
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		if (bytes.length == 0) {
+			return null;
+		}
+		if (bytes[0] == JAVA_STREAM_MAGIC) {
+			return javaSerializer.deserialize(bytes);
+		}
+		if (isAsciiNumber(bytes)) {
+			return Long.valueOf(new String(bytes, StandardCharsets.US_ASCII));
+		}
+		try {
+			return readObject(new DataInputStream(new ByteArrayInputStream(bytes)));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 객체를 타입태그와 함께 기록한다.
+	 */
+	private void writeObject(DataOutputStream out, Object obj) throws IOException {
+		if (obj == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (obj instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, (String) obj);
+		} else if (obj instanceof Integer) {
+			out.writeByte(TYPE_INTEGER);
+			out.writeInt((Integer) obj);
+		} else if (obj instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) obj);
+		} else if (obj instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) obj);
+		} else if (obj instanceof Float) {
+			out.writeByte(TYPE_FLOAT);
+			out.writeFloat((Float) obj);
+		} else if (obj instanceof Short) {
+			out.writeByte(TYPE_SHORT);
+			out.writeShort((Short) obj);
+		} else if (obj instanceof Byte) {
+			out.writeByte(TYPE_BYTE);
+			out.writeByte((Byte) obj);
+		} else if (obj instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) obj);
+		} else if (obj instanceof Character) {
+			out.writeByte(TYPE_CHARACTER);
+			out.writeChar((Character) obj);
+		} else if (obj.getClass() == BigDecimal.class) {
+			BigDecimal decimal = (BigDecimal) obj;
+			out.writeByte(TYPE_BIG_DECIMAL);
+			out.writeInt(decimal.scale());
+			writeBytes(out, decimal.unscaledValue().toByteArray());
+		} else if (obj.getClass() == BigInteger.class) {
+			out.writeByte(TYPE_BIG_INTEGER);
+			writeBytes(out, ((BigInteger) obj).toByteArray());
+		} else if (obj.getClass() == Date.class) {
+			out.writeByte(TYPE_DATE);
+			out.writeLong(((Date) obj).getTime());
+		} else if (obj.getClass() == RecordMap.class) {
+			out.writeByte(TYPE_RECORD_MAP);
+			writeRecordMap(out, (RecordMap) obj);
+		} else if (obj.getClass() == RecordSet.class) {
+			out.writeByte(TYPE_RECORD_SET);
+			writeRecordSet(out, (RecordSet) obj);
+		} else if (obj instanceof byte[]) {
+			out.writeByte(TYPE_BYTE_ARRAY);
+			writeBytes(out, (byte[]) obj);
+		} else if (obj instanceof CacheEntry) {
+			CacheEntry entry = (CacheEntry) obj;
+			out.writeByte(TYPE_CACHE_ENTRY);
+			out.writeLong(entry.getComputeMillis());
+			out.writeLong(entry.getExpireTime());
+			writeObject(out, entry.getValue());
+		} else {
+			out.writeByte(TYPE_JAVA);
+			writeBytes(out, javaSerializer.serialize(obj));
+		}
+	}
+
+	/**
+	 * 타입태그를 읽어 객체를 복원한다.
+	 */
+	private Object readObject(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_STRING:
+			return readString(in);
+		case TYPE_INTEGER:
+			return Integer.valueOf(in.readInt());
+		case TYPE_LONG:
+			return Long.valueOf(in.readLong());
+		case TYPE_DOUBLE:
+			return Double.valueOf(in.readDouble());
+		case TYPE_FLOAT:
+			return Float.valueOf(in.readFloat());
+		case TYPE_SHORT:
+			return Short.valueOf(in.readShort());
+		case TYPE_BYTE:
+			return Byte.valueOf(in.readByte());
+		case TYPE_BOOLEAN:
+			return Boolean.valueOf(in.readBoolean());
+		case TYPE_CHARACTER:
+			return Character.valueOf(in.readChar());
+		case TYPE_BIG_DECIMAL:
+			int scale = in.readInt();
+			return new BigDecimal(new BigInteger(readBytes(in)), scale);
+		case TYPE_BIG_INTEGER:
+			return new BigInteger(readBytes(in));
+		case TYPE_DATE:
+			return new Date(in.readLong());
+		case TYPE_RECORD_MAP:
+			return readRecordMap(in);
+		case TYPE_RECORD_SET:
+			return readRecordSet(in);
+		case TYPE_BYTE_ARRAY:
+			return readBytes(in);
+		case TYPE_JAVA:
+			return javaSerializer.deserialize(readBytes(in));
+		case TYPE_CACHE_ENTRY:
+			long computeMillis = in.readLong();
+			long expireTime = in.readLong();
+			return new CacheEntry(readObject(in), computeMillis, expireTime);
+		default:
+			throw new IOException("알 수 없는 타입태그입니다. type=" + type);
+		}
+	}
+
+	private void writeRecordMap(DataOutputStream out, RecordMap map) throws IOException {
+		out.writeInt(map.size());
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeObject(out, entry.getValue());
+		}
+	}
+
+	private RecordMap readRecordMap(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		RecordMap map = new RecordMap(size);
+		for (int i = 0; i < size; i++) {
+			String key = readString(in);
+			map.put(key, readObject(in));
+		}
+		return map;
+	}
+
+	private void writeRecordSet(DataOutputStream out, RecordSet rs) throws IOException {
+		String[] columns = rs.getColumns();
+		writeStringArray(out, columns);
+		writeIntArray(out, rs.getColumnsSize());
+		writeIntArray(out, rs.getColumnsSizeReal());
+		writeIntArray(out, rs.getColumnsScale());
+		writeStringArray(out, rs.getColumnsInfo());
+		writeIntArray(out, rs.getColumnsType());
+		List<RecordMap> rows = rs.getRows();
+		out.writeInt(rows.size());
+		for (RecordMap row : rows) {
+			if (isColumnOrdered(row, columns)) {
+				out.writeByte(ROW_COLUMNS);
+				for (Object value : row.values()) {
+					writeObject(out, value);
+				}
+			} else {
+				out.writeByte(ROW_MAP);
+				writeRecordMap(out, row);
+			}
+		}
+		out.writeInt(rs.getCurrentRow());
+	}
+
+	private RecordSet readRecordSet(DataInputStream in) throws IOException {
+		String[] columns = readStringArray(in);
+		int[] colSize = readIntArray(in);
+		int[] colSizeReal = readIntArray(in);
+		int[] colScale = readIntArray(in);
+		String[] colInfo = readStringArray(in);
+		int[] columnsType = readIntArray(in);
+		int rowCount = in.readInt();
+		List<RecordMap> rows = new ArrayList<RecordMap>(rowCount);
+		for (int i = 0; i < rowCount; i++) {
+			if (in.readByte() == ROW_COLUMNS) {
+				RecordMap row = new RecordMap(columns.length);
+				for (String column : columns) {
+					row.put(column, readObject(in));
+				}
+				rows.add(row);
+			} else {
+				rows.add(readRecordMap(in));
+			}
+		}
+		RecordSet rs = new RecordSet(columns, colSize, colSizeReal, colScale, colInfo, columnsType, rows);
+		rs.moveRow(in.readInt());
+		return rs;
+	}
+
+	/**
+	 * Row의 키가 컬럼순서와 일치하는지 여부 (일치하면 값만 저장한다)
+	 */
+	private boolean isColumnOrdered(RecordMap row, String[] columns) {
+		if (columns == null || row.size() != columns.length) {
+			return false;
+		}
+		Iterator<String> keys = row.keySet().iterator();
+		for (String column : columns) {
+			if (!column.equals(keys.next())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void writeString(DataOutputStream out, String str) throws IOException {
+		writeBytes(out, str.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private void writeStringArray(DataOutputStream out, String[] array) throws IOException {
+		if (array == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(array.length);
+		for (String str : array) {
+			writeObject(out, str);
+		}
+	}
+
+	private String[] readStringArray(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		String[] array = new String[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = (String) readObject(in);
+		}
+		return array;
+	}
+
+	private void writeIntArray(DataOutputStream out, int[] array) throws IOException {
+		if (array == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(array.length);
+		for (int value : array) {
+			out.writeInt(value);
+		}
+	}
+
+	private int[] readIntArray(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		int[] array = new int[length];
+		for (int i = 0; i < length; i++) {
+			array[i] = in.readInt();
+		}
+		return array;
+	}
+
+	/**
+	 * incr/decr 로 저장된 ASCII 정수 값인지 판별한다.
+	 */
+	private boolean isAsciiNumber(byte[] bytes) {
+		int start = (bytes[0] == '-') ? 1 : 0;
+		if (start == bytes.length || bytes.length > 20) {
+			return false;
+		}
+		for (int i = start; i < bytes.length; i++) {
+			if (bytes[i] < '0' || bytes[i] > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+}
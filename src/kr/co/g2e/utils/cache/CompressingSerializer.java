@@ -0,0 +1,167 @@
+package kr.co.g2e.utils.cache;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 직렬화된 값이 기준 크기보다 크면 압축하여 저장하는 직렬화 구현체
+ * 압축된 값은 헤더바이트(0x1F)와 원본크기를 앞에 붙여 저장하고, 읽을 때 헤더를 보고 압축을 해제한다.
+ * 헤더가 없는 값은 그대로 원래의 직렬화 구현체로 전달되므로 압축을 켜기 전에 저장된 값도 읽을 수 있다.
+ */
+public final class CompressingSerializer implements CacheSerializer {
+
+	/**
+	 * 압축된 값을 나타내는 헤더바이트
+	 */
+	static final byte COMPRESSED_HEADER = 0x1F;
+
+	/**
+	 * 헤더 길이 (헤더바이트 + 원본크기)
+	 */
+	private static final int HEADER_LENGTH = 5;
+
+	/**
+	 * 스레드별 압축기 (레벨별로 하나씩, 모든 인스턴스가 공유한다)
+	 */
+	private static final ThreadLocal<Deflater[]> DEFLATERS = new ThreadLocal<Deflater[]>() {
+		@Override
+		protected Deflater[] initialValue() {
+			return new Deflater[Deflater.BEST_COMPRESSION + 1];
+		}
+	};
+
+	/**
+	 * 스레드별 압축해제기 (모든 인스턴스가 공유한다)
+	 */
+	private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater();
+		}
+	};
+
+	/**
+	 * 원래의 직렬화 구현체
+	 */
+	private final CacheSerializer serializer;
+
+	/**
+	 * 압축 기준 크기(bytes)
+	 */
+	private final int threshold;
+
+	/**
+	 * 압축 레벨
+	 */
+	private final int level;
+
+	/**
+	 * 생성자
+	 * ClusterCache 처럼 노드마다 인스턴스를 만들어도 압축기는 JVM 전체에서 스레드마다 레벨별로 하나만 만든다.
+	 * @param serializer 원래의 직렬화 구현체
+	 * @param threshold 압축 기준 크기(bytes)
+	 * @param level 압축 레벨(1~9, 1이 가장 빠르다)
+	 */
+	public CompressingSerializer(CacheSerializer serializer, int threshold, int level) {
+		if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("압축 레벨은 1~9 사이의 값이어야 합니다.");
+		}
+		this.serializer = serializer;
+		this.threshold = threshold;
+		this.level = level;
+	}
+
+	@Override
+	public byte[] serialize(Object obj) {
+		byte[] bytes = serializer.serialize(obj);
+		if (bytes.length < threshold) {
+			return bytes;
+		}
+		byte[] compressed = compress(bytes);
+		return (compressed == null) ? bytes : compressed;
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) {
+		if (bytes != null && bytes.length > HEADER_LENGTH && bytes[0] == COMPRESSED_HEADER) {
+			return serializer.deserialize(decompress(bytes));
+		}
+		return serializer.deserialize(bytes);
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 바이트배열을 압축한다.
+	 * @param bytes 원본 바이트배열
+	 * @return 헤더가 붙은 압축 바이트배열, 압축해도 크기가 줄지 않으면 null
+	 */
+	private byte[] compress(byte[] bytes) {
+		Deflater def = getDeflater();
+		SerializerBuffer buffer = SerializerBuffer.acquire();
+		try {
+			def.reset();
+			def.setInput(bytes);
+			def.finish();
+			buffer.write(COMPRESSED_HEADER);
+			buffer.write(bytes.length >>> 24);
+			buffer.write(bytes.length >>> 16);
+			buffer.write(bytes.length >>> 8);
+			buffer.write(bytes.length);
+			byte[] chunk = new byte[Math.min(bytes.length, 8 * 1024)];
+			while (!def.finished()) {
+				int count = def.deflate(chunk);
+				buffer.write(chunk, 0, count);
+				if (buffer.size() >= bytes.length) {
+					return null;
+				}
+			}
+			return buffer.toByteArray();
+		} finally {
+			buffer.release();
+		}
+	}
+
+	/**
+	 * 헤더가 붙은 압축 바이트배열을 해제한다.
+	 * @param bytes 압축 바이트배열
+	 * @return 원본 바이트배열
+	 */
+	private byte[] decompress(byte[] bytes) {
+		int length = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+		byte[] result = new byte[length];
+		Inflater inf = INFLATER.get();
+		try {
+			inf.reset();
+			inf.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+			int offset = 0;
+			while (offset < length && !inf.finished()) {
+				int count = inf.inflate(result, offset, length - offset);
+				if (count == 0 && (inf.needsInput() || inf.needsDictionary())) {
+					break;
+				}
+				offset += count;
+			}
+			if (offset != length) {
+				throw new RuntimeException("압축된 캐시 값이 손상되었습니다.");
+			}
+			return result;
+		} catch (DataFormatException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * 현재 스레드의 압축 레벨에 맞는 압축기를 리턴한다.
+	 */
+	private Deflater getDeflater() {
+		Deflater[] deflaters = DEFLATERS.get();
+		Deflater def = deflaters[level];
+		if (def == null) {
+			def = new Deflater(level);
+			deflaters[level] = def;
+		}
+		return def;
+	}
+}
@@ -2,6 +2,7 @@ package kr.co.g2e.utils.cache;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
@@ -59,6 +60,13 @@ public final class EhCache extends AbstractCache {
 		cache.put(e);
 	}
 
+	@Override
+	public boolean add(String key, Object value, int seconds) {
+		Element e = new Element(key, value);
+		e.setTimeToLive(seconds);
+		return cache.putIfAbsent(e) == null;
+	}
+
 	@Override
 	public Object get(String key) {
 		Element e = cache.get(key);
@@ -75,29 +83,34 @@ public final class EhCache extends AbstractCache {
 	}
 
 	@Override
-	public synchronized long incr(String key, int by) {
-		Element e = cache.get(key);
-		if (e == null) {
-			return -1;
-		}
-		long newValue = ((Number) e.getObjectValue()).longValue() + by;
-		Element newE = new Element(key, newValue);
-		newE.setTimeToLive(e.getTimeToLive());
-		cache.put(newE);
-		return newValue;
+	public long incr(String key, int by) {
+		return add(key, by);
 	}
 
 	@Override
-	public synchronized long decr(String key, int by) {
-		Element e = cache.get(key);
-		if (e == null) {
-			return -1;
-		}
-		long newValue = ((Number) e.getObjectValue()).longValue() - by;
-		Element newE = new Element(key, newValue);
-		newE.setTimeToLive(e.getTimeToLive());
-		cache.put(newE);
-		return newValue;
+	public long decr(String key, int by) {
+		return add(key, -by);
+	}
+
+	@Override
+	public CompletableFuture<Object> getAsync(String key) {
+		return CompletableFuture.completedFuture(get(key));
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Object>> getBulkAsync(String[] keys) {
+		return CompletableFuture.completedFuture(get(keys));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> setAsync(String key, Object value, int seconds) {
+		set(key, value, seconds);
+		return CompletableFuture.completedFuture(Boolean.TRUE);
+	}
+
+	@Override
+	public CompletableFuture<Long> incrAsync(String key, int by) {
+		return CompletableFuture.completedFuture(Long.valueOf(incr(key, by)));
 	}
 
 	@Override
@@ -109,4 +122,28 @@ public final class EhCache extends AbstractCache {
 	public void clear() {
 		cache.removeAll();
 	}
-}
\ No newline at end of file
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 키의 값에 delta 를 더한다.
+	 * 싱글톤 모니터 락 대신 키 단위의 compare-and-swap(replace)을 반복하므로 서로 다른 키는 경합하지 않으며,
+	 * 생성시각과 캐시시간을 그대로 복사하여 값이 바뀌어도 최초의 만료시각이 연장되지 않는다.
+	 * @param key 키
+	 * @param delta 더할 값
+	 * @return 변경된 후 값, 키가 없으면 -1
+	 */
+	private long add(String key, long delta) {
+		while (true) {
+			Element e = cache.get(key);
+			if (e == null) {
+				return -1;
+			}
+			long newValue = ((Number) e.getObjectValue()).longValue() + delta;
+			Element newE = new Element(key, newValue, e.getVersion(), e.getCreationTime(), e.getLastAccessTime(), e.getHitCount(), e.usesCacheDefaultLifespan(), e.getTimeToLive(), e.getTimeToIdle(), System.currentTimeMillis());
+			if (cache.replace(e, newE)) {
+				return newValue;
+			}
+		}
+	}
+}
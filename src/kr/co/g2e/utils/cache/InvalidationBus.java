@@ -0,0 +1,293 @@
+package kr.co.g2e.utils.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.config.Config;
+
+/**
+ * 로컬 캐시(EhCache, OffHeapCache, NearCache 의 L1)의 삭제를 다른 WAS 노드에 전파하는 무효화 버스
+ * 한 노드에서 값을 설정하거나 삭제하면 다른 노드는 자신의 로컬 캐시에서 해당 키를 지우고, 다음 조회시 새 값을 읽는다.
+ * 메시지는 별도 스레드에서 보내므로 캐시 연산의 응답시간에 영향을 주지 않으며, 자신이 보낸 메시지는 무시한다.
+ * 키는 "길이:키" 형식으로 이어 붙이므로 줄바꿈 등 어떤 문자가 들어 있어도 되며, 키가 많으면 MAX_MESSAGE_SIZE 이하의 여러 메시지로 나누어 보낸다.
+ * 설정파일에 cache.bus.enabled=true 로 설정하면 Cache.init 에서 시작되며,
+ * cache.bus.transport 는 redis(redis.servers 가 있으면 기본값), multicast 또는 InvalidationTransport 구현 클래스명을 설정할 수 있다.
+ */
+public final class InvalidationBus {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(InvalidationBus.class);
+
+	/**
+	 * 기본 채널 이름
+	 */
+	static final String DEFAULT_CHANNEL = "g2e.cache.invalidation";
+
+	/**
+	 * 발송 대기열 크기
+	 */
+	private static final int QUEUE_SIZE = 10000;
+
+	/**
+	 * 한 메시지의 최대 크기 (UDP 멀티캐스트 한 패킷에 들어가도록 65507 바이트보다 작게 잡는다)
+	 */
+	static final int MAX_MESSAGE_SIZE = 60000;
+
+	/**
+	 * 메시지 머리(노드 식별자, 유형) 구분자
+	 */
+	private static final char SEPARATOR = '\n';
+
+	/**
+	 * 키 길이와 키의 구분자
+	 */
+	private static final char LENGTH_SEPARATOR = ':';
+
+	/**
+	 * 키 삭제 메시지 유형
+	 */
+	private static final String TYPE_DELETE = "D";
+
+	/**
+	 * 전체 삭제 메시지 유형
+	 */
+	private static final String TYPE_CLEAR = "C";
+
+	/**
+	 * 이 노드의 식별자
+	 */
+	private final String nodeId = UUID.randomUUID().toString();
+
+	/**
+	 * 전송 구현체
+	 */
+	private final InvalidationTransport transport;
+
+	/**
+	 * 무효화를 적용할 캐시구현체
+	 */
+	private final AbstractCache target;
+
+	/**
+	 * 발송 스레드
+	 */
+	private final ExecutorService publisher;
+
+	/**
+	 * 보낸 메시지 건수
+	 */
+	private final AtomicLong publishedCount = new AtomicLong();
+
+	/**
+	 * 받은 메시지 건수
+	 */
+	private final AtomicLong receivedCount = new AtomicLong();
+
+	/**
+	 * 보내지 못한 메시지 건수
+	 */
+	private final AtomicLong failedCount = new AtomicLong();
+
+	/**
+	 * 생성자
+	 * @param transport 전송 구현체
+	 * @param target 무효화를 적용할 캐시구현체
+	 */
+	public InvalidationBus(InvalidationTransport transport, AbstractCache target) {
+		this.transport = transport;
+		this.target = target;
+		this.publisher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "cache-bus-publisher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		transport.subscribe(new InvalidationTransport.Listener() {
+			@Override
+			public void onMessage(String message) {
+				receive(message);
+			}
+		});
+	}
+
+	/**
+	 * 설정파일에 지정된 전송 구현체를 생성한다.
+	 * @return 전송 구현체
+	 */
+	public static InvalidationTransport createTransport() {
+		Config config = Config.getInstance();
+		String name = config.getString("cache.bus.transport", config.containsKey("redis.servers") ? "redis" : "multicast");
+		if ("redis".equalsIgnoreCase(name)) {
+			return new RedisInvalidationTransport();
+		}
+		if ("multicast".equalsIgnoreCase(name)) {
+			return new MulticastInvalidationTransport();
+		}
+		try {
+			return (InvalidationTransport) Class.forName(name).getDeclaredConstructor().newInstance();
+		} catch (Throwable e) {
+			throw new RuntimeException("무효화 전송 구현체 설정이 잘못되었습니다. cache.bus.transport=" + name, e);
+		}
+	}
+
+	/**
+	 * 다른 노드에 키 삭제를 알린다. 메시지가 MAX_MESSAGE_SIZE 를 넘으면 여러 메시지로 나누어 보낸다.
+	 * @param keys 키
+	 */
+	public void publishDelete(String... keys) {
+		if (keys.length == 0) {
+			return;
+		}
+		String header = nodeId + SEPARATOR + TYPE_DELETE + SEPARATOR;
+		int headerSize = header.length();
+		StringBuilder message = new StringBuilder(header);
+		int size = headerSize;
+		for (String key : keys) {
+			String item = String.valueOf(key.length()) + LENGTH_SEPARATOR + key;
+			int itemSize = item.getBytes(StandardCharsets.UTF_8).length;
+			if (size > headerSize && size + itemSize > MAX_MESSAGE_SIZE) {
+				publish(message.toString());
+				message.setLength(headerSize);
+				size = headerSize;
+			}
+			message.append(item);
+			size += itemSize;
+		}
+		publish(message.toString());
+	}
+
+	/**
+	 * 다른 노드에 전체 삭제를 알린다.
+	 */
+	public void publishClear() {
+		publish(nodeId + SEPARATOR + TYPE_CLEAR);
+	}
+
+	/**
+	 * 보낸 메시지 건수를 리턴한다.
+	 * @return 건수
+	 */
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+	/**
+	 * 다른 노드에서 받은 메시지 건수를 리턴한다.
+	 * @return 건수
+	 */
+	public long getReceivedCount() {
+		return receivedCount.get();
+	}
+
+	/**
+	 * 보내지 못한 메시지 건수를 리턴한다.
+	 * @return 건수
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * 버스를 멈춘다.
+	 */
+	public void close() {
+		publisher.shutdown();
+		transport.close();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 발송 스레드에서 메시지를 보낸다.
+	 */
+	private void publish(final String message) {
+		try {
+			publisher.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						transport.publish(message);
+						publishedCount.incrementAndGet();
+					} catch (Throwable e) {
+						failedCount.incrementAndGet();
+						CacheMetrics.getInstance().recordError("bus.publish");
+						logger.warn("[ InvalidationBus ] 무효화 메시지 발송 실패", e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			failedCount.incrementAndGet();
+			CacheMetrics.getInstance().recordError("bus.publish");
+		}
+	}
+
+	/**
+	 * 받은 메시지를 로컬 캐시에 적용한다.
+	 */
+	private void receive(String message) {
+		int idEnd = message.indexOf(SEPARATOR);
+		if (idEnd < 0 || nodeId.equals(message.substring(0, idEnd))) {
+			return;
+		}
+		int typeEnd = message.indexOf(SEPARATOR, idEnd + 1);
+		String type = message.substring(idEnd + 1, typeEnd < 0 ? message.length() : typeEnd);
+		receivedCount.incrementAndGet();
+		try {
+			if (TYPE_DELETE.equals(type)) {
+				String[] keys = parseKeys(message, typeEnd < 0 ? message.length() : typeEnd + 1);
+				if (target instanceof NearCache) {
+					((NearCache) target).evictLocal(keys);
+				} else {
+					target.delete(keys);
+				}
+			} else if (TYPE_CLEAR.equals(type)) {
+				if (target instanceof NearCache) {
+					((NearCache) target).clearLocal();
+				} else {
+					target.clear();
+				}
+			}
+		} catch (Throwable e) {
+			CacheMetrics.getInstance().recordError("bus.receive");
+			logger.warn("[ InvalidationBus ] 무효화 메시지 적용 실패", e);
+		}
+	}
+
+	/**
+	 * "길이:키" 형식으로 이어 붙인 키 목록을 읽는다.
+	 */
+	private static String[] parseKeys(String message, int offset) {
+		List<String> keys = new ArrayList<String>();
+		int pos = offset;
+		while (pos < message.length()) {
+			int sep = message.indexOf(LENGTH_SEPARATOR, pos);
+			if (sep < 0) {
+				throw new IllegalArgumentException("무효화 메시지 형식이 잘못되었습니다.");
+			}
+			int length = Integer.parseInt(message.substring(pos, sep));
+			int end = sep + 1 + length;
+			if (length < 0 || end > message.length()) {
+				throw new IllegalArgumentException("무효화 메시지 형식이 잘못되었습니다.");
+			}
+			keys.add(message.substring(sep + 1, end));
+			pos = end;
+		}
+		return keys.toArray(new String[keys.size()]);
+	}
+}
@@ -0,0 +1,38 @@
+package kr.co.g2e.utils.cache;
+
+/**
+ * 캐시 무효화 메시지를 다른 WAS 노드로 전달하는 전송 계층 인터페이스
+ * 설정파일의 cache.bus.transport 에 redis, multicast 또는 이 인터페이스를 구현한 클래스명을 설정한다.
+ * 구현 클래스는 인자가 없는 생성자를 가져야 한다.
+ */
+public interface InvalidationTransport {
+
+	/**
+	 * 메시지를 모든 노드에 보낸다. (자신에게 되돌아와도 된다)
+	 * @param message 메시지
+	 */
+	void publish(String message);
+
+	/**
+	 * 메시지 수신을 시작한다.
+	 * @param listener 메시지를 받을 객체
+	 */
+	void subscribe(Listener listener);
+
+	/**
+	 * 수신을 멈추고 연결을 닫는다.
+	 */
+	void close();
+
+	/**
+	 * 수신한 메시지를 처리하는 인터페이스
+	 */
+	interface Listener {
+
+		/**
+		 * 메시지를 처리한다.
+		 * @param message 메시지
+		 */
+		void onMessage(String message);
+	}
+}
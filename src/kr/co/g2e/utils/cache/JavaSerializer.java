@@ -0,0 +1,39 @@
+package kr.co.g2e.utils.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * java.io 직렬화를 사용하는 직렬화 구현체
+ */
+public final class JavaSerializer implements CacheSerializer {
+
+	@Override
+	public byte[] serialize(Object obj) {
+		SerializerBuffer buffer = SerializerBuffer.acquire();
+		try {
+			ObjectOutputStream oos = new ObjectOutputStream(buffer);
+			oos.writeObject(obj);
+			oos.flush();
+			return buffer.toByteArray();
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		} finally {
+			buffer.release();
+		}
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		try {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			return ois.readObject();
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -2,21 +2,35 @@ package kr.co.g2e.utils.cache;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import kr.co.g2e.utils.config.Config;
 import net.spy.memcached.AddrUtil;
+import net.spy.memcached.ConnectionFactoryBuilder;
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.internal.BulkGetCompletionListener;
+import net.spy.memcached.internal.BulkGetFuture;
+import net.spy.memcached.internal.GetCompletionListener;
+import net.spy.memcached.internal.GetFuture;
+import net.spy.memcached.internal.OperationCompletionListener;
+import net.spy.memcached.internal.OperationFuture;
 
 /**
  * Memcached 캐시 구현체 (http://memcached.org/)
  */
 public final class Memcached extends AbstractCache {
 
+	/**
+	 * 기본 압축 기준 크기 (SerializingTranscoder 의 기본값과 같은 16KB)
+	 */
+	private static final int COMPRESS_THRESHOLD = 16 * 1024;
+
 	/**
 	 * 싱글톤 객체
 	 */
@@ -27,19 +41,35 @@ public final class Memcached extends AbstractCache {
 	 */
 	private final MemcachedClient client;
 
+	/**
+	 * 캐시 지표
+	 */
+	private final CacheMetrics metrics = CacheMetrics.getInstance();
+
+	/**
+	 * 서버 수
+	 */
+	private final int serverCount;
+
 	/**
 	 * 생성자, 외부에서 객체를 인스턴스화 할 수 없도록 설정
 	 */
 	private Memcached() {
+		this(getServers());
+	}
+
+	/**
+	 * 생성자, 지정한 서버에 연결하는 객체를 만든다. (ClusterCache 의 노드용)
+	 * @param servers 스페이스로 구분된 주소문자열
+	 */
+	Memcached(String servers) {
 		System.setProperty("net.spy.log.LoggerImpl", "net.spy.memcached.compat.log.Log4JLogger");
-		List<InetSocketAddress> addrList;
-		if (Config.getInstance().containsKey("memcached.servers")) {
-			addrList = AddrUtil.getAddresses(Config.getInstance().getString("memcached.servers"));
-		} else {
-			throw new RuntimeException("memcached의 호스트설정이 누락되었습니다.");
-		}
+		List<InetSocketAddress> addrList = AddrUtil.getAddresses(servers);
+		serverCount = addrList.size();
 		try {
-			client = new MemcachedClient(addrList);
+			ConnectionFactoryBuilder builder = new ConnectionFactoryBuilder();
+			builder.setTranscoder(new CacheTranscoder(CacheSerializerFactory.createValueSerializer(true, COMPRESS_THRESHOLD)));
+			client = new MemcachedClient(builder.build(), addrList);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -62,12 +92,25 @@ public final class Memcached extends AbstractCache {
 		client.set(key, seconds, value);
 	}
 
+	@Override
+	public boolean add(String key, Object value, int seconds) {
+		Future<Boolean> future = client.add(key, seconds, value);
+		try {
+			return future.get(1, TimeUnit.SECONDS).booleanValue();
+		} catch (Throwable e) {
+			metrics.recordError("memcached.add");
+			future.cancel(false);
+		}
+		return false;
+	}
+
 	@Override
 	public Object get(String key) {
 		Future<Object> future = client.asyncGet(key);
 		try {
 			return future.get(1, TimeUnit.SECONDS);
 		} catch (Throwable e) {
+			metrics.recordError("memcached.get");
 			future.cancel(false);
 		}
 		return null;
@@ -79,6 +122,7 @@ public final class Memcached extends AbstractCache {
 		try {
 			return future.get(1, TimeUnit.SECONDS);
 		} catch (Throwable e) {
+			metrics.recordError("memcached.getBulk");
 			future.cancel(false);
 		}
 		return Collections.<String, Object>emptyMap();
@@ -89,18 +133,122 @@ public final class Memcached extends AbstractCache {
 		return client.incr(key, by, 0);
 	}
 
+	@Override
+	public long incr(String key, int by, int seconds) {
+		return client.incr(key, by, by, seconds);
+	}
+
 	@Override
 	public long decr(String key, int by) {
 		return client.decr(key, by, 0);
 	}
 
+	@Override
+	public CompletableFuture<Object> getAsync(String key) {
+		final CompletableFuture<Object> result = new CompletableFuture<Object>();
+		client.asyncGet(key).addListener(new GetCompletionListener() {
+			@Override
+			public void onComplete(GetFuture<?> future) {
+				try {
+					result.complete(future.get());
+				} catch (Throwable e) {
+					metrics.recordError("memcached.getAsync");
+					result.complete(null);
+				}
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Object>> getBulkAsync(String[] keys) {
+		final CompletableFuture<Map<String, Object>> result = new CompletableFuture<Map<String, Object>>();
+		client.asyncGetBulk(keys).addListener(new BulkGetCompletionListener() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public void onComplete(BulkGetFuture<?> future) {
+				try {
+					result.complete((Map<String, Object>) future.get());
+				} catch (Throwable e) {
+					metrics.recordError("memcached.getBulkAsync");
+					result.complete(Collections.<String, Object>emptyMap());
+				}
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> setAsync(String key, Object value, int seconds) {
+		final CompletableFuture<Boolean> result = new CompletableFuture<Boolean>();
+		client.set(key, seconds, value).addListener(new OperationCompletionListener() {
+			@Override
+			public void onComplete(OperationFuture<?> future) {
+				try {
+					result.complete((Boolean) future.get());
+				} catch (Throwable e) {
+					metrics.recordError("memcached.setAsync");
+					result.complete(Boolean.FALSE);
+				}
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public CompletableFuture<Long> incrAsync(String key, int by) {
+		final CompletableFuture<Long> result = new CompletableFuture<Long>();
+		client.asyncIncr(key, by, 0, 0).addListener(new OperationCompletionListener() {
+			@Override
+			public void onComplete(OperationFuture<?> future) {
+				try {
+					result.complete((Long) future.get());
+				} catch (Throwable e) {
+					metrics.recordError("memcached.incrAsync");
+					// 동기 incr 과 같이 실패는 -1 로 알린다
+					result.complete(Long.valueOf(-1));
+				}
+			}
+		});
+		return result;
+	}
+
 	@Override
 	public void delete(String key) {
 		client.delete(key);
 	}
 
+	@Override
+	public boolean isAvailable() {
+		try {
+			Map<SocketAddress, String> versions = client.getVersions();
+			if (versions.size() < serverCount) {
+				return false;
+			}
+			for (String version : versions.values()) {
+				if (version == null) {
+					return false;
+				}
+			}
+			return true;
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
 	@Override
 	public void clear() {
 		client.flush();
 	}
+
+	/**
+	 * 설정파일에서 memcached 호스트 주소문자열을 읽어온다.
+	 * @return 주소문자열
+	 */
+	private static String getServers() {
+		if (Config.getInstance().containsKey("memcached.servers")) {
+			return Config.getInstance().getString("memcached.servers");
+		}
+		throw new RuntimeException("memcached의 호스트설정이 누락되었습니다.");
+	}
 }
\ No newline at end of file
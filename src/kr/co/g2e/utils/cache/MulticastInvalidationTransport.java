@@ -0,0 +1,157 @@
+package kr.co.g2e.utils.cache;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.config.Config;
+
+/**
+ * UDP 멀티캐스트로 캐시 무효화 메시지를 전달하는 전송 구현체 (Redis 가 없는 환경용)
+ * cache.bus.multicast.address(기본 239.255.27.1), cache.bus.multicast.port(기본 45588) 값을 사용한다.
+ * cache.bus.multicast.interface 에 네트워크 인터페이스 이름(예: eth0)을 지정하면 그 인터페이스로 주고받으며, 없으면 시스템 기본 인터페이스를 사용한다.
+ * UDP 이므로 메시지가 유실될 수 있으며, 한 메시지는 65507 바이트를 넘을 수 없다. (InvalidationBus 가 키 삭제 메시지를 그보다 작게 나누어 보낸다)
+ */
+public final class MulticastInvalidationTransport implements InvalidationTransport {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(MulticastInvalidationTransport.class);
+
+	/**
+	 * 기본 멀티캐스트 주소
+	 */
+	private static final String DEFAULT_ADDRESS = "239.255.27.1";
+
+	/**
+	 * 기본 포트
+	 */
+	private static final int DEFAULT_PORT = 45588;
+
+	/**
+	 * 최대 메시지 크기
+	 */
+	private static final int MAX_PACKET_SIZE = 65507;
+
+	/**
+	 * 멀티캐스트 그룹 주소
+	 */
+	private final InetAddress group;
+
+	/**
+	 * 멀티캐스트 그룹 소켓 주소
+	 */
+	private final InetSocketAddress groupAddress;
+
+	/**
+	 * 네트워크 인터페이스, 기본 인터페이스를 사용하면 null
+	 */
+	private final NetworkInterface networkInterface;
+
+	/**
+	 * 포트
+	 */
+	private final int port;
+
+	/**
+	 * 소켓
+	 */
+	private final MulticastSocket socket;
+
+	/**
+	 * 종료 여부
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * 생성자
+	 */
+	public MulticastInvalidationTransport() {
+		Config config = Config.getInstance();
+		try {
+			group = InetAddress.getByName(config.getString("cache.bus.multicast.address", DEFAULT_ADDRESS));
+			port = config.getInt("cache.bus.multicast.port", DEFAULT_PORT);
+			groupAddress = new InetSocketAddress(group, port);
+			networkInterface = getNetworkInterface(config.getString("cache.bus.multicast.interface", null));
+			socket = new MulticastSocket(port);
+			if (networkInterface != null) {
+				socket.setNetworkInterface(networkInterface);
+			}
+			socket.joinGroup(groupAddress, networkInterface);
+		} catch (IOException e) {
+			throw new RuntimeException("멀티캐스트 소켓을 열 수 없습니다.", e);
+		}
+	}
+
+	@Override
+	public void publish(String message) {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_PACKET_SIZE) {
+			throw new IllegalArgumentException("무효화 메시지가 너무 큽니다. size=" + bytes.length);
+		}
+		try {
+			socket.send(new DatagramPacket(bytes, bytes.length, group, port));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void subscribe(final Listener listener) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				byte[] buffer = new byte[MAX_PACKET_SIZE];
+				while (!closed) {
+					DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+					try {
+						socket.receive(packet);
+						listener.onMessage(new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8));
+					} catch (IOException e) {
+						if (!closed) {
+							logger.warn("[ MulticastInvalidationTransport ] 수신 실패", e);
+						}
+					}
+				}
+			}
+		}, "cache-bus-multicast");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			socket.leaveGroup(groupAddress, networkInterface);
+		} catch (IOException e) {
+			// 무시
+		}
+		socket.close();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 이름으로 네트워크 인터페이스를 찾는다.
+	 * @return 이름이 없으면 null
+	 */
+	private static NetworkInterface getNetworkInterface(String name) throws IOException {
+		if (name == null || name.trim().length() == 0) {
+			return null;
+		}
+		NetworkInterface networkInterface = NetworkInterface.getByName(name.trim());
+		if (networkInterface == null) {
+			throw new IOException("네트워크 인터페이스를 찾을 수 없습니다. cache.bus.multicast.interface=" + name);
+		}
+		return networkInterface;
+	}
+}
@@ -0,0 +1,442 @@
+package kr.co.g2e.utils.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 원격 캐시(Memcached, Redis) 앞단에 프로세스 내부 L1 캐시를 두는 2단계 캐시 구현체
+ * L1 캐시는 키의 해시로 나눈 구간별로 락을 따로 잡으며, 구간의 최대 건수를 넘으면 가장 오래 사용되지 않은 키부터 제거된다.
+ * L1 캐시시간은 원격 캐시시간과 설정된 최대 캐시시간 중 작은 값을 사용한다.
+ * 원격 캐시에서 읽어온 값은 값과 함께 남은 캐시시간을 조회할 수 있는 구현체(Redis, 한번의 파이프라인 요청)이면 그 시간을,
+ * 아니면(Memcached) 최대 캐시시간을 사용한다. 비동기 조회는 원격 요청을 늘리지 않도록 최대 캐시시간을 사용한다.
+ * 원격 캐시처럼 조회할 때마다 새 객체를 돌려주도록 변경 불가능한 값(String, 숫자, Boolean, Character)을 제외한 값은 직렬화하여 보관한다.
+ */
+public final class NearCache extends AbstractCache {
+
+	/**
+	 * 직렬화하지 않고 그대로 보관하는 변경 불가능한 타입
+	 */
+	private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>> asList(String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Boolean.class, Character.class, BigDecimal.class, BigInteger.class));
+
+	/**
+	 * 최대 구간 수
+	 */
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * 원격 캐시구현체
+	 */
+	private final AbstractCache remote;
+
+	/**
+	 * L1 캐시 최대 캐시시간(초단위)
+	 */
+	private final int maxSeconds;
+
+	/**
+	 * L1 캐시 구간 (구간마다 접근순서 유지)
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * 변경 가능한 값을 보관할 때 사용하는 직렬화 구현체
+	 */
+	private final CacheSerializer serializer;
+
+	/**
+	 * L1 캐시 적중 건수
+	 */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/**
+	 * L1 캐시 실패 건수
+	 */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * 생성자
+	 * @param remote 원격 캐시구현체
+	 * @param maxSize L1 캐시 최대 건수
+	 * @param maxSeconds L1 캐시 최대 캐시시간(초단위)
+	 */
+	public NearCache(AbstractCache remote, int maxSize, int maxSeconds) {
+		this(remote, maxSize, maxSeconds, new CompactSerializer());
+	}
+
+	/**
+	 * 생성자
+	 * @param remote 원격 캐시구현체
+	 * @param maxSize L1 캐시 최대 건수
+	 * @param maxSeconds L1 캐시 최대 캐시시간(초단위)
+	 * @param serializer 변경 가능한 값을 보관할 때 사용하는 직렬화 구현체
+	 */
+	public NearCache(AbstractCache remote, int maxSize, int maxSeconds, CacheSerializer serializer) {
+		if (remote == null) {
+			throw new IllegalArgumentException("원격 캐시구현체가 누락되었습니다.");
+		}
+		if (maxSize <= 0 || maxSeconds <= 0) {
+			throw new IllegalArgumentException("L1 캐시 설정이 잘못되었습니다.");
+		}
+		this.remote = remote;
+		this.maxSeconds = maxSeconds;
+		this.serializer = serializer;
+		int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxSize));
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(maxSize / count);
+		}
+	}
+
+	@Override
+	public void set(String key, Object value, int seconds) {
+		remote.set(key, value, seconds);
+		putLocal(key, value, (seconds > 0) ? seconds : -1);
+	}
+
+	@Override
+	public void set(Map<String, Object> valueMap, int seconds) {
+		remote.set(valueMap, seconds);
+		for (Map.Entry<String, Object> entry : valueMap.entrySet()) {
+			putLocal(entry.getKey(), entry.getValue(), (seconds > 0) ? seconds : -1);
+		}
+	}
+
+	@Override
+	public boolean add(String key, Object value, int seconds) {
+		removeLocal(key);
+		return remote.add(key, value, seconds);
+	}
+
+	@Override
+	public Object get(String key) {
+		Object value = getLocal(key);
+		if (value != null) {
+			hitCount.incrementAndGet();
+			return value;
+		}
+		missCount.incrementAndGet();
+		Map<String, Integer> secondsMap = new HashMap<String, Integer>(2);
+		value = remote.getWithRemainingSeconds(key, secondsMap);
+		if (value != null) {
+			putLocal(key, value, getSeconds(secondsMap, key));
+		}
+		return value;
+	}
+
+	@Override
+	public Map<String, Object> get(String[] keys) {
+		Map<String, Object> resultMap = new HashMap<String, Object>();
+		List<String> missKeys = new ArrayList<String>();
+		for (String key : keys) {
+			Object value = getLocal(key);
+			if (value != null) {
+				resultMap.put(key, value);
+			} else {
+				missKeys.add(key);
+			}
+		}
+		hitCount.addAndGet(keys.length - missKeys.size());
+		missCount.addAndGet(missKeys.size());
+		if (!missKeys.isEmpty()) {
+			Map<String, Integer> secondsMap = new HashMap<String, Integer>();
+			Map<String, Object> remoteMap = remote.getWithRemainingSeconds(missKeys.toArray(new String[missKeys.size()]), secondsMap);
+			putLocal(remoteMap, secondsMap);
+			resultMap.putAll(remoteMap);
+		}
+		return resultMap;
+	}
+
+	@Override
+	public long incr(String key, int by) {
+		removeLocal(key);
+		return remote.incr(key, by);
+	}
+
+	@Override
+	public long incr(String key, int by, int seconds) {
+		removeLocal(key);
+		return remote.incr(key, by, seconds);
+	}
+
+	@Override
+	public long decr(String key, int by) {
+		removeLocal(key);
+		return remote.decr(key, by);
+	}
+
+	@Override
+	public void delete(String key) {
+		remote.delete(key);
+		removeLocal(key);
+	}
+
+	@Override
+	public void delete(String[] keys) {
+		remote.delete(keys);
+		for (String key : keys) {
+			removeLocal(key);
+		}
+	}
+
+	@Override
+	public void clear() {
+		remote.clear();
+		clearLocal();
+	}
+
+	@Override
+	public void shutdown() {
+		remote.shutdown();
+	}
+
+	@Override
+	public CompletableFuture<Object> getAsync(final String key) {
+		Object value = getLocal(key);
+		if (value != null) {
+			hitCount.incrementAndGet();
+			return CompletableFuture.completedFuture(value);
+		}
+		missCount.incrementAndGet();
+		return remote.getAsync(key).thenApply(new Function<Object, Object>() {
+			@Override
+			public Object apply(Object value) {
+				if (value != null) {
+					putLocal(key, value, -1);
+				}
+				return value;
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Object>> getBulkAsync(String[] keys) {
+		final Map<String, Object> resultMap = new HashMap<String, Object>();
+		List<String> missKeys = new ArrayList<String>();
+		for (String key : keys) {
+			Object value = getLocal(key);
+			if (value != null) {
+				resultMap.put(key, value);
+			} else {
+				missKeys.add(key);
+			}
+		}
+		hitCount.addAndGet(keys.length - missKeys.size());
+		missCount.addAndGet(missKeys.size());
+		if (missKeys.isEmpty()) {
+			return CompletableFuture.completedFuture(resultMap);
+		}
+		return remote.getBulkAsync(missKeys.toArray(new String[missKeys.size()])).thenApply(new Function<Map<String, Object>, Map<String, Object>>() {
+			@Override
+			public Map<String, Object> apply(Map<String, Object> remoteMap) {
+				putLocal(remoteMap, new HashMap<String, Integer>());
+				resultMap.putAll(remoteMap);
+				return resultMap;
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<Boolean> setAsync(String key, Object value, int seconds) {
+		putLocal(key, value, (seconds > 0) ? seconds : -1);
+		return remote.setAsync(key, value, seconds);
+	}
+
+	@Override
+	public CompletableFuture<Long> incrAsync(String key, int by) {
+		removeLocal(key);
+		return remote.incrAsync(key, by);
+	}
+
+	/**
+	 * 원격 캐시는 그대로 두고 L1 캐시에서만 키를 삭제한다. (다른 노드의 무효화 메시지 처리용)
+	 * @param keys 키
+	 */
+	public void evictLocal(String... keys) {
+		for (String key : keys) {
+			removeLocal(key);
+		}
+	}
+
+	/**
+	 * 원격 캐시는 그대로 두고 L1 캐시만 비운다.
+	 */
+	public void clearLocal() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * L1 캐시 적중 건수를 리턴한다.
+	 * @return 적중 건수
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * L1 캐시 실패 건수를 리턴한다.
+	 * @return 실패 건수
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * L1 캐시에 저장된 건수를 리턴한다.
+	 * @return 저장 건수
+	 */
+	public int getLocalSize() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * 원격 캐시구현체를 리턴한다.
+	 * @return 원격 캐시구현체
+	 */
+	public AbstractCache getRemote() {
+		return remote;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * L1 캐시에서 만료되지 않은 값을 얻어온다. 직렬화하여 보관한 값은 역직렬화한 새 객체를 리턴한다.
+	 */
+	private Object getLocal(String key) {
+		Segment segment = segment(key);
+		Entry entry;
+		synchronized (segment) {
+			entry = segment.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.isExpired(System.currentTimeMillis())) {
+				segment.remove(key);
+				return null;
+			}
+		}
+		return entry.serialized ? serializer.deserialize((byte[]) entry.value) : entry.value;
+	}
+
+	/**
+	 * 원격 캐시에서 읽어온 값들을 남은 캐시시간으로 L1 캐시에 설정한다.
+	 */
+	private void putLocal(Map<String, Object> remoteMap, Map<String, Integer> secondsMap) {
+		for (Map.Entry<String, Object> entry : remoteMap.entrySet()) {
+			if (entry.getValue() != null) {
+				putLocal(entry.getKey(), entry.getValue(), getSeconds(secondsMap, entry.getKey()));
+			}
+		}
+	}
+
+	/**
+	 * 원격 캐시에서 함께 읽어온 남은 캐시시간을 리턴한다. 알 수 없으면 -1 (최대 캐시시간)을 리턴한다.
+	 */
+	private static int getSeconds(Map<String, Integer> secondsMap, String key) {
+		Integer seconds = secondsMap.get(key);
+		return (seconds == null) ? -1 : seconds.intValue();
+	}
+
+	/**
+	 * L1 캐시에 값을 설정한다.
+	 * @param seconds 캐시시간(초단위), 0 이면 설정하지 않고 음수이면 최대 캐시시간을 사용한다.
+	 */
+	private void putLocal(String key, Object value, int seconds) {
+		if (value == null || seconds == 0) {
+			removeLocal(key);
+			return;
+		}
+		int localSeconds = (seconds < 0) ? maxSeconds : Math.min(seconds, maxSeconds);
+		long expireTime = System.currentTimeMillis() + localSeconds * 1000L;
+		Entry entry;
+		if (IMMUTABLE_TYPES.contains(value.getClass())) {
+			entry = new Entry(value, false, expireTime);
+		} else {
+			try {
+				entry = new Entry(serializer.serialize(value), true, expireTime);
+			} catch (RuntimeException e) {
+				removeLocal(key);
+				return;
+			}
+		}
+		Segment segment = segment(key);
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	/**
+	 * L1 캐시에서 키를 삭제한다.
+	 */
+	private void removeLocal(String key) {
+		Segment segment = segment(key);
+		synchronized (segment) {
+			segment.remove(key);
+		}
+	}
+
+	/**
+	 * 키가 속한 구간을 리턴한다.
+	 */
+	private Segment segment(String key) {
+		int h = key.hashCode();
+		return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+	}
+
+	/**
+	 * L1 캐시 구간 (접근순서 유지, 최대 건수를 넘으면 가장 오래 사용되지 않은 키부터 제거)
+	 */
+	private static final class Segment extends LinkedHashMap<String, Entry> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+
+		private Segment(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	/**
+	 * L1 캐시 항목
+	 */
+	private static final class Entry {
+		private final Object value;
+		private final boolean serialized;
+		private final long expireTime;
+
+		private Entry(Object value, boolean serialized, long expireTime) {
+			this.value = value;
+			this.serialized = serialized;
+			this.expireTime = expireTime;
+		}
+
+		private boolean isExpired(long now) {
+			return now >= expireTime;
+		}
+	}
+}
@@ -0,0 +1,408 @@
+package kr.co.g2e.utils.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kr.co.g2e.utils.config.Config;
+
+/**
+ * 직렬화한 값을 힙 바깥(direct 또는 memory-mapped 버퍼)에 저장하는 로컬 캐시 구현체
+ * 키는 여러 세그먼트로 나누어 세그먼트별로 잠그며, 각 세그먼트는 고정 크기 블록으로 나눈 버퍼에 값을 나누어 저장한다.
+ * 저장 공간이 부족하면 가장 오래 사용되지 않은 키부터 제거하므로 전체 사용량은 설정한 바이트 수를 넘지 않는다.
+ * 힙에는 키와 블록 번호만 남으므로 큰 RecordSet 을 캐시해도 GC 대상 객체가 늘지 않는다.
+ * 설정파일에 cache.local=offheap 으로 설정하면 EhCache 대신 사용하며 다음 값을 설정할 수 있다.
+ * cache.offheap.size(MB, 기본 256), cache.offheap.segments(기본 16), cache.offheap.block.size(기본 512 bytes),
+ * cache.offheap.path(지정하면 해당 디렉토리의 임시파일을 memory-mapped 버퍼로 사용)
+ */
+public final class OffHeapCache extends AbstractCache {
+
+	/**
+	 * 싱글톤 객체
+	 */
+	private static OffHeapCache uniqueInstance;
+
+	/**
+	 * 기본 저장 크기 (MB)
+	 */
+	private static final int DEFAULT_SIZE_MB = 256;
+
+	/**
+	 * 기본 세그먼트 수
+	 */
+	private static final int DEFAULT_SEGMENTS = 16;
+
+	/**
+	 * 기본 블록 크기 (bytes)
+	 */
+	private static final int DEFAULT_BLOCK_SIZE = 512;
+
+	/**
+	 * 세그먼트
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * 값 직렬화 구현체
+	 */
+	private final CacheSerializer serializer;
+
+	/**
+	 * 공간 부족으로 제거된 건수
+	 */
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * 생성자, 외부에서 객체를 인스턴스화 할 수 없도록 설정
+	 */
+	private OffHeapCache() {
+		Config config = Config.getInstance();
+		long capacity = config.getLong("cache.offheap.size", Long.valueOf(DEFAULT_SIZE_MB)).longValue() * 1024 * 1024;
+		int segmentCount = config.getInt("cache.offheap.segments", DEFAULT_SEGMENTS);
+		int blockSize = config.getInt("cache.offheap.block.size", DEFAULT_BLOCK_SIZE);
+		String path = config.getString("cache.offheap.path", null);
+		if (capacity <= 0 || segmentCount <= 0 || blockSize <= 0) {
+			throw new IllegalArgumentException("오프힙 캐시 설정이 잘못되었습니다.");
+		}
+		long segmentBytes = capacity / segmentCount;
+		if (segmentBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("세그먼트 크기는 2GB 를 넘을 수 없습니다. cache.offheap.segments 값을 늘려주세요.");
+		}
+		int blockCount = (int) (segmentBytes / blockSize);
+		if (blockCount <= 0) {
+			throw new IllegalArgumentException("오프힙 캐시 크기가 너무 작습니다.");
+		}
+		segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(allocate(path, (long) blockCount * blockSize), blockSize, blockCount);
+		}
+		serializer = CacheSerializerFactory.createValueSerializer();
+	}
+
+	/**
+	 * 객체의 인스턴스를 리턴해준다.
+	 *
+	 * @return OffHeapCache 객체의 인스턴스
+	 */
+	public synchronized static OffHeapCache getInstance() {
+		if (uniqueInstance == null) {
+			uniqueInstance = new OffHeapCache();
+		}
+		return uniqueInstance;
+	}
+
+	@Override
+	public void set(String key, Object value, int seconds) {
+		if (value == null) {
+			delete(key);
+			return;
+		}
+		segmentFor(key).put(key, serializer.serialize(value), expireTime(seconds), false);
+	}
+
+	@Override
+	public boolean add(String key, Object value, int seconds) {
+		return segmentFor(key).put(key, serializer.serialize(value), expireTime(seconds), true);
+	}
+
+	@Override
+	public Object get(String key) {
+		byte[] bytes = segmentFor(key).get(key);
+		return (bytes == null) ? null : serializer.deserialize(bytes);
+	}
+
+	@Override
+	public Map<String, Object> get(String[] keys) {
+		Map<String, Object> resultMap = new HashMap<String, Object>();
+		for (String key : keys) {
+			resultMap.put(key, get(key));
+		}
+		return resultMap;
+	}
+
+	@Override
+	public long incr(String key, int by) {
+		return segmentFor(key).add(key, by);
+	}
+
+	@Override
+	public long decr(String key, int by) {
+		return segmentFor(key).add(key, -by);
+	}
+
+	@Override
+	public void delete(String key) {
+		segmentFor(key).remove(key);
+	}
+
+	@Override
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * 저장된 건수를 리턴한다.
+	 * @return 건수
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * 값이 차지하고 있는 바이트 수를 리턴한다. (블록 단위)
+	 * @return 사용중인 바이트 수
+	 */
+	public long getUsedBytes() {
+		long used = 0;
+		for (Segment segment : segments) {
+			used += segment.usedBytes();
+		}
+		return used;
+	}
+
+	/**
+	 * 전체 저장 공간의 바이트 수를 리턴한다.
+	 * @return 전체 바이트 수
+	 */
+	public long getCapacityBytes() {
+		long capacity = 0;
+		for (Segment segment : segments) {
+			capacity += segment.capacityBytes();
+		}
+		return capacity;
+	}
+
+	/**
+	 * 공간 부족으로 제거된 건수를 리턴한다.
+	 * @return 제거 건수
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 키가 속한 세그먼트를 리턴한다.
+	 */
+	private Segment segmentFor(String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[(h & 0x7fffffff) % segments.length];
+	}
+
+	/**
+	 * 캐시시간으로 만료시각을 구한다. 0 이하이면 만료되지 않는다.
+	 */
+	private static long expireTime(int seconds) {
+		return (seconds <= 0) ? Long.MAX_VALUE : System.currentTimeMillis() + seconds * 1000L;
+	}
+
+	/**
+	 * 세그먼트 버퍼를 할당한다. 경로가 있으면 임시파일을 memory-mapped 버퍼로 사용한다.
+	 */
+	private static ByteBuffer allocate(String path, long size) {
+		if (path == null || "".equals(path.trim())) {
+			return ByteBuffer.allocateDirect((int) size);
+		}
+		RandomAccessFile raf = null;
+		try {
+			File file = File.createTempFile("offheap", ".cache", new File(path.trim()));
+			file.deleteOnExit();
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(size);
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			throw new RuntimeException("오프힙 캐시 파일을 만들 수 없습니다. cache.offheap.path=" + path, e);
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					// 매핑된 버퍼는 파일을 닫아도 유효하다
+				}
+			}
+		}
+	}
+
+	/**
+	 * 고정 크기 블록으로 나눈 버퍼와 접근순서를 유지하는 키 색인으로 이루어진 세그먼트
+	 */
+	private final class Segment {
+		private final ByteBuffer buffer;
+		private final int blockSize;
+		private final int blockCount;
+		private final int[] freeBlocks;
+		private int freeCount;
+		private final LinkedHashMap<String, Entry> index = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+		private Segment(ByteBuffer buffer, int blockSize, int blockCount) {
+			this.buffer = buffer;
+			this.blockSize = blockSize;
+			this.blockCount = blockCount;
+			this.freeBlocks = new int[blockCount];
+			for (int i = 0; i < blockCount; i++) {
+				freeBlocks[i] = blockCount - 1 - i;
+			}
+			this.freeCount = blockCount;
+		}
+
+		/**
+		 * 값을 저장한다. 세그먼트보다 큰 값은 저장하지 않는다.
+		 */
+		private synchronized boolean put(String key, byte[] bytes, long expireTime, boolean ifAbsent) {
+			Entry old = index.get(key);
+			if (old != null && old.isExpired(System.currentTimeMillis())) {
+				release(index.remove(key));
+				old = null;
+			}
+			if (ifAbsent && old != null) {
+				return false;
+			}
+			if (old != null) {
+				release(index.remove(key));
+			}
+			int needed = (bytes.length + blockSize - 1) / blockSize;
+			if (needed > blockCount) {
+				return false;
+			}
+			evictFor(needed);
+			int[] blocks = new int[needed];
+			for (int i = 0; i < needed; i++) {
+				blocks[i] = freeBlocks[--freeCount];
+			}
+			write(blocks, bytes);
+			index.put(key, new Entry(blocks, bytes.length, expireTime));
+			return true;
+		}
+
+		private synchronized byte[] get(String key) {
+			Entry entry = index.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.isExpired(System.currentTimeMillis())) {
+				release(index.remove(key));
+				return null;
+			}
+			return read(entry);
+		}
+
+		/**
+		 * 숫자 값에 delta 를 더한다. 키가 없으면 -1 을 리턴한다. (EhCache 와 동일)
+		 */
+		private synchronized long add(String key, long delta) {
+			Entry entry = index.get(key);
+			if (entry == null) {
+				return -1;
+			}
+			if (entry.isExpired(System.currentTimeMillis())) {
+				release(index.remove(key));
+				return -1;
+			}
+			Object value = serializer.deserialize(read(entry));
+			long newValue = ((value instanceof Number) ? ((Number) value).longValue() : Long.parseLong(String.valueOf(value).trim())) + delta;
+			put(key, serializer.serialize(Long.valueOf(newValue)), entry.expireTime, false);
+			return newValue;
+		}
+
+		private synchronized void remove(String key) {
+			Entry entry = index.remove(key);
+			if (entry != null) {
+				release(entry);
+			}
+		}
+
+		private synchronized void clear() {
+			for (Entry entry : index.values()) {
+				release(entry);
+			}
+			index.clear();
+		}
+
+		private synchronized int size() {
+			return index.size();
+		}
+
+		private synchronized long usedBytes() {
+			return (long) (blockCount - freeCount) * blockSize;
+		}
+
+		private long capacityBytes() {
+			return (long) blockCount * blockSize;
+		}
+
+		/**
+		 * 필요한 블록 수만큼 빈 블록이 생길 때까지 가장 오래 사용되지 않은 키부터 제거한다.
+		 */
+		private void evictFor(int needed) {
+			Iterator<Entry> it = index.values().iterator();
+			while (freeCount < needed && it.hasNext()) {
+				Entry entry = it.next();
+				it.remove();
+				release(entry);
+				evictionCount.incrementAndGet();
+			}
+		}
+
+		private void release(Entry entry) {
+			for (int block : entry.blocks) {
+				freeBlocks[freeCount++] = block;
+			}
+		}
+
+		private void write(int[] blocks, byte[] bytes) {
+			int offset = 0;
+			for (int block : blocks) {
+				int length = Math.min(blockSize, bytes.length - offset);
+				buffer.position(block * blockSize);
+				buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		private byte[] read(Entry entry) {
+			byte[] bytes = new byte[entry.length];
+			int offset = 0;
+			for (int block : entry.blocks) {
+				int length = Math.min(blockSize, entry.length - offset);
+				buffer.position(block * blockSize);
+				buffer.get(bytes, offset, length);
+				offset += length;
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * 키 색인 항목 (값이 저장된 블록 번호, 길이, 만료시각)
+	 */
+	private static final class Entry {
+		private final int[] blocks;
+		private final int length;
+		private final long expireTime;
+
+		private Entry(int[] blocks, int length, long expireTime) {
+			this.blocks = blocks;
+			this.length = length;
+			this.expireTime = expireTime;
+		}
+
+		private boolean isExpired(long now) {
+			return now >= expireTime;
+		}
+	}
+}
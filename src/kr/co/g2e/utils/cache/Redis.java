@@ -1,9 +1,5 @@
 package kr.co.g2e.utils.cache;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -13,8 +9,11 @@ import kr.co.g2e.utils.config.Config;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.Transaction;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
 /**
@@ -37,17 +36,36 @@ public final class Redis extends AbstractCache {
 	 */
 	private final ShardedJedisPool pool;
 
+	/**
+	 * 키 직렬화 구현체
+	 */
+	private final CacheSerializer keySerializer;
+
+	/**
+	 * 값 직렬화 구현체
+	 */
+	private final CacheSerializer valueSerializer;
+
+	/**
+	 * 캐시 지표
+	 */
+	private final CacheMetrics metrics = CacheMetrics.getInstance();
+
 	/**
 	 * 생성자, 외부에서 객체를 인스턴스화 할 수 없도록 설정
 	 */
 	private Redis() {
-		List<JedisShardInfo> shards;
-		if (Config.getInstance().containsKey("redis.servers")) {
-			shards = getAddresses(Config.getInstance().getString("redis.servers"));
-		} else {
-			throw new RuntimeException("redis의 호스트설정이 누락되었습니다.");
-		}
-		pool = new ShardedJedisPool(new JedisPoolConfig(), shards);
+		this(getServers());
+	}
+
+	/**
+	 * 생성자, 지정한 서버에 연결하는 객체를 만든다. (ClusterCache 의 노드용)
+	 * @param servers 스페이스 또는 콤마로 구분된 주소문자열
+	 */
+	Redis(String servers) {
+		pool = new ShardedJedisPool(new JedisPoolConfig(), getAddresses(servers));
+		keySerializer = CacheSerializerFactory.createKeySerializer();
+		valueSerializer = CacheSerializerFactory.createValueSerializer();
 	}
 
 	/**
@@ -64,7 +82,7 @@ public final class Redis extends AbstractCache {
 
 	@Override
 	public void set(String key, Object value, int seconds) {
-		set(serialize(key), serialize(value), seconds);
+		set(serializeKey(key), serialize(value), seconds);
 	}
 
 	public void set(byte[] key, byte[] value, int seconds) {
@@ -73,19 +91,85 @@ public final class Redis extends AbstractCache {
 			jedis = pool.getResource();
 			jedis.setex(key, seconds, value);
 		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.set");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
+		}
+	}
+
+	@Override
+	public void set(Map<String, Object> valueMap, int seconds) {
+		if (valueMap.isEmpty()) {
+			return;
+		}
+		ShardedJedis jedis = null;
+		try {
+			jedis = pool.getResource();
+			Map<Jedis, Pipeline> pipelineMap = new HashMap<Jedis, Pipeline>();
+			for (Map.Entry<String, Object> entry : valueMap.entrySet()) {
+				byte[] key = serializeKey(entry.getKey());
+				Jedis shard = jedis.getShard(key);
+				Pipeline pipeline = pipelineMap.get(shard);
+				if (pipeline == null) {
+					pipeline = shard.pipelined();
+					pipelineMap.put(shard, pipeline);
+				}
+				pipeline.setex(key, seconds, serialize(entry.getValue()));
+			}
+			for (Pipeline pipeline : pipelineMap.values()) {
+				pipeline.sync();
+			}
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.setBulk");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
+		}
+	}
+
+	@Override
+	public boolean add(String key, Object value, int seconds) {
+		ShardedJedis jedis = null;
+		boolean result = false;
+		try {
+			jedis = pool.getResource();
+			byte[] bytes = serializeKey(key);
+			Jedis shard = jedis.getShard(bytes);
+			if (shard.setnx(bytes, serialize(value)).longValue() == 1) {
+				shard.expire(bytes, seconds);
+				result = true;
+			} else if (shard.ttl(bytes).longValue() == -1) {
+				// SETNX 후 EXPIRE 전에 연결이 끊어져 만료시간 없이 남은 키는 만료시간을 다시 건다.
+				shard.expire(bytes, seconds);
+			}
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.add");
 			if (jedis != null) {
 				pool.returnBrokenResource(jedis);
+				jedis = null;
 			}
 		} finally {
 			if (jedis != null) {
 				pool.returnResource(jedis);
 			}
 		}
+		return result;
 	}
 
 	@Override
 	public Object get(String key) {
-		return get(serialize(key));
+		return get(serializeKey(key));
 	}
 
 	public Object get(byte[] key) {
@@ -95,8 +179,10 @@ public final class Redis extends AbstractCache {
 			jedis = pool.getResource();
 			value = deserialize(jedis.get(key));
 		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.get");
 			if (jedis != null) {
 				pool.returnBrokenResource(jedis);
+				jedis = null;
 			}
 		} finally {
 			if (jedis != null) {
@@ -109,15 +195,102 @@ public final class Redis extends AbstractCache {
 	@Override
 	public Map<String, Object> get(String[] keys) {
 		Map<String, Object> resultMap = new HashMap<String, Object>();
-		for (String key : keys) {
-			resultMap.put(key, get(key));
+		if (keys.length == 0) {
+			return resultMap;
+		}
+		ShardedJedis jedis = null;
+		try {
+			jedis = pool.getResource();
+			for (Map.Entry<Jedis, List<String>> entry : groupByShard(jedis, keys).entrySet()) {
+				List<String> shardKeys = entry.getValue();
+				List<byte[]> values = entry.getKey().mget(serializeKeys(shardKeys));
+				for (int i = 0; i < shardKeys.size(); i++) {
+					resultMap.put(shardKeys.get(i), deserialize(values.get(i)));
+				}
+			}
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.getBulk");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
+		}
+		return resultMap;
+	}
+
+	@Override
+	public Object getWithRemainingSeconds(String key, Map<String, Integer> secondsMap) {
+		ShardedJedis jedis = null;
+		Object value = null;
+		try {
+			jedis = pool.getResource();
+			byte[] bytes = serializeKey(key);
+			Pipeline pipeline = jedis.getShard(bytes).pipelined();
+			Response<byte[]> valueResponse = pipeline.get(bytes);
+			Response<Long> ttlResponse = pipeline.ttl(bytes);
+			pipeline.sync();
+			value = deserialize(valueResponse.get());
+			secondsMap.put(key, Integer.valueOf(toRemainingSeconds(ttlResponse.get())));
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.get");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public Map<String, Object> getWithRemainingSeconds(String[] keys, Map<String, Integer> secondsMap) {
+		Map<String, Object> resultMap = new HashMap<String, Object>();
+		if (keys.length == 0) {
+			return resultMap;
+		}
+		ShardedJedis jedis = null;
+		try {
+			jedis = pool.getResource();
+			for (Map.Entry<Jedis, List<String>> entry : groupByShard(jedis, keys).entrySet()) {
+				List<String> shardKeys = entry.getValue();
+				Pipeline pipeline = entry.getKey().pipelined();
+				List<Response<byte[]>> valueResponses = new ArrayList<Response<byte[]>>(shardKeys.size());
+				List<Response<Long>> ttlResponses = new ArrayList<Response<Long>>(shardKeys.size());
+				for (String key : shardKeys) {
+					byte[] bytes = serializeKey(key);
+					valueResponses.add(pipeline.get(bytes));
+					ttlResponses.add(pipeline.ttl(bytes));
+				}
+				pipeline.sync();
+				for (int i = 0; i < shardKeys.size(); i++) {
+					resultMap.put(shardKeys.get(i), deserialize(valueResponses.get(i).get()));
+					secondsMap.put(shardKeys.get(i), Integer.valueOf(toRemainingSeconds(ttlResponses.get(i).get())));
+				}
+			}
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.getBulk");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
 		}
 		return resultMap;
 	}
 
 	@Override
 	public long incr(String key, int by) {
-		return incr(serialize(key), by);
+		return incr(serializeKey(key), by);
 	}
 
 	public long incr(byte[] key, int by) {
@@ -127,8 +300,40 @@ public final class Redis extends AbstractCache {
 			jedis = pool.getResource();
 			value = jedis.incrBy(key, by);
 		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.incr");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
+		}
+		if (value == null) {
+			value = Long.valueOf(-1);
+		}
+		return value;
+	}
+
+	@Override
+	public long incr(String key, int by, int seconds) {
+		ShardedJedis jedis = null;
+		Long value = null;
+		try {
+			jedis = pool.getResource();
+			byte[] bytes = serializeKey(key);
+			// 증가와 만료 설정을 한 트랜잭션으로 보내 캐시시간이 없는 카운터가 남지 않도록 한다.
+			Transaction transaction = jedis.getShard(bytes).multi();
+			Response<Long> response = transaction.incrBy(bytes, by);
+			transaction.expire(bytes, seconds);
+			transaction.exec();
+			value = response.get();
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.incr");
 			if (jedis != null) {
 				pool.returnBrokenResource(jedis);
+				jedis = null;
 			}
 		} finally {
 			if (jedis != null) {
@@ -143,7 +348,7 @@ public final class Redis extends AbstractCache {
 
 	@Override
 	public long decr(String key, int by) {
-		return decr(serialize(key), by);
+		return decr(serializeKey(key), by);
 	}
 
 	public long decr(byte[] key, int by) {
@@ -153,8 +358,10 @@ public final class Redis extends AbstractCache {
 			jedis = pool.getResource();
 			value = jedis.decrBy(key, by);
 		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.decr");
 			if (jedis != null) {
 				pool.returnBrokenResource(jedis);
+				jedis = null;
 			}
 		} finally {
 			if (jedis != null) {
@@ -172,16 +379,68 @@ public final class Redis extends AbstractCache {
 		ShardedJedis jedis = null;
 		try {
 			jedis = pool.getResource();
-			jedis.del(key);
+			byte[] bytes = serializeKey(key);
+			jedis.getShard(bytes).del(bytes);
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.delete");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
+		}
+	}
+
+	@Override
+	public void delete(String[] keys) {
+		if (keys.length == 0) {
+			return;
+		}
+		ShardedJedis jedis = null;
+		try {
+			jedis = pool.getResource();
+			for (Map.Entry<Jedis, List<String>> entry : groupByShard(jedis, keys).entrySet()) {
+				entry.getKey().del(serializeKeys(entry.getValue()));
+			}
+		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.deleteBulk");
+			if (jedis != null) {
+				pool.returnBrokenResource(jedis);
+				jedis = null;
+			}
+		} finally {
+			if (jedis != null) {
+				pool.returnResource(jedis);
+			}
+		}
+	}
+
+	@Override
+	public boolean isAvailable() {
+		ShardedJedis jedis = null;
+		boolean result = false;
+		try {
+			jedis = pool.getResource();
+			for (Jedis j : jedis.getAllShards()) {
+				if (!"PONG".equals(j.ping())) {
+					return false;
+				}
+			}
+			result = true;
 		} catch (JedisConnectionException e) {
 			if (jedis != null) {
 				pool.returnBrokenResource(jedis);
+				jedis = null;
 			}
 		} finally {
 			if (jedis != null) {
 				pool.returnResource(jedis);
 			}
 		}
+		return result;
 	}
 
 	@Override
@@ -193,8 +452,10 @@ public final class Redis extends AbstractCache {
 				j.flushAll();
 			}
 		} catch (JedisConnectionException e) {
+			metrics.recordError("redis.clear");
 			if (jedis != null) {
 				pool.returnBrokenResource(jedis);
+				jedis = null;
 			}
 		} finally {
 			if (jedis != null) {
@@ -205,12 +466,33 @@ public final class Redis extends AbstractCache {
 
 	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
 
+	/**
+	 * TTL 명령의 결과를 남은 캐시시간으로 변환한다. (-2: 키 없음, -1: 만료 없음)
+	 */
+	private static int toRemainingSeconds(Long ttl) {
+		if (ttl == null || ttl.longValue() == -1) {
+			return -1;
+		}
+		return (ttl.longValue() == -2) ? 0 : (int) Math.max(ttl.longValue(), 0);
+	}
+
+	/**
+	 * 설정파일에서 redis 호스트 주소문자열을 읽어온다.
+	 * @return 주소문자열
+	 */
+	private static String getServers() {
+		if (Config.getInstance().containsKey("redis.servers")) {
+			return Config.getInstance().getString("redis.servers");
+		}
+		throw new RuntimeException("redis의 호스트설정이 누락되었습니다.");
+	}
+
 	/**
 	 * 문자열에서 redis 호스트 주소를 파싱하여 리턴한다.
 	 * @param str 스페이스로 구분된 주소문자열
 	 * @return 샤드주소객체
 	 */
-	private List<JedisShardInfo> getAddresses(String str) {
+	private static List<JedisShardInfo> getAddresses(String str) {
 		if (str == null || "".equals(str.trim())) {
 			throw new IllegalArgumentException("redis의 호스트설정이 누락되었습니다.");
 		}
@@ -229,22 +511,57 @@ public final class Redis extends AbstractCache {
 		return shards;
 	}
 
+	/**
+	 * 키를 저장될 샤드별로 분류한다.
+	 * @param jedis 샤드 클라이언트
+	 * @param keys 키
+	 * @return 샤드별 키 목록
+	 */
+	private Map<Jedis, List<String>> groupByShard(ShardedJedis jedis, String[] keys) {
+		Map<Jedis, List<String>> shardMap = new HashMap<Jedis, List<String>>();
+		for (String key : keys) {
+			Jedis shard = jedis.getShard(serializeKey(key));
+			List<String> shardKeys = shardMap.get(shard);
+			if (shardKeys == null) {
+				shardKeys = new ArrayList<String>();
+				shardMap.put(shard, shardKeys);
+			}
+			shardKeys.add(key);
+		}
+		return shardMap;
+	}
+
+	/**
+	 * 키를 바이트배열로 직렬화 한다.
+	 * @param key 키
+	 * @return 바이트배열
+	 */
+	private byte[] serializeKey(String key) {
+		return keySerializer.serialize(key);
+	}
+
+	/**
+	 * 키 목록을 바이트배열의 배열로 직렬화 한다.
+	 * @param keys 키 목록
+	 * @return 바이트배열의 배열
+	 */
+	private byte[][] serializeKeys(List<String> keys) {
+		byte[][] result = new byte[keys.size()][];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = serializeKey(keys.get(i));
+		}
+		return result;
+	}
+
 	/**
 	 * 객체를 바이트배열로 직렬화 한다.
 	 * @param obj 직렬화할 객체
 	 * @return 바이트배열
 	 */
 	private byte[] serialize(Object obj) {
-		ObjectOutputStream oos = null;
-		ByteArrayOutputStream baos = null;
-		try {
-			baos = new ByteArrayOutputStream();
-			oos = new ObjectOutputStream(baos);
-			oos.writeObject(obj);
-			return baos.toByteArray();
-		} catch (Throwable e) {
-			throw new RuntimeException(e);
-		}
+		byte[] bytes = valueSerializer.serialize(obj);
+		metrics.recordPayload(bytes.length);
+		return bytes;
 	}
 
 	/**
@@ -253,13 +570,9 @@ public final class Redis extends AbstractCache {
 	 * @return 역직렬화된 객체
 	 */
 	private Object deserialize(byte[] bytes) {
-		ByteArrayInputStream bais = null;
-		try {
-			bais = new ByteArrayInputStream(bytes);
-			ObjectInputStream ois = new ObjectInputStream(bais);
-			return ois.readObject();
-		} catch (Throwable e) {
-			throw new RuntimeException(e);
+		if (bytes != null) {
+			metrics.recordPayload(bytes.length);
 		}
+		return valueSerializer.deserialize(bytes);
 	}
-}
\ No newline at end of file
+}
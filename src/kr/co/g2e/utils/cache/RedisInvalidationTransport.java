@@ -0,0 +1,187 @@
+package kr.co.g2e.utils.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.config.Config;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * Redis pub/sub 으로 캐시 무효화 메시지를 전달하는 전송 구현체
+ * cache.bus.redis.server(호스트:포트)에 설정한 서버를 사용하며, 설정하지 않으면 redis.servers 의 첫번째 서버를 사용한다.
+ * pub/sub 메시지는 같은 서버에 접속한 노드에게만 전달되므로 모든 노드가 같은 서버를 바라보도록 설정해야 한다.
+ * 채널은 cache.bus.channel(기본 g2e.cache.invalidation) 값을 사용한다.
+ * 연결이 끊어지면 수신 스레드가 재접속한다.
+ */
+public final class RedisInvalidationTransport implements InvalidationTransport {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(RedisInvalidationTransport.class);
+
+	/**
+	 * 타임아웃 값 (ms)
+	 */
+	private static final int TIMEOUT = 500;
+
+	/**
+	 * 재접속 대기시간 (ms)
+	 */
+	private static final long RECONNECT_INTERVAL = 1000;
+
+	/**
+	 * 서버 주소
+	 */
+	private final String host;
+
+	/**
+	 * 서버 포트
+	 */
+	private final int port;
+
+	/**
+	 * 채널 이름
+	 */
+	private final String channel;
+
+	/**
+	 * 발행용 연결
+	 */
+	private Jedis publisher = null;
+
+	/**
+	 * 구독 객체
+	 */
+	private volatile JedisPubSub pubSub = null;
+
+	/**
+	 * 종료 여부
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * 생성자
+	 */
+	public RedisInvalidationTransport() {
+		Config config = Config.getInstance();
+		String addr;
+		if (config.containsKey("cache.bus.redis.server")) {
+			addr = config.getString("cache.bus.redis.server").trim();
+		} else if (config.containsKey("redis.servers")) {
+			addr = config.getString("redis.servers").trim().split("(?:\\s|,)+")[0];
+		} else {
+			throw new RuntimeException("redis의 호스트설정이 누락되었습니다.");
+		}
+		int sep = addr.lastIndexOf(':');
+		if (sep < 1) {
+			throw new IllegalArgumentException("서버설정이 잘못되었습니다. 형식=>호스트:포트");
+		}
+		host = addr.substring(0, sep);
+		port = Integer.parseInt(addr.substring(sep + 1));
+		channel = config.getString("cache.bus.channel", InvalidationBus.DEFAULT_CHANNEL);
+	}
+
+	@Override
+	public synchronized void publish(String message) {
+		try {
+			if (publisher == null) {
+				publisher = new Jedis(host, port, TIMEOUT);
+			}
+			publisher.publish(channel, message);
+		} catch (RuntimeException e) {
+			disconnect();
+			throw e;
+		}
+	}
+
+	@Override
+	public void subscribe(final Listener listener) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!closed) {
+					Jedis subscriber = null;
+					try {
+						subscriber = new Jedis(host, port, 0);
+						pubSub = new JedisPubSub() {
+							@Override
+							public void onMessage(String channel, String message) {
+								listener.onMessage(message);
+							}
+
+							@Override
+							public void onPMessage(String pattern, String channel, String message) {
+							}
+
+							@Override
+							public void onSubscribe(String channel, int subscribedChannels) {
+							}
+
+							@Override
+							public void onUnsubscribe(String channel, int subscribedChannels) {
+							}
+
+							@Override
+							public void onPUnsubscribe(String pattern, int subscribedChannels) {
+							}
+
+							@Override
+							public void onPSubscribe(String pattern, int subscribedChannels) {
+							}
+						};
+						subscriber.subscribe(pubSub, channel);
+					} catch (Throwable e) {
+						if (!closed) {
+							logger.warn(String.format("[ RedisInvalidationTransport ] %s:%d 구독 연결 실패, 재접속합니다.", host, port), e);
+							try {
+								Thread.sleep(RECONNECT_INTERVAL);
+							} catch (InterruptedException ie) {
+								return;
+							}
+						}
+					} finally {
+						if (subscriber != null) {
+							try {
+								subscriber.disconnect();
+							} catch (Throwable e) {
+								// 무시
+							}
+						}
+					}
+				}
+			}
+		}, "cache-bus-redis");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		JedisPubSub current = pubSub;
+		if (current != null && current.isSubscribed()) {
+			current.unsubscribe();
+		}
+		synchronized (this) {
+			disconnect();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 발행용 연결을 닫는다.
+	 */
+	private void disconnect() {
+		if (publisher != null) {
+			try {
+				publisher.disconnect();
+			} catch (Throwable e) {
+				// 무시
+			}
+			publisher = null;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package kr.co.g2e.utils.cache;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 직렬화에 재사용하는 스레드별 출력 버퍼
+ * 버퍼를 사용하는 중에 다시 요청하면(중첩 직렬화) 풀에 속하지 않은 새 버퍼를 리턴한다.
+ */
+final class SerializerBuffer extends ByteArrayOutputStream {
+
+	/**
+	 * 초기 버퍼 크기
+	 */
+	private static final int INITIAL_SIZE = 4 * 1024;
+
+	/**
+	 * 풀에 보관할 최대 버퍼 크기, 이보다 커진 버퍼는 반납시 버린다.
+	 */
+	private static final int MAX_POOLED_SIZE = 256 * 1024;
+
+	/**
+	 * 스레드별 버퍼 풀
+	 */
+	private static final ThreadLocal<SerializerBuffer> POOL = new ThreadLocal<SerializerBuffer>() {
+		@Override
+		protected SerializerBuffer initialValue() {
+			return new SerializerBuffer();
+		}
+	};
+
+	/**
+	 * 사용중 여부
+	 */
+	private boolean inUse = false;
+
+	private SerializerBuffer() {
+		super(INITIAL_SIZE);
+	}
+
+	/**
+	 * 현재 스레드의 버퍼를 얻어온다.
+	 * @return 비어있는 버퍼
+	 */
+	static SerializerBuffer acquire() {
+		SerializerBuffer buffer = POOL.get();
+		if (buffer.inUse) {
+			return new SerializerBuffer();
+		}
+		buffer.inUse = true;
+		buffer.reset();
+		return buffer;
+	}
+
+	/**
+	 * 버퍼를 반납한다.
+	 */
+	void release() {
+		if (POOL.get() != this) {
+			return;
+		}
+		inUse = false;
+		if (buf.length > MAX_POOLED_SIZE) {
+			POOL.set(new SerializerBuffer());
+		}
+	}
+}
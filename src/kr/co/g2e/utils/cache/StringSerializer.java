@@ -0,0 +1,25 @@
+package kr.co.g2e.utils.cache;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 문자열을 UTF-8 바이트배열로 변환하는 직렬화 구현체 (캐시 키 용도)
+ */
+public final class StringSerializer implements CacheSerializer {
+
+	@Override
+	public byte[] serialize(Object obj) {
+		if (obj == null) {
+			throw new IllegalArgumentException("직렬화할 문자열이 누락되었습니다.");
+		}
+		return obj.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) {
+		if (bytes == null) {
+			return null;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,68 @@
+package kr.co.g2e.utils.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 태그와 저장 당시의 태그별 세대값을 함께 저장하는 캐시 항목
+ * 조회할 때 현재 세대값과 다르면 태그가 무효화된 것으로 보고 값을 버린다.
+ */
+final class TaggedValue implements Serializable {
+	private static final long serialVersionUID = -2950264311375140628L;
+
+	/**
+	 * 값
+	 */
+	private final Object value;
+
+	/**
+	 * 태그
+	 */
+	private final String[] tags;
+
+	/**
+	 * 저장 당시의 태그별 세대값
+	 */
+	private final long[] generations;
+
+	/**
+	 * 생성자
+	 * @param value 값
+	 * @param tags 태그
+	 * @param generations 태그별 세대값
+	 */
+	TaggedValue(Object value, String[] tags, long[] generations) {
+		this.value = value;
+		this.tags = tags;
+		this.generations = generations;
+	}
+
+	/**
+	 * 값을 리턴한다.
+	 * @return 값
+	 */
+	Object getValue() {
+		return value;
+	}
+
+	/**
+	 * 태그를 리턴한다.
+	 * @return 태그
+	 */
+	String[] getTags() {
+		return tags;
+	}
+
+	/**
+	 * 저장 당시의 태그별 세대값을 리턴한다.
+	 * @return 세대값
+	 */
+	long[] getGenerations() {
+		return generations;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (tags=%s)", value, Arrays.toString(tags));
+	}
+}
@@ -0,0 +1,300 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterConfig;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 요청마다 고정 크기 레코드를 링버퍼에 넣고 백그라운드 스레드가 JSON 한 줄씩 기록하는 비동기 접근로그
+ * 요청 스레드는 슬롯을 CAS 로 확보하여 값만 채우며, 버퍼가 가득 차면 기다리지 않고 버린 건수만 센다.
+ * 백그라운드 스레드는 기록하면서 URI 별 지연시간을 AccessLogMetrics 에 모은다.
+ * ex) {"time":"2024-01-15T12:30:00.123+0900","ip":"10.0.0.1","method":"GET","uri":"/index.do","status":200,"duration":1234,"contentLength":-1} (duration 은 마이크로초)
+ */
+final class AccessLog {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(AccessLog.class);
+
+	/**
+	 * 파일을 지정하지 않았을 때 JSON 을 기록하는 로거
+	 */
+	private static final Log accessLogger = LogFactory.getLog(AccessLog.class.getName() + ".json");
+
+	/**
+	 * 버퍼가 비었을 때 기다리는 시간 (나노초)
+	 */
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final Record[] ring;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong(); // 다음에 확보할 순번
+	private volatile long head = 0; // 다음에 기록할 순번 (백그라운드 스레드만 변경)
+	private volatile boolean running = true;
+	private final String fileName;
+	private final AccessLogMetrics metrics;
+	private final Thread thread;
+
+	private AccessLog(int bufferSize, String fileName, AccessLogMetrics metrics) {
+		int size = Integer.highestOneBit(Math.max(bufferSize - 1, 1)) << 1;
+		this.ring = new Record[size];
+		for (int i = 0; i < size; i++) {
+			ring[i] = new Record();
+		}
+		this.mask = size - 1;
+		this.fileName = fileName;
+		this.metrics = metrics;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "access-log");
+		thread.setDaemon(true);
+	}
+
+	/**
+	 * 필터 초기화 파라미터로 접근로그를 생성한다.
+	 * @param filterConfig 필터 설정
+	 * @return 접근로그 객체, 사용하지 않으면 null
+	 */
+	static AccessLog create(FilterConfig filterConfig) {
+		if (!"true".equalsIgnoreCase(filterConfig.getInitParameter("accessLog"))) {
+			return null;
+		}
+		int bufferSize = 8192;
+		String accessLogBufferSize = filterConfig.getInitParameter("accessLogBufferSize");
+		if (accessLogBufferSize != null) {
+			bufferSize = Integer.parseInt(accessLogBufferSize.trim());
+		}
+		int maxUris = 500;
+		String accessLogMaxUris = filterConfig.getInitParameter("accessLogMaxUris");
+		if (accessLogMaxUris != null) {
+			maxUris = Integer.parseInt(accessLogMaxUris.trim());
+		}
+		String accessLogUriPattern = filterConfig.getInitParameter("accessLogUriPattern");
+		if (accessLogUriPattern == null) {
+			accessLogUriPattern = AccessLogMetrics.DEFAULT_URI_PATTERN;
+		}
+		Pattern uriPattern = (accessLogUriPattern.trim().length() == 0) ? null : Pattern.compile(accessLogUriPattern.trim());
+		String fileName = filterConfig.getInitParameter("accessLogFile");
+		if (fileName != null && fileName.trim().length() == 0) {
+			fileName = null;
+		}
+		AccessLogMetrics metrics = new AccessLogMetrics(maxUris, uriPattern);
+		metrics.register(filterConfig.getFilterName());
+		AccessLog accessLog = new AccessLog(bufferSize, fileName == null ? null : fileName.trim(), metrics);
+		accessLog.thread.start();
+		return accessLog;
+	}
+
+	/**
+	 * 지표 객체를 리턴한다.
+	 * @return 지표 객체
+	 */
+	AccessLogMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * 요청 레코드를 버퍼에 넣는다. 버퍼가 가득 차면 버린다.
+	 * @param time 요청 시작 시각 (밀리초)
+	 * @param nanos 수행시간 (나노초)
+	 * @param ip 클라이언트 IP
+	 * @param method 요청 메소드
+	 * @param uri 요청 URI
+	 * @param status 응답 상태코드
+	 * @param contentLength 요청 본문 크기
+	 * @return 버퍼에 넣었으면 true
+	 */
+	boolean offer(long time, long nanos, String ip, String method, String uri, int status, int contentLength) {
+		long seq;
+		do {
+			seq = tail.get();
+			if (seq - head >= ring.length || !running) {
+				metrics.recordDropped();
+				return false;
+			}
+		} while (!tail.compareAndSet(seq, seq + 1));
+		Record record = ring[(int) seq & mask];
+		record.time = time;
+		record.nanos = nanos;
+		record.ip = ip;
+		record.method = method;
+		record.uri = uri;
+		record.status = status;
+		record.contentLength = contentLength;
+		record.sequence = seq + 1; // 값을 다 채운 뒤 공개한다.
+		return true;
+	}
+
+	/**
+	 * 백그라운드 스레드를 멈춘다. 버퍼에 남은 레코드는 모두 기록한다.
+	 */
+	void close() {
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		metrics.unregister();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 버퍼의 레코드를 순서대로 기록한다. 백그라운드 스레드에서만 호출된다.
+	 */
+	private void drain() {
+		SimpleDateFormat secondFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+		SimpleDateFormat zoneFormat = new SimpleDateFormat("Z");
+		Date date = new Date();
+		long second = -1; // 시각 문자열은 초가 바뀔 때만 다시 만든다.
+		String secondText = null;
+		String zoneText = null;
+		StringBuilder buf = new StringBuilder(256);
+		Writer out = null;
+		boolean dirty = false;
+		try {
+			if (fileName != null) {
+				out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName, true), StandardCharsets.UTF_8), 64 * 1024);
+			}
+			while (true) {
+				long seq = head;
+				Record record = ring[(int) seq & mask];
+				if (record.sequence != seq + 1) {
+					if (tail.get() != seq) {
+						Thread.yield(); // 슬롯을 확보한 요청 스레드가 값을 채우는 중
+						continue;
+					}
+					if (dirty) {
+						out.flush();
+						dirty = false;
+					}
+					if (!running && tail.get() == seq) {
+						break;
+					}
+					LockSupport.parkNanos(IDLE_NANOS);
+					continue;
+				}
+				long time = record.time;
+				long micros = record.nanos / 1000;
+				String ip = record.ip;
+				String method = record.method;
+				String uri = record.uri;
+				int status = record.status;
+				int contentLength = record.contentLength;
+				record.ip = null;
+				record.method = null;
+				record.uri = null;
+				head = seq + 1; // 슬롯을 돌려준다.
+				metrics.record(uri, micros, status);
+				if (time / 1000 != second) {
+					second = time / 1000;
+					date.setTime(second * 1000);
+					secondText = secondFormat.format(date);
+					zoneText = zoneFormat.format(date);
+				}
+				int millis = (int) (time % 1000);
+				buf.setLength(0);
+				buf.append("{\"time\":\"").append(secondText).append('.');
+				buf.append((char) ('0' + millis / 100)).append((char) ('0' + millis / 10 % 10)).append((char) ('0' + millis % 10));
+				buf.append(zoneText);
+				buf.append("\",\"ip\":\"");
+				escape(buf, ip);
+				buf.append("\",\"method\":\"");
+				escape(buf, method);
+				buf.append("\",\"uri\":\"");
+				escape(buf, uri);
+				buf.append("\",\"status\":").append(status);
+				buf.append(",\"duration\":").append(micros);
+				buf.append(",\"contentLength\":").append(contentLength);
+				buf.append('}');
+				if (out == null) {
+					accessLogger.info(buf.toString());
+				} else {
+					buf.append('\n');
+					out.append(buf);
+					dirty = true;
+				}
+			}
+		} catch (Throwable e) {
+			running = false;
+			logger.error("접근로그 기록 실패", e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					logger.error("접근로그 파일 닫기 실패", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * JSON 문자열 값으로 쓸 수 있도록 변환하여 붙인다.
+	 */
+	private static void escape(StringBuilder buf, String str) {
+		if (str == null) {
+			return;
+		}
+		for (int i = 0, len = str.length(); i < len; i++) {
+			char c = str.charAt(i);
+			switch (c) {
+			case '"':
+				buf.append("\\\"");
+				break;
+			case '\\':
+				buf.append("\\\\");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\r':
+				buf.append("\\r");
+				break;
+			case '\t':
+				buf.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					buf.append(String.format("\\u%04x", (int) c));
+				} else {
+					buf.append(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 요청 한 건의 레코드 (슬롯마다 미리 만들어 재사용한다)
+	 */
+	private static final class Record {
+		private volatile long sequence = 0; // 공개된 순번 + 1
+		private long time;
+		private long nanos;
+		private String ip;
+		private String method;
+		private String uri;
+		private int status;
+		private int contentLength;
+	}
+}
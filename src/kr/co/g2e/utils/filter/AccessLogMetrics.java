@@ -0,0 +1,265 @@
+package kr.co.g2e.utils.filter;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.util.Histogram;
+
+/**
+ * 접근로그의 전체 및 URI 별 지연시간을 기록하는 클래스
+ * 필터마다 JMX(kr.co.g2e.utils.filter:type=AccessLogMetrics,name=필터이름)로 조회할 수 있다.
+ * URI 는 uriPattern 에 맞는 부분(기본: 숫자, UUID, 16자 이상의 16진수 경로 구간)을 {id} 로 바꾸어 모으고,
+ * URI 수가 maxUris 를 넘거나 처음 보는 URI 가 404 응답이면 OTHER_URI 로 모아서 기록한다.
+ */
+public final class AccessLogMetrics implements AccessLogMetricsMBean {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(AccessLogMetrics.class);
+
+	/**
+	 * 최대 URI 수를 넘은 요청을 모아서 기록하는 이름
+	 */
+	public static final String OTHER_URI = "(other)";
+
+	/**
+	 * 기본 URI 정규화 패턴 (숫자, UUID, 16자 이상의 16진수 경로 구간)
+	 */
+	public static final String DEFAULT_URI_PATTERN = "(?<=/)(?:\\d+|[0-9a-fA-F]{8}(?:-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}|[0-9a-fA-F]{16,})(?=/|$)";
+
+	/**
+	 * 정규화 패턴에 맞는 부분을 바꿀 문자열
+	 */
+	private static final String ID_REPLACEMENT = "{id}";
+
+	/**
+	 * 전체 지연시간 (마이크로초)
+	 */
+	private final Histogram latency = new Histogram();
+
+	/**
+	 * URI 별 지연시간 (마이크로초)
+	 */
+	private final ConcurrentMap<String, Histogram> uriMap = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 * 버려진 요청 건수
+	 */
+	private final LongAdder droppedCount = new LongAdder();
+
+	/**
+	 * 오류(5xx) 응답 건수
+	 */
+	private final LongAdder errorCount = new LongAdder();
+
+	/**
+	 * 최대 URI 수
+	 */
+	private final int maxUris;
+
+	/**
+	 * URI 정규화 패턴, 사용하지 않으면 null
+	 */
+	private final Pattern uriPattern;
+
+	/**
+	 * JMX 객체 이름
+	 */
+	private ObjectName objectName = null;
+
+	AccessLogMetrics(int maxUris, Pattern uriPattern) {
+		this.maxUris = maxUris;
+		this.uriPattern = uriPattern;
+	}
+
+	/**
+	 * JMX 서버에 등록한다.
+	 * @param name 필터 이름
+	 */
+	void register(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("kr.co.g2e.utils.filter:type=AccessLogMetrics,name=" + ObjectName.quote(name));
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch (Throwable e) {
+			logger.warn("접근로그 지표 JMX 등록 실패", e);
+		}
+	}
+
+	/**
+	 * JMX 서버에서 등록을 해제한다.
+	 */
+	void unregister() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (Throwable e) {
+			logger.warn("접근로그 지표 JMX 해제 실패", e);
+		}
+		objectName = null;
+	}
+
+	/**
+	 * 요청의 지연시간을 기록한다.
+	 * @param uri 요청 URI
+	 * @param micros 지연시간 (마이크로초)
+	 * @param status 응답 상태코드
+	 */
+	void record(String uri, long micros, int status) {
+		latency.record(micros);
+		getUri(normalize(uri), status != 404).record(micros);
+		if (status >= 500) {
+			errorCount.increment();
+		}
+	}
+
+	/**
+	 * 버려진 요청을 기록한다.
+	 */
+	void recordDropped() {
+		droppedCount.increment();
+	}
+
+	/**
+	 * 현재 지표를 맵으로 리턴한다.
+	 * @return 지표 맵
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> result = toMap(latency);
+		result.put("droppedCount", getDroppedCount());
+		result.put("errorCount", getErrorCount());
+		Map<String, Object> uris = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Histogram> entry : uriMap.entrySet()) {
+			uris.put(entry.getKey(), toMap(entry.getValue()));
+		}
+		result.put("uris", uris);
+		return result;
+	}
+
+	@Override
+	public long getRequestCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+
+	@Override
+	public long getLatencyP50() {
+		return latency.getPercentile(50);
+	}
+
+	@Override
+	public long getLatencyP99() {
+		return latency.getPercentile(99);
+	}
+
+	@Override
+	public long getLatencyMax() {
+		return latency.getMax();
+	}
+
+	@Override
+	public int getUriCount() {
+		return uriMap.size();
+	}
+
+	@Override
+	public String getSummary() {
+		return snapshot().toString();
+	}
+
+	@Override
+	public String getUriSummary(String uri) {
+		Histogram histogram = uriMap.get(uri);
+		if (histogram == null) {
+			return null;
+		}
+		return toMap(histogram).toString();
+	}
+
+	@Override
+	public void reset() {
+		latency.reset();
+		uriMap.clear();
+		droppedCount.reset();
+		errorCount.reset();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * URI 에서 경로 파라미터(;jsessionid 등)를 떼고 경로변수 부분을 {id} 로 바꾼다.
+	 */
+	private String normalize(String uri) {
+		if (uri == null) {
+			return null;
+		}
+		int semicolon = uri.indexOf(';');
+		if (semicolon >= 0) {
+			uri = uri.substring(0, semicolon);
+		}
+		return (uriPattern == null) ? uri : uriPattern.matcher(uri).replaceAll(ID_REPLACEMENT);
+	}
+
+	/**
+	 * URI 의 히스토그램을 얻어온다. create 가 false 이면 처음 보는 URI 는 OTHER_URI 로 모은다.
+	 */
+	private Histogram getUri(String uri, boolean create) {
+		Histogram histogram = uriMap.get(uri);
+		if (histogram == null) {
+			if (!create || uriMap.size() >= maxUris) {
+				uri = OTHER_URI;
+				histogram = uriMap.get(uri);
+			}
+			if (histogram == null) {
+				Histogram newHistogram = new Histogram();
+				histogram = uriMap.putIfAbsent(uri, newHistogram);
+				if (histogram == null) {
+					histogram = newHistogram;
+				}
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * 히스토그램을 맵으로 변환한다.
+	 */
+	private Map<String, Object> toMap(Histogram histogram) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("count", histogram.getCount());
+		result.put("mean", histogram.getMean());
+		result.put("p50", histogram.getPercentile(50));
+		result.put("p90", histogram.getPercentile(90));
+		result.put("p99", histogram.getPercentile(99));
+		result.put("p999", histogram.getPercentile(99.9));
+		result.put("max", histogram.getMax());
+		return result;
+	}
+}
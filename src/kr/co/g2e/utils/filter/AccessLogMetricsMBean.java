@@ -0,0 +1,58 @@
+package kr.co.g2e.utils.filter;
+
+/**
+ * 접근로그 지표를 JMX 로 노출하기 위한 MBean 인터페이스
+ */
+public interface AccessLogMetricsMBean {
+
+	/**
+	 * 기록된 요청 건수
+	 */
+	long getRequestCount();
+
+	/**
+	 * 버퍼가 가득 차서 버려진 요청 건수
+	 */
+	long getDroppedCount();
+
+	/**
+	 * 오류(5xx) 응답 건수
+	 */
+	long getErrorCount();
+
+	/**
+	 * 지연시간 50 백분위수 (마이크로초)
+	 */
+	long getLatencyP50();
+
+	/**
+	 * 지연시간 99 백분위수 (마이크로초)
+	 */
+	long getLatencyP99();
+
+	/**
+	 * 지연시간 최대 값 (마이크로초)
+	 */
+	long getLatencyMax();
+
+	/**
+	 * 지표를 기록 중인 URI 수
+	 */
+	int getUriCount();
+
+	/**
+	 * 모든 지표를 문자열로 리턴한다.
+	 */
+	String getSummary();
+
+	/**
+	 * URI 의 지연시간 지표를 문자열로 리턴한다.
+	 * @param uri 요청 URI
+	 */
+	String getUriSummary(String uri);
+
+	/**
+	 * 모든 지표를 초기화한다.
+	 */
+	void reset();
+}
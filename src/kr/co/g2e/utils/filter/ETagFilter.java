@@ -0,0 +1,410 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.util.StringUtil;
+
+/**
+ * 조건부 응답(ETag, If-None-Match) 필터
+ * GET 요청의 200 응답 본문을 풀에서 빌린 버퍼에 모아 FNV-1a 해시로 약한 ETag(W/"해시-길이")를 붙이고,
+ * If-None-Match 와 일치하면 본문 없이 304 응답을 보낸다. 핸들러가 ETag 를 직접 설정했으면 그 값으로 비교한다.
+ * 응답이 maxSize 를 넘으면 모은 내용을 내보내고 ETag 없이 그대로 전달한다.
+ * versionProvider 를 설정하면 체인을 수행하기 전에 요청의 버전값으로 ETag 를 만들어 일치하면 체인을 수행하지 않고 304 응답을 보낸다.
+ * 필터 초기화 파라미터
+ * maxSize : ETag 를 계산할 최대 응답 크기 KB (기본 1024)
+ * versionProvider : ETagVersionProvider 구현 클래스 이름
+ */
+public class ETagFilter implements Filter {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(ETagFilter.class);
+
+	/**
+	 * ETag 를 계산할 최대 응답 크기
+	 */
+	private int maxSize = 1024 * 1024;
+
+	/**
+	 * 버전값 제공 객체, 사용하지 않으면 null
+	 */
+	private ETagVersionProvider versionProvider = null;
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse res = (HttpServletResponse) response;
+		boolean get = "GET".equals(req.getMethod());
+		if (!get && !"HEAD".equals(req.getMethod())) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		if (versionProvider != null) {
+			String version = getVersion(req);
+			if (version != null) {
+				String etag = getVersionETag(req, version);
+				res.setHeader("ETag", "W/\"" + etag + "\"");
+				if (StaticResponseCache.matches(req.getHeader("If-None-Match"), etag)) {
+					res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return;
+				}
+				filterChain.doFilter(request, response);
+				return;
+			}
+		}
+		if (!get) {
+			// HEAD 요청은 본문이 없으므로 GET 과 같은 ETag 를 계산할 수 없다.
+			filterChain.doFilter(request, response);
+			return;
+		}
+		MyResponseWrapper wrapper = new MyResponseWrapper(res, maxSize);
+		try {
+			filterChain.doFilter(request, wrapper);
+			wrapper.finish(req.getHeader("If-None-Match"));
+		} finally {
+			wrapper.release();
+		}
+	}
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+		String maxSize = filterConfig.getInitParameter("maxSize");
+		if (!StringUtil.isEmpty(maxSize)) {
+			this.maxSize = Integer.parseInt(maxSize.trim()) * 1024;
+		}
+		String versionProvider = filterConfig.getInitParameter("versionProvider");
+		if (!StringUtil.isEmpty(versionProvider)) {
+			try {
+				this.versionProvider = (ETagVersionProvider) Class.forName(versionProvider.trim()).getDeclaredConstructor().newInstance();
+			} catch (Throwable e) {
+				throw new ServletException("버전값 제공 클래스 설정이 잘못되었습니다. versionProvider=" + versionProvider, e);
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		versionProvider = null;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	/**
+	 * 요청의 버전값을 얻어온다. 오류가 나면 응답 본문으로 ETag 를 계산하도록 null 을 리턴한다.
+	 */
+	private String getVersion(HttpServletRequest request) {
+		try {
+			return versionProvider.getVersion(request);
+		} catch (RuntimeException e) {
+			logger.warn("버전값 조회 실패", e);
+			return null;
+		}
+	}
+
+	/**
+	 * 요청 URI, 쿼리 문자열, 버전값으로 ETag 를 만든다.
+	 */
+	private String getVersionETag(HttpServletRequest request, String version) {
+		StringBuilder buf = new StringBuilder(128);
+		buf.append(request.getRequestURI());
+		if (request.getQueryString() != null) {
+			buf.append('?').append(request.getQueryString());
+		}
+		buf.append('\n').append(version);
+		return StaticResponseCache.computeETag(buf.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 응답 본문을 버퍼에 모으는 래퍼
+	 * 200 이외의 상태코드, sendError, sendRedirect 또는 maxSize 를 넘는 응답은 모으지 않고 그대로 전달한다.
+	 */
+	static final class MyResponseWrapper extends HttpServletResponseWrapper {
+		private final int maxSize;
+		private ResponsePipeline.Buffer buffer = null;
+		private ServletOutputStream stream = null;
+		private PrintWriter writer = null;
+		private ServletOutputStream out = null; // 그대로 전달할 때의 원래 응답 스트림
+		private boolean passThrough = false;
+		private int status = HttpServletResponse.SC_OK;
+		private String etag = null; // 핸들러가 설정한 ETag
+
+		MyResponseWrapper(HttpServletResponse res, int maxSize) {
+			super(res);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (writer != null) {
+				throw new IllegalStateException("getWriter() has already been called for this response");
+			}
+			if (stream == null) {
+				stream = createOutputStream();
+			}
+			return stream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				if (stream != null) {
+					throw new IllegalStateException("getOutputStream() has already been called for this response");
+				}
+				writer = new PrintWriter(new OutputStreamWriter(createOutputStream(), getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (writer != null) {
+				writer.flush();
+			}
+			if (passThrough) {
+				super.flushBuffer();
+			}
+		}
+
+		@Override
+		public void setContentLength(int len) {
+			if (passThrough) {
+				super.setContentLength(len);
+			}
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+			super.setStatus(sc);
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public void setStatus(int sc, String sm) {
+			status = sc;
+			super.setStatus(sc, sm);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			status = sc;
+			passThrough = true;
+			discard();
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			status = sc;
+			passThrough = true;
+			discard();
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			status = HttpServletResponse.SC_FOUND;
+			passThrough = true;
+			discard();
+			super.sendRedirect(location);
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name) && !passThrough) {
+				return;
+			}
+			if ("ETag".equalsIgnoreCase(name)) {
+				etag = value;
+			}
+			super.setHeader(name, value);
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name) && !passThrough) {
+				return;
+			}
+			if ("ETag".equalsIgnoreCase(name)) {
+				etag = value;
+			}
+			super.addHeader(name, value);
+		}
+
+		@Override
+		public void setIntHeader(String name, int value) {
+			if ("Content-Length".equalsIgnoreCase(name) && !passThrough) {
+				return;
+			}
+			super.setIntHeader(name, value);
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			status = HttpServletResponse.SC_OK;
+			etag = null;
+			if (buffer != null) {
+				buffer.reset();
+			}
+		}
+
+		@Override
+		public void resetBuffer() {
+			super.resetBuffer();
+			if (buffer != null) {
+				buffer.reset();
+			}
+		}
+
+		/**
+		 * 체인이 끝난 뒤 ETag 를 비교하여 304 응답을 보내거나 모은 본문을 내보낸다.
+		 * @param ifNoneMatch If-None-Match 헤더
+		 */
+		void finish(String ifNoneMatch) throws IOException {
+			if (writer != null) {
+				writer.flush();
+			}
+			if (passThrough || buffer == null && etag == null) {
+				flushBuffered();
+				return;
+			}
+			if (status != HttpServletResponse.SC_OK) {
+				passThrough = true;
+				flushBuffered();
+				return;
+			}
+			String tag;
+			if (etag == null) {
+				tag = buffer == null ? StaticResponseCache.computeETag(new byte[0]) : StaticResponseCache.computeETag(buffer.getBuffer(), 0, buffer.size());
+				super.setHeader("ETag", "W/\"" + tag + "\"");
+			} else {
+				tag = unquote(etag);
+			}
+			if (StaticResponseCache.matches(ifNoneMatch, tag)) {
+				super.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			super.setContentLength(buffer == null ? 0 : buffer.size());
+			passThrough = true;
+			flushBuffered();
+		}
+
+		/**
+		 * 빌린 버퍼를 풀에 돌려준다.
+		 */
+		void release() {
+			if (buffer != null) {
+				ResponsePipeline.giveBack(buffer);
+				buffer = null;
+			}
+		}
+
+		/**
+		 * 모은 내용을 버퍼 또는 원래 응답으로 보내는 스트림을 만든다.
+		 */
+		private ServletOutputStream createOutputStream() {
+			return new ServletOutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					if (reserve(1)) {
+						buffer.write(b);
+					} else {
+						out.write(b);
+					}
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					if (reserve(len)) {
+						buffer.write(b, off, len);
+					} else {
+						out.write(b, off, len);
+					}
+				}
+
+				@Override
+				public void flush() throws IOException {
+					if (out != null) {
+						out.flush();
+					}
+				}
+			};
+		}
+
+		/**
+		 * 버퍼에 len 바이트를 더 쓸 수 있는지 확인한다. 쓸 수 없으면 모은 내용을 내보내고 그대로 전달하기 시작한다.
+		 * @return 버퍼에 쓰면 true
+		 */
+		private boolean reserve(int len) throws IOException {
+			if (!passThrough) {
+				if (buffer == null) {
+					buffer = ResponsePipeline.borrow();
+				}
+				if (buffer.size() + len <= maxSize) {
+					return true;
+				}
+				passThrough = true;
+				flushBuffered();
+			}
+			if (out == null) {
+				out = super.getOutputStream();
+			}
+			return false;
+		}
+
+		/**
+		 * 버퍼에 모은 내용을 원래 응답으로 내보낸다.
+		 */
+		private void flushBuffered() throws IOException {
+			if (buffer != null && buffer.size() > 0) {
+				if (out == null) {
+					out = super.getOutputStream();
+				}
+				out.write(buffer.getBuffer(), 0, buffer.size());
+				buffer.reset();
+			}
+		}
+
+		/**
+		 * 오류 응답이나 리다이렉트로 바뀌면 버퍼에 모은 내용을 버린다.
+		 */
+		private void discard() {
+			if (buffer != null) {
+				buffer.reset();
+			}
+		}
+
+		/**
+		 * W/ 접두어와 따옴표를 뗀 ETag 를 리턴한다.
+		 */
+		private static String unquote(String etag) {
+			String tag = etag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.length() >= 2 && tag.charAt(0) == '"' && tag.charAt(tag.length() - 1) == '"') {
+				tag = tag.substring(1, tag.length() - 1);
+			}
+			return tag;
+		}
+	}
+}
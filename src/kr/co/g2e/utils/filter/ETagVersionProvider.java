@@ -0,0 +1,17 @@
+package kr.co.g2e.utils.filter;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 응답을 만들지 않고도 알 수 있는 요청별 버전값을 제공하는 인터페이스 (ETagFilter 에서 사용)
+ * 버전값이 같으면 응답 본문도 같아야 한다. 예를 들어 Cache.namespaceKey(namespace, "") 처럼 데이터가 바뀔 때마다 달라지는 값을 리턴한다.
+ */
+public interface ETagVersionProvider {
+
+	/**
+	 * 요청의 버전값을 리턴한다.
+	 * @param request 요청 객체
+	 * @return 버전값, 알 수 없으면 null (응답 본문으로 ETag 를 계산한다)
+	 */
+	String getVersion(HttpServletRequest request);
+}
@@ -5,7 +5,11 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.Filter;
@@ -21,60 +25,242 @@ import javax.servlet.http.HttpServletResponseWrapper;
 
 /**
  * GZIP Compression filter
+ * 응답 전체를 모으지 않고 쓰여지는 바이트를 바로 압축하여 클라이언트로 보낸다.
+ * 처음 쓰기가 일어날 때 Content-Type 으로 압축 여부를 한번 결정하며,
+ * 응답 크기가 threshold(기본 1024 bytes) 보다 작으면 압축하지 않는다.
+ * Accept-Encoding 의 q 값으로 gzip, deflate 중 하나를 고르고 압축 가능한 응답에는 Vary: Accept-Encoding 을 붙인다.
+ * 필터 초기화 파라미터
+ * threshold : 최소 압축 크기 (기본 1024)
+ * encodings : 서버가 선호하는 순서의 인코딩 목록 (기본 gzip,deflate)
+ * level : 기본 압축 레벨 1~9 (기본 6)
+ * levels : Content-Type 별 압축 레벨 (예: text/html=1,application/json=1,text/css=9)
+ * cacheSize 등 : 정적 리소스 응답 캐시 설정 (StaticResponseCache 참고)
+ * 응답 파이프라인(JuminMaskFilter, MinifyFilter)이 먼저 적용된 요청에서는 필터 순서와 관계없이 파이프라인의 마지막 단계로 압축한다.
  */
 public class GZIPFilter implements Filter {
 
+	/**
+	 * 기본 최소 압축 크기
+	 */
+	private static final int DEFAULT_THRESHOLD = 1024;
+
+	/**
+	 * 압축 버퍼 크기
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * 기본 압축 레벨
+	 */
+	private static final int DEFAULT_LEVEL = 6;
+
+	/**
+	 * 최소 압축 크기
+	 */
+	private int threshold = DEFAULT_THRESHOLD;
+
+	/**
+	 * 서버가 선호하는 순서의 인코딩 목록
+	 */
+	private String[] encodings = { "gzip", "deflate" };
+
+	/**
+	 * 기본 압축 레벨
+	 */
+	private int level = DEFAULT_LEVEL;
+
+	/**
+	 * Content-Type 별 압축 레벨
+	 */
+	private final Map<String, Integer> levelMap = new LinkedHashMap<String, Integer>();
+
+	/**
+	 * 정적 리소스 응답 캐시, 사용하지 않으면 null
+	 */
+	private StaticResponseCache cache = null;
+
 	@Override
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
-		MyResponseWrapper resWrapper = null;
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse res = (HttpServletResponse) response;
+		String encoding = negotiate(req.getHeader("Accept-Encoding"));
+		ResponsePipeline pipeline = ResponsePipeline.get(request);
+		if (pipeline != null) {
+			pipeline.setCompression(this, encoding);
+			filterChain.doFilter(request, response);
+			return;
+		}
+		if (cache != null && cache.isCacheable(req)) {
+			doCachedFilter(req, res, filterChain, encoding);
+			return;
+		}
+		MyResponseWrapper resWrapper = new MyResponseWrapper(res, encoding);
+		boolean completed = false;
 		try {
-			resWrapper = new MyResponseWrapper((HttpServletResponse) response);
 			filterChain.doFilter(request, resWrapper);
-			String contentType = nullToBlankString(resWrapper.getContentType());
-			if (isTextualContentType(contentType)) {
-				write(request, response, resWrapper);
-			} else {
-				resWrapper.writeTo(response.getOutputStream());
-			}
+			completed = true;
 		} finally {
-			if (resWrapper != null) {
-				resWrapper.close();
-				resWrapper = null;
+			if (completed) {
+				resWrapper.finish();
+			} else {
+				resWrapper.abort();
 			}
 		}
 	}
 
 	@Override
 	public void init(FilterConfig filterConfig) throws ServletException {
+		String threshold = filterConfig.getInitParameter("threshold");
+		if (threshold != null) {
+			this.threshold = Integer.parseInt(threshold.trim());
+		}
+		String encodings = filterConfig.getInitParameter("encodings");
+		if (encodings != null) {
+			this.encodings = encodings.trim().toLowerCase().split("\\s*,\\s*");
+		}
+		String level = filterConfig.getInitParameter("level");
+		if (level != null) {
+			this.level = parseLevel(level);
+		}
+		String levels = filterConfig.getInitParameter("levels");
+		if (levels != null) {
+			for (String item : levels.split(",")) {
+				int sep = item.indexOf('=');
+				if (sep > 0) {
+					levelMap.put(item.substring(0, sep).trim().toLowerCase(), Integer.valueOf(parseLevel(item.substring(sep + 1))));
+				}
+			}
+		}
+		cache = StaticResponseCache.create(filterConfig);
 	}
 
 	@Override
 	public void destroy() {
 	}
 
-	private void write(ServletRequest request, ServletResponse response, MyResponseWrapper resWrapper) throws IOException, UnsupportedEncodingException {
-		if (isGzipSupported(request)) {
-			resWrapper.setHeader("Content-Encoding", "gzip");
-			GZIPOutputStream gzos = new GZIPOutputStream(response.getOutputStream());
-			OutputStreamWriter osw = new OutputStreamWriter(gzos, response.getCharacterEncoding());
-			PrintWriter writer = new PrintWriter(osw);
-			writer.print(resWrapper.toString());
-			writer.flush();
-			gzos.finish();
-		} else {
-			PrintWriter writer = response.getWriter();
-			writer.print(resWrapper.toString());
-			writer.flush();
+	/**
+	 * 쓰여지는 바이트를 압축하는 응답 래퍼를 리턴한다. 응답 파이프라인의 마지막 단계로 쓰인다.
+	 * 출력을 마치면 finish() 를 호출해야 한다.
+	 * @param response 응답 객체
+	 * @param encoding 압축 인코딩, 압축하지 않으면 null
+	 * @return 응답 래퍼
+	 */
+	MyResponseWrapper getCompressingResponse(HttpServletResponse response, String encoding) {
+		return new MyResponseWrapper(response, encoding);
+	}
+
+	/**
+	 * 이미 모은 응답 본문을 일반 요청과 같은 방식으로 압축하여 내보낸다. 응답 파이프라인의 마지막 단계로 쓰인다.
+	 * @param response 응답 객체
+	 * @param encoding 압축 인코딩, 압축하지 않으면 null
+	 * @param b 응답 본문
+	 * @param off 시작 위치
+	 * @param len 길이
+	 */
+	void compress(HttpServletResponse response, String encoding, byte[] b, int off, int len) throws IOException {
+		MyResponseWrapper resWrapper = getCompressingResponse(response, encoding);
+		if (len > 0) {
+			resWrapper.getOutputStream().write(b, off, len);
+		}
+		resWrapper.finish();
+	}
+
+	/**
+	 * 정적 리소스 요청을 캐시에서 응답한다. 캐시에 없으면 체인을 실행한 결과를 저장한 뒤 응답한다.
+	 * 캐시할 수 없는 결과는 일반 요청과 같은 방식으로 압축하여 내보낸다.
+	 */
+	private void doCachedFilter(HttpServletRequest req, HttpServletResponse res, FilterChain filterChain, String encoding) throws IOException, ServletException {
+		StaticResponseCache.Entry entry = cache.get(req);
+		if (entry == null) {
+			StaticResponseCache.CaptureResponseWrapper capture = new StaticResponseCache.CaptureResponseWrapper(res);
+			filterChain.doFilter(req, capture);
+			byte[] body = capture.toByteArray();
+			entry = cache.put(req, capture, body);
+			if (entry == null) {
+				compress(res, encoding, body, 0, body.length);
+				return;
+			}
+		}
+		if (entry.length() < threshold) {
+			encoding = null;
+		}
+		cache.serve(req, res, entry, encoding, getLevel(entry.getContentType()));
+	}
+
+	/**
+	 * Accept-Encoding 헤더의 q 값과 서버 선호 순서로 사용할 인코딩을 고른다.
+	 * @return gzip, deflate 또는 압축하지 않으면 null
+	 */
+	private String negotiate(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		Map<String, Float> qualityMap = new HashMap<String, Float>();
+		for (String item : acceptEncoding.toLowerCase().split(",")) {
+			String[] parts = item.split(";");
+			String coding = parts[0].trim();
+			if ("x-gzip".equals(coding)) {
+				coding = "gzip";
+			}
+			float quality = 1.0f;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						quality = Float.parseFloat(param.substring(2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			qualityMap.put(coding, Float.valueOf(quality));
+		}
+		String best = null;
+		float bestQuality = 0;
+		for (String encoding : encodings) {
+			Float quality = qualityMap.get(encoding);
+			if (quality == null) {
+				quality = qualityMap.get("*");
+			}
+			if (quality != null && quality.floatValue() > bestQuality) {
+				best = encoding;
+				bestQuality = quality.floatValue();
+			}
 		}
+		return best;
 	}
 
-	private boolean isGzipSupported(ServletRequest request) {
-		String browserEncodings = ((HttpServletRequest) request).getHeader("Accept-Encoding");
-		return ((browserEncodings != null) && (browserEncodings.indexOf("gzip") != -1));
+	/**
+	 * 압축 레벨 설정값을 파싱한다. 1~9 를 벗어나면 Deflater 생성 시점이 아니라 초기화 시점에 실패시킨다.
+	 */
+	private static int parseLevel(String value) throws ServletException {
+		int level;
+		try {
+			level = Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new ServletException("압축 레벨은 1~9 사이의 숫자여야 합니다. : " + value, e);
+		}
+		if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+			throw new ServletException("압축 레벨은 1~9 사이의 숫자여야 합니다. : " + value);
+		}
+		return level;
+	}
+
+	/**
+	 * Content-Type 에 맞는 압축 레벨을 리턴한다.
+	 */
+	private int getLevel(String contentType) {
+		String type = contentType.toLowerCase();
+		for (Map.Entry<String, Integer> entry : levelMap.entrySet()) {
+			if (type.contains(entry.getKey())) {
+				return entry.getValue().intValue();
+			}
+		}
+		return level;
 	}
 
 	private boolean isTextualContentType(String contentType) {
-		return "".equals(contentType) || contentType.contains("text") || contentType.contains("json") || contentType.contains("xml");
+		return "".equals(contentType) || contentType.contains("text") || contentType.contains("json") || contentType.contains("xml") || contentType.contains("javascript");
 	}
 
 	private static String nullToBlankString(String str) {
@@ -88,70 +274,322 @@ public class GZIPFilter implements Filter {
 	}
 
 	class MyResponseWrapper extends HttpServletResponseWrapper {
-		private ByteArrayOutputStream bytes;
+		private final HttpServletResponse response;
+		private final String encoding;
+		private MyOutputStream stream;
 		private PrintWriter writer;
+		private int contentLength = -1;
 
-		public MyResponseWrapper(HttpServletResponse res) throws IOException {
+		public MyResponseWrapper(HttpServletResponse res, String encoding) {
 			super(res);
-			bytes = new ByteArrayOutputStream(8 * 1024);
-			writer = new PrintWriter(bytes);
+			this.response = res;
+			this.encoding = encoding;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (writer != null) {
+				throw new IllegalStateException("getWriter() has already been called for this response");
+			}
+			return getStream();
 		}
 
 		@Override
-		public PrintWriter getWriter() {
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				if (stream != null) {
+					throw new IllegalStateException("getOutputStream() has already been called for this response");
+				}
+				writer = new PrintWriter(new OutputStreamWriter(getStream(), response.getCharacterEncoding()));
+			}
 			return writer;
 		}
 
 		@Override
-		public ServletOutputStream getOutputStream() {
-			return new MyOutputStream(bytes);
+		public void setContentLength(int len) {
+			contentLength = len;
+			if (stream != null && stream.isPassThrough()) {
+				super.setContentLength(len);
+			}
 		}
 
 		@Override
-		public String toString() {
-			writer.flush();
-			return bytes.toString();
+		public void setHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				setContentLength(Integer.parseInt(value.trim()));
+			} else {
+				super.setHeader(name, value);
+			}
 		}
 
-		public void writeTo(OutputStream os) throws IOException {
-			bytes.writeTo(os);
+		@Override
+		public void addHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				setContentLength(Integer.parseInt(value.trim()));
+			} else {
+				super.addHeader(name, value);
+			}
 		}
 
-		public void close() throws IOException {
-			bytes.close();
-			writer.close();
-			bytes = null;
-			writer = null;
+		@Override
+		public void setIntHeader(String name, int value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				setContentLength(value);
+			} else {
+				super.setIntHeader(name, value);
+			}
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (writer != null) {
+				writer.flush();
+			} else if (stream != null) {
+				stream.flush();
+			}
+			super.flushBuffer();
+		}
+
+		@Override
+		public void resetBuffer() {
+			super.resetBuffer();
+			if (stream != null) {
+				stream.resetBuffer();
+			}
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			contentLength = -1;
+			if (stream != null) {
+				stream.resetBuffer();
+			}
+		}
+
+		/**
+		 * 남은 데이터를 내보내고 압축을 마친다.
+		 */
+		public void finish() throws IOException {
+			if (stream != null) {
+				stream.finishing = true;
+			}
+			if (writer != null) {
+				writer.flush();
+			}
+			if (stream != null) {
+				stream.finish();
+			} else if (contentLength >= 0) {
+				super.setContentLength(contentLength);
+			}
+		}
+
+		/**
+		 * 체인에서 예외가 발생했을 때 모아둔 데이터를 내보내고 압축기를 정리한다. 내보내는 중의 오류는 무시한다.
+		 */
+		void abort() {
+			try {
+				finish();
+			} catch (IOException e) {
+				// 무시
+			} catch (RuntimeException e) {
+				// 무시
+			} finally {
+				if (stream != null) {
+					stream.end();
+				}
+			}
+		}
+
+		private MyOutputStream getStream() {
+			if (stream == null) {
+				stream = new MyOutputStream(this);
+			}
+			return stream;
 		}
 	}
 
 	class MyOutputStream extends ServletOutputStream {
-		private ByteArrayOutputStream bytes;
+		private final MyResponseWrapper wrapper;
+		private ByteArrayOutputStream pending = new ByteArrayOutputStream(threshold);
+		private OutputStream out = null;
+		private Deflater deflater = null;
+		private boolean compressing = false;
+		private boolean finishing = false;
+		private boolean finished = false;
 
-		public MyOutputStream(ByteArrayOutputStream bytes) {
-			this.bytes = bytes;
+		public MyOutputStream(MyResponseWrapper wrapper) {
+			this.wrapper = wrapper;
 		}
 
 		@Override
 		public void write(int c) throws IOException {
-			bytes.write(c);
+			if (out != null) {
+				out.write(c);
+				return;
+			}
+			pending.write(c);
+			decide();
 		}
 
 		@Override
 		public void write(byte[] b) throws IOException {
-			bytes.write(b);
+			write(b, 0, b.length);
 		}
 
 		@Override
 		public void write(byte[] b, int off, int len) throws IOException {
-			bytes.write(b, off, len);
+			if (out != null) {
+				out.write(b, off, len);
+				return;
+			}
+			pending.write(b, off, len);
+			decide();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (finishing) {
+				return;
+			}
+			if (out == null && pending.size() > 0) {
+				start(isCompressible());
+			}
+			if (out != null) {
+				out.flush();
+			}
 		}
 
 		@Override
 		public void close() throws IOException {
-			bytes.close();
-			super.close();
-			bytes = null;
+			finish();
+		}
+
+		/**
+		 * 압축하지 않고 그대로 내보내는지 여부
+		 */
+		public boolean isPassThrough() {
+			return out != null && !compressing;
+		}
+
+		/**
+		 * 아직 압축 여부를 정하지 않았으면 모아둔 데이터를 지운다.
+		 */
+		public void resetBuffer() {
+			if (out == null) {
+				pending.reset();
+			}
+		}
+
+		/**
+		 * 남은 데이터를 내보내고 압축을 마친다.
+		 */
+		public void finish() throws IOException {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			if (out == null) {
+				if (pending.size() == 0) {
+					if (wrapper.contentLength >= 0) {
+						wrapper.getResponse().setContentLength(wrapper.contentLength);
+					}
+					return;
+				}
+				start(pending.size() >= threshold && isCompressible());
+			}
+			if (compressing) {
+				try {
+					((DeflaterOutputStream) out).finish();
+				} finally {
+					deflater.end();
+				}
+			}
+			out.flush();
+		}
+
+		/**
+		 * 압축기를 정리한다. 이미 정리했으면 아무것도 하지 않는다.
+		 */
+		void end() {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+
+		/**
+		 * 압축이 필요없는 응답이면 바로 그대로 내보내고, 모은 데이터가 최소 크기를 넘으면 압축을 시작한다.
+		 */
+		private void decide() throws IOException {
+			if (!isCompressible()) {
+				start(false);
+			} else if (pending.size() >= threshold) {
+				start(true);
+			}
+		}
+
+		/**
+		 * 압축 여부를 결정하고 모아둔 데이터를 내보낸다.
+		 */
+		private void start(boolean compress) throws IOException {
+			HttpServletResponse response = (HttpServletResponse) wrapper.getResponse();
+			String contentType = nullToBlankString(wrapper.getContentType());
+			if (isTextualContentType(contentType) && !wrapper.containsHeader("Content-Encoding")) {
+				if (response.containsHeader("Vary")) {
+					response.addHeader("Vary", "Accept-Encoding");
+				} else {
+					response.setHeader("Vary", "Accept-Encoding");
+				}
+			}
+			compressing = compress;
+			if (compress) {
+				response.setHeader("Content-Encoding", wrapper.encoding);
+				if ("gzip".equals(wrapper.encoding)) {
+					LevelGZIPOutputStream gzos = new LevelGZIPOutputStream(response.getOutputStream(), getLevel(contentType));
+					deflater = gzos.getDeflater();
+					out = gzos;
+				} else {
+					deflater = new Deflater(getLevel(contentType));
+					out = new DeflaterOutputStream(response.getOutputStream(), deflater, BUFFER_SIZE, true);
+				}
+			} else {
+				if (finished) {
+					response.setContentLength(pending.size());
+				} else if (wrapper.contentLength >= 0) {
+					response.setContentLength(wrapper.contentLength);
+				}
+				out = response.getOutputStream();
+			}
+			pending.writeTo(out);
+			pending = null;
+		}
+
+		/**
+		 * 압축할 응답인지 판별한다. 이미 인코딩된 응답, 알려진 크기가 최소 크기보다 작은 응답은 압축하지 않는다.
+		 */
+		private boolean isCompressible() {
+			if (wrapper.encoding == null || wrapper.containsHeader("Content-Encoding")) {
+				return false;
+			}
+			if (wrapper.contentLength >= 0 && wrapper.contentLength < threshold) {
+				return false;
+			}
+			return isTextualContentType(nullToBlankString(wrapper.getContentType()));
+		}
+	}
+
+	/**
+	 * 압축 레벨을 지정할 수 있는 GZIPOutputStream
+	 */
+	static class LevelGZIPOutputStream extends GZIPOutputStream {
+
+		public LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+			super(out, BUFFER_SIZE, true);
+			def.setLevel(level);
+		}
+
+		public Deflater getDeflater() {
+			return def;
 		}
 	}
-}
\ No newline at end of file
+}
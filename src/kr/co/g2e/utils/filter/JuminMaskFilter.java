@@ -1,141 +1,82 @@
 package kr.co.g2e.utils.filter;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.regex.Pattern;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpServletResponseWrapper;
 
 /**
- * 응답데이터에서 주민번호 패턴 마스킹 필터
+ * 응답데이터에서 주민번호 등 개인정보 패턴 마스킹 필터
+ * 응답 파이프라인(ResponsePipeline)의 마스킹 단계로 동작하며, 응답 전체를 모으지 않고 쓰여지는 대로 마스킹한다.
+ * 여러 유형을 사용하더라도 응답을 한번만 훑는다. (MaskingOutputStream 참고)
+ * 필터 초기화 파라미터
+ * types : 마스킹할 유형 목록, PatternUtil 의 패턴 이름 (기본 RESIDENT_REGISTRATION_NO)
+ *         RESIDENT_REGISTRATION_NO(JUMIN_NO), CREDIT_CARD_NO, CORPORATION_REGISTRATION_NO, BUSINESS_REGISTRATION_NO,
+ *         CELLPHONE_NO, TELEPHONE_NO, IP_ADDRESS, EMAIL_ADDRESS
  */
 public class JuminMaskFilter implements Filter {
-	private final Pattern JUMIN_PATTERN = Pattern.compile("(?<=[^0-9])(\\d{2}(?:0[1-9]|1[0-2])(?:0[1-9]|[12][0-9]|3[01])(?:\\s|&nbsp;)*[-|~]?(?:\\s|&nbsp;)*)[1-8]\\d{6}(?=[^0-9])?", Pattern.MULTILINE);
-
-	@Override
-	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
-		MyResponseWrapper resWrapper = null;
-		try {
-			resWrapper = new MyResponseWrapper((HttpServletResponse) response);
-			filterChain.doFilter(request, resWrapper);
-			String contentType = nullToBlankString(resWrapper.getContentType());
-			if (isTextualContentType(contentType)) {
-				juminMasking(response, resWrapper);
-			} else {
-				resWrapper.writeTo(response.getOutputStream());
-			}
-		} finally {
-			if (resWrapper != null) {
-				resWrapper.close();
-				resWrapper = null;
-			}
-		}
-	}
-
-	@Override
-	public void init(FilterConfig filterConfig) throws ServletException {
-	}
-
-	@Override
-	public void destroy() {
-	}
-
-	private void juminMasking(ServletResponse response, MyResponseWrapper resWrapper) throws IOException {
-		String juminMaskData = JUMIN_PATTERN.matcher(resWrapper.toString()).replaceAll("$1******");
-		PrintWriter writer = response.getWriter();
-		writer.print(juminMaskData);
-		writer.flush();
-	}
-
-	private boolean isTextualContentType(String contentType) {
-		return "".equals(contentType) || contentType.contains("text") || contentType.contains("json") || contentType.contains("xml");
-	}
-
-	private static String nullToBlankString(String str) {
-		String rval = "";
-		if (str == null) {
-			rval = "";
-		} else {
-			rval = str;
-		}
-		return rval;
-	}
-
-	class MyResponseWrapper extends HttpServletResponseWrapper {
-		private ByteArrayOutputStream bytes;
-		private PrintWriter writer;
-
-		public MyResponseWrapper(HttpServletResponse res) {
-			super(res);
-			bytes = new ByteArrayOutputStream(8 * 1024);
-			writer = new PrintWriter(bytes);
+	/**
+	 * 마스킹할 유형
+	 */
+	private MaskingOutputStream.Type[] types = { MaskingOutputStream.Type.RESIDENT_REGISTRATION_NO };
+
+	/**
+	 * 응답 파이프라인의 마스킹 단계
+	 */
+	private final StreamingResponseStage stage = new StreamingResponseStage() {
+		@Override
+		public int getOrder() {
+			return ORDER_MASK;
 		}
 
 		@Override
-		public PrintWriter getWriter() {
-			return writer;
+		public boolean isApplicable(String contentType) {
+			return isTextualContentType(contentType);
 		}
 
 		@Override
-		public ServletOutputStream getOutputStream() {
-			return new MyOutputStream(bytes);
+		public boolean isStreamable(String charset) {
+			return MaskingOutputStream.isAsciiCompatible(charset);
 		}
 
 		@Override
-		public String toString() {
-			writer.flush();
-			return bytes.toString();
+		public OutputStream wrap(OutputStream out) {
+			return new MaskingOutputStream(out, types);
 		}
 
-		public void writeTo(OutputStream os) throws IOException {
-			bytes.writeTo(os);
+		@Override
+		public String transform(String content) {
+			return MaskingOutputStream.mask(content, types);
 		}
+	};
 
-		public void close() throws IOException {
-			bytes.close();
-			writer.close();
-			bytes = null;
-			writer = null;
-		}
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+		ResponsePipeline.doFilter(request, response, filterChain, stage);
 	}
 
-	class MyOutputStream extends ServletOutputStream {
-		private ByteArrayOutputStream bytes;
-
-		public MyOutputStream(ByteArrayOutputStream bytes) {
-			this.bytes = bytes;
-		}
-
-		@Override
-		public void write(int c) throws IOException {
-			bytes.write(c);
-		}
-
-		@Override
-		public void write(byte[] b) throws IOException {
-			bytes.write(b);
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+		String types = filterConfig.getInitParameter("types");
+		if (types != null) {
+			try {
+				this.types = MaskingOutputStream.Type.parse(types);
+			} catch (IllegalArgumentException e) {
+				throw new ServletException("지원하지 않는 마스킹 유형입니다. : " + types, e);
+			}
 		}
+	}
 
-		@Override
-		public void write(byte[] b, int off, int len) throws IOException {
-			bytes.write(b, off, len);
-		}
+	@Override
+	public void destroy() {
+	}
 
-		@Override
-		public void close() throws IOException {
-			bytes.close();
-			super.close();
-			bytes = null;
-		}
+	private boolean isTextualContentType(String contentType) {
+		return "".equals(contentType) || contentType.contains("text") || contentType.contains("json") || contentType.contains("xml");
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,862 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 쓰여지는 바이트에서 개인정보 패턴을 찾아 마스킹하는 스트림
+ * 정규식을 유형별로 반복 적용하지 않고, 바이트를 한번 훑으면서 패턴이 시작될 수 있는 위치에서만 사용하는 유형의 검사기를 우선순위대로 실행한다.
+ * 청크 경계에 걸친 후보는 패턴 최대 길이만큼만 남겨두었다가 다음 쓰기와 이어서 검사한다.
+ * 유형별 패턴은 PatternUtil 의 같은 이름의 패턴과 같으며, 숫자로 시작하는 패턴은 앞 문자가 숫자가 아닐 때, 이메일은 앞 문자가 \w 가 아닐 때만 찾는다.
+ * 본문 맨 앞은 숫자나 \w 가 아닌 것으로 보므로, 기존 JuminMaskFilter 의 정규식((?&lt;=[^0-9]))과 달리 본문 맨 앞의 번호도 마스킹한다.
+ * 공백, &amp;nbsp; 구분자는 MAX_SEPARATOR 바이트까지, 이메일은 MAX_EMAIL 바이트까지만 허용한다.
+ * 숫자, 영문자, 구분 문자가 ASCII 와 같은 바이트로 인코딩되는 문자셋에서만 사용할 수 있다. (isAsciiCompatible 참고)
+ */
+final class MaskingOutputStream extends FilterOutputStream {
+
+	/**
+	 * 마스킹 유형 (선언 순서가 우선순위)
+	 */
+	enum Type {
+		/**
+		 * 주민등록번호 : 뒷자리 7자리를 ****** 로 바꾼다. 구분자로 -, |, ~ 를 허용한다.
+		 */
+		RESIDENT_REGISTRATION_NO,
+		/**
+		 * 신용카드번호 : 앞 6자리, 뒤 4자리를 제외하고 * 로 바꾼다.
+		 */
+		CREDIT_CARD_NO,
+		/**
+		 * 법인번호 : 뒷자리 7자리를 * 로 바꾼다.
+		 */
+		CORPORATION_REGISTRATION_NO,
+		/**
+		 * 사업자등록번호 : 마지막 5자리를 * 로 바꾼다.
+		 */
+		BUSINESS_REGISTRATION_NO,
+		/**
+		 * 휴대폰번호 : 가운데 자리를 * 로 바꾼다.
+		 */
+		CELLPHONE_NO,
+		/**
+		 * 일반전화번호 : 가운데 자리를 * 로 바꾼다.
+		 */
+		TELEPHONE_NO,
+		/**
+		 * 아이피주소 : 마지막 자리를 * 로 바꾼다.
+		 */
+		IP_ADDRESS,
+		/**
+		 * 이메일주소 : 아이디의 앞 2자리를 제외하고 * 로 바꾼다.
+		 */
+		EMAIL_ADDRESS;
+
+		/**
+		 * 쉼표로 구분된 유형 이름 목록을 우선순위 순서의 배열로 바꾼다. JUMIN_NO 는 RESIDENT_REGISTRATION_NO 와 같다.
+		 * @param names 유형 이름 목록
+		 * @return 유형 배열
+		 * @throws IllegalArgumentException 지원하지 않는 유형이 있는 경우
+		 */
+		static Type[] parse(String names) {
+			boolean[] enabled = new boolean[values().length];
+			for (String name : names.split(",")) {
+				String item = name.trim().toUpperCase();
+				if (item.length() == 0) {
+					continue;
+				}
+				if ("JUMIN_NO".equals(item)) {
+					item = RESIDENT_REGISTRATION_NO.name();
+				}
+				enabled[valueOf(item).ordinal()] = true;
+			}
+			List<Type> typeList = new ArrayList<Type>();
+			for (Type type : values()) {
+				if (enabled[type.ordinal()]) {
+					typeList.add(type);
+				}
+			}
+			return typeList.toArray(new Type[typeList.size()]);
+		}
+	}
+
+	/**
+	 * 구분자(공백, &amp;nbsp;)의 최대 길이
+	 */
+	static final int MAX_SEPARATOR = 32;
+
+	/**
+	 * 이메일주소의 최대 길이
+	 */
+	static final int MAX_EMAIL = 128;
+
+	/**
+	 * 버퍼 크기
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * 검사 결과 : 일치하지 않음
+	 */
+	private static final int NO_MATCH = -1;
+
+	/**
+	 * 검사 결과 : 판단하려면 데이터가 더 필요함
+	 */
+	private static final int NEED_MORE = -2;
+
+	/**
+	 * 주민등록번호 뒷자리 대신 쓸 문자
+	 */
+	private static final byte[] RESIDENT_MASK = { '*', '*', '*', '*', '*', '*' };
+
+	/**
+	 * 문자셋별 ASCII 호환 여부
+	 */
+	private static final Map<String, Boolean> asciiCompatibleMap = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * 사용하는 유형 (우선순위 순서)
+	 */
+	private final Type[] types;
+
+	/**
+	 * 아직 내보내지 않은 바이트
+	 */
+	private final byte[] buf = new byte[BUFFER_SIZE];
+
+	/**
+	 * 이메일 도메인의 라벨 끝 위치
+	 */
+	private final int[] labelEnds = new int[MAX_EMAIL];
+
+	/**
+	 * buf 에 있는 바이트 수
+	 */
+	private int count = 0;
+
+	/**
+	 * buf[0] 바로 앞의 원래 바이트가 숫자인지 여부
+	 */
+	private boolean previousDigit = false;
+
+	/**
+	 * buf[0] 바로 앞의 원래 바이트가 \w 인지 여부
+	 */
+	private boolean previousWord = false;
+
+	/**
+	 * 더 이상 데이터가 없는지 여부
+	 */
+	private boolean eof = false;
+
+	/**
+	 * 마지막으로 일치한 패턴의 마스킹 시작 위치
+	 */
+	private int maskStart;
+
+	/**
+	 * 마지막으로 일치한 패턴의 마스킹 끝 위치
+	 */
+	private int maskEnd;
+
+	/**
+	 * 마지막으로 일치한 패턴의 유형
+	 */
+	private Type matchType;
+
+	/**
+	 * 생성자
+	 * @param out 마스킹한 바이트를 내보낼 스트림
+	 * @param types 사용하는 유형 (우선순위 순서)
+	 */
+	MaskingOutputStream(OutputStream out, Type[] types) {
+		super(out);
+		this.types = types;
+	}
+
+	/**
+	 * 문자셋이 이 스트림으로 마스킹할 수 있는 문자셋인지 판별한다.
+	 * @param charset 문자셋
+	 * @return 숫자, 영문자, 구분 문자가 ASCII 와 같은 바이트로 인코딩되면 true
+	 */
+	static boolean isAsciiCompatible(String charset) {
+		Boolean compatible = asciiCompatibleMap.get(charset);
+		if (compatible == null) {
+			String probe = "0123456789 \t\r\n-|~().@_&nbsp;ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+			try {
+				compatible = Boolean.valueOf(Arrays.equals(probe.getBytes(Charset.forName(charset)), probe.getBytes("ISO-8859-1")));
+			} catch (Exception e) {
+				compatible = Boolean.FALSE;
+			}
+			asciiCompatibleMap.put(charset, compatible);
+		}
+		return compatible.booleanValue();
+	}
+
+	/**
+	 * 문자열을 마스킹한다. ASCII 호환이 아닌 문자셋의 응답에 사용한다.
+	 * @param content 문자열
+	 * @param types 사용하는 유형 (우선순위 순서)
+	 * @return 마스킹된 문자열
+	 */
+	static String mask(String content, Type[] types) {
+		try {
+			byte[] bytes = content.getBytes("UTF-8");
+			ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length);
+			MaskingOutputStream out = new MaskingOutputStream(result, types);
+			out.write(bytes, 0, bytes.length);
+			out.close();
+			return result.toString("UTF-8");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == buf.length) {
+			process();
+		}
+		buf[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (count == buf.length) {
+				process();
+			}
+			int n = Math.min(len, buf.length - count);
+			System.arraycopy(b, off, buf, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * 패턴의 일부일 수 있는 끝부분을 제외하고 내보낸다.
+	 */
+	@Override
+	public void flush() throws IOException {
+		process();
+		out.flush();
+	}
+
+	/**
+	 * 남은 바이트를 모두 내보내고 스트림을 닫는다.
+	 */
+	@Override
+	public void close() throws IOException {
+		eof = true;
+		process();
+		out.close();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	/**
+	 * 버퍼를 검사하여 패턴을 마스킹하고, 판단이 끝난 부분을 내보낸다.
+	 * 주민등록번호는 마스킹하면 길이가 줄어들므로 버퍼 앞쪽으로 당겨 쓰면서 검사한다.
+	 */
+	private void process() throws IOException {
+		boolean digit = previousDigit;
+		boolean word = previousWord;
+		int w = 0;
+		int i = 0;
+		while (i < count) {
+			byte c = buf[i];
+			boolean isDigit = isDigit(c);
+			boolean isWord = isDigit || isWord(c);
+			if ((isDigit && !digit) || (isWord && !word)) {
+				int end = match(i, isDigit && !digit, isWord && !word);
+				if (end == NEED_MORE) {
+					if (i > 0 || count < buf.length) {
+						break;
+					}
+					end = NO_MATCH; // 버퍼가 가득 찼는데도 판단할 수 없으면 일치하지 않는 것으로 보고 진행한다.
+				}
+				if (end > 0) {
+					byte last = buf[end - 1];
+					int keep = maskStart - i;
+					System.arraycopy(buf, i, buf, w, keep);
+					w += keep;
+					if (matchType == Type.RESIDENT_REGISTRATION_NO) {
+						System.arraycopy(RESIDENT_MASK, 0, buf, w, RESIDENT_MASK.length);
+						w += RESIDENT_MASK.length;
+					} else {
+						Arrays.fill(buf, w, w + maskEnd - maskStart, (byte) '*');
+						w += maskEnd - maskStart;
+					}
+					System.arraycopy(buf, maskEnd, buf, w, end - maskEnd);
+					w += end - maskEnd;
+					digit = isDigit(last);
+					word = digit || isWord(last);
+					i = end;
+					continue;
+				}
+			}
+			digit = isDigit;
+			word = isWord;
+			buf[w++] = c;
+			i++;
+		}
+		if (w > 0) {
+			out.write(buf, 0, w);
+		}
+		System.arraycopy(buf, i, buf, 0, count - i);
+		count -= i;
+		previousDigit = digit;
+		previousWord = word;
+	}
+
+	/**
+	 * start 위치에서 사용하는 유형을 우선순위대로 검사한다.
+	 * 앞선 유형의 판단에 데이터가 더 필요하면 뒤 유형이 일치하더라도 기다린다.
+	 * @return 일치하면 패턴이 끝나는 위치, 일치하지 않으면 NO_MATCH, 데이터가 모자라면 NEED_MORE
+	 */
+	private int match(int start, boolean digitStart, boolean wordStart) {
+		for (Type type : types) {
+			int end;
+			if (type == Type.EMAIL_ADDRESS) {
+				if (!wordStart) {
+					continue;
+				}
+				end = matchEmailAddress(start);
+			} else {
+				if (!digitStart) {
+					continue;
+				}
+				switch (type) {
+				case RESIDENT_REGISTRATION_NO:
+					end = matchResidentRegistrationNo(start);
+					break;
+				case CREDIT_CARD_NO:
+					end = matchCreditCardNo(start);
+					break;
+				case CORPORATION_REGISTRATION_NO:
+					end = matchCorporationRegistrationNo(start);
+					break;
+				case BUSINESS_REGISTRATION_NO:
+					end = matchBusinessRegistrationNo(start);
+					break;
+				case CELLPHONE_NO:
+					end = matchCellphoneNo(start);
+					break;
+				case TELEPHONE_NO:
+					end = matchTelephoneNo(start);
+					break;
+				default:
+					end = matchIPAddress(start);
+					break;
+				}
+			}
+			if (end == NEED_MORE) {
+				return NEED_MORE;
+			}
+			if (end > 0) {
+				matchType = type;
+				return end;
+			}
+		}
+		return NO_MATCH;
+	}
+
+	/**
+	 * \d{2}(?:0[1-9]|1[0-2])(?:0[1-9]|[12][0-9]|3[01])(?:\s|&amp;nbsp;)*[-|~]?(?:\s|&amp;nbsp;)*[1-8]\d{6}
+	 */
+	private int matchResidentRegistrationNo(int start) {
+		int p = digits(start, 6);
+		if (p < 0) {
+			return p;
+		}
+		int month = (buf[start + 2] - '0') * 10 + (buf[start + 3] - '0');
+		int day = (buf[start + 4] - '0') * 10 + (buf[start + 5] - '0');
+		if (month < 1 || month > 12 || day < 1 || day > 31) {
+			return NO_MATCH;
+		}
+		p = separator(p, "-|~");
+		if (p < 0) {
+			return p;
+		}
+		if (p >= count) {
+			return more();
+		}
+		if (buf[p] < '1' || buf[p] > '8') {
+			return NO_MATCH;
+		}
+		int end = digits(p + 1, 6);
+		if (end < 0) {
+			return end;
+		}
+		maskStart = p;
+		maskEnd = end;
+		return end;
+	}
+
+	/**
+	 * (?:5[1-5]\d{14})|(?:4\d{12}(\d{3})?)|(?:3[47]\d{13})|(?:6011\d{12})|(?:(?:30[0-5]|36\d|38\d)\d{11})
+	 */
+	private int matchCreditCardNo(int start) {
+		int end;
+		if (start + 1 >= count) {
+			return more();
+		}
+		byte c0 = buf[start];
+		byte c1 = buf[start + 1];
+		if (c0 == '5' && c1 >= '1' && c1 <= '5') {
+			end = digits(start + 2, 14);
+		} else if (c0 == '4') {
+			end = digits(start + 1, 12);
+			if (end > 0) {
+				int longer = digits(end, 3);
+				if (longer == NEED_MORE) {
+					return NEED_MORE;
+				}
+				if (longer > 0) {
+					end = longer;
+				}
+			}
+		} else if (c0 == '3' && (c1 == '4' || c1 == '7')) {
+			end = digits(start + 2, 13);
+		} else if (c0 == '3' && c1 == '0') {
+			if (start + 2 >= count) {
+				return more();
+			}
+			if (buf[start + 2] < '0' || buf[start + 2] > '5') {
+				return NO_MATCH;
+			}
+			end = digits(start + 3, 11);
+		} else if (c0 == '3' && (c1 == '6' || c1 == '8')) {
+			end = digits(start + 2, 12);
+		} else if (c0 == '6' && c1 == '0') {
+			if (start + 3 >= count) {
+				return more();
+			}
+			if (buf[start + 2] != '1' || buf[start + 3] != '1') {
+				return NO_MATCH;
+			}
+			end = digits(start + 4, 12);
+		} else {
+			return NO_MATCH;
+		}
+		if (end < 0) {
+			return end;
+		}
+		maskStart = start + 6;
+		maskEnd = end - 4;
+		return end;
+	}
+
+	/**
+	 * \d{6}(?:\s|&amp;nbsp;)*-?(?:\s|&amp;nbsp;)*\d{7}
+	 */
+	private int matchCorporationRegistrationNo(int start) {
+		int p = digits(start, 6);
+		if (p < 0) {
+			return p;
+		}
+		p = separator(p, "-");
+		if (p < 0) {
+			return p;
+		}
+		int end = digits(p, 7);
+		if (end < 0) {
+			return end;
+		}
+		maskStart = p;
+		maskEnd = end;
+		return end;
+	}
+
+	/**
+	 * [0-9]{3}(?:\s|&amp;nbsp;)*-(?:\s|&amp;nbsp;)*[0-9]{2}(?:\s|&amp;nbsp;)*-(?:\s|&amp;nbsp;)*[0-9]{5}
+	 */
+	private int matchBusinessRegistrationNo(int start) {
+		int p = digits(start, 3);
+		if (p < 0) {
+			return p;
+		}
+		p = requiredSeparator(p);
+		if (p < 0) {
+			return p;
+		}
+		p = digits(p, 2);
+		if (p < 0) {
+			return p;
+		}
+		p = requiredSeparator(p);
+		if (p < 0) {
+			return p;
+		}
+		int end = digits(p, 5);
+		if (end < 0) {
+			return end;
+		}
+		maskStart = p;
+		maskEnd = end;
+		return end;
+	}
+
+	/**
+	 * 01(?:0|1|6|7|8|9)(?:\s|&amp;nbsp;)*-?(?:\s|&amp;nbsp;)*(?:\d{4}|\d{3})(?:\s|&amp;nbsp;)*-?(?:\s|&amp;nbsp;)*\d{4}
+	 */
+	private int matchCellphoneNo(int start) {
+		if (start + 2 >= count) {
+			return more();
+		}
+		byte c = buf[start + 2];
+		if (buf[start] != '0' || buf[start + 1] != '1' || !(c == '0' || c == '1' || (c >= '6' && c <= '9'))) {
+			return NO_MATCH;
+		}
+		int p = separator(start + 3, "-");
+		if (p < 0) {
+			return p;
+		}
+		return matchPhoneTail(p);
+	}
+
+	/**
+	 * (?:02|0[3-9]{1}[0-9]{1})(?:\s|&amp;nbsp;)*(?:\)|-)?(?:\s|&amp;nbsp;)*(?:\d{4}|\d{3})(?:\s|&amp;nbsp;)*-?(?:\s|&amp;nbsp;)*\d{4}
+	 */
+	private int matchTelephoneNo(int start) {
+		if (start + 1 >= count) {
+			return more();
+		}
+		if (buf[start] != '0') {
+			return NO_MATCH;
+		}
+		int p;
+		byte c = buf[start + 1];
+		if (c == '2') {
+			p = start + 2;
+		} else if (c >= '3' && c <= '9') {
+			p = digits(start + 2, 1);
+			if (p < 0) {
+				return p;
+			}
+		} else {
+			return NO_MATCH;
+		}
+		p = separator(p, ")-");
+		if (p < 0) {
+			return p;
+		}
+		return matchPhoneTail(p);
+	}
+
+	/**
+	 * 전화번호의 (?:\d{4}|\d{3})(?:\s|&amp;nbsp;)*-?(?:\s|&amp;nbsp;)*\d{4} 부분, 가운데 자리를 마스킹한다.
+	 */
+	private int matchPhoneTail(int p) {
+		int end = matchPhoneTail(p, 4);
+		if (end == NO_MATCH) {
+			end = matchPhoneTail(p, 3);
+		}
+		return end;
+	}
+
+	private int matchPhoneTail(int p, int length) {
+		int middle = digits(p, length);
+		if (middle < 0) {
+			return middle;
+		}
+		int q = separator(middle, "-");
+		if (q < 0) {
+			return q;
+		}
+		int end = digits(q, 4);
+		if (end < 0) {
+			return end;
+		}
+		maskStart = p;
+		maskEnd = middle;
+		return end;
+	}
+
+	/**
+	 * (?:(?:25[0-5]|2[0-4]\d|1\d{2}|\d{1,2})\.){3}(?:25[0-5]|2[0-4]\d|1\d{2}|\d{1,2})
+	 * PatternUtil 의 패턴은 \d{1,2} 를 먼저 시도하여 마지막 자리가 잘리므로, 가장 긴 자리를 먼저 시도한다.
+	 */
+	private int matchIPAddress(int start) {
+		int p = start;
+		for (int i = 0; i < 3; i++) {
+			p = octet(p, true);
+			if (p < 0) {
+				return p;
+			}
+		}
+		int end = octet(p, false);
+		if (end < 0) {
+			return end;
+		}
+		maskStart = p;
+		maskEnd = end;
+		return end;
+	}
+
+	/**
+	 * IP 주소의 한 자리를 검사한다.
+	 * @param dot 뒤에 '.' 이 와야 하면 true
+	 * @return 다음 위치 ('.' 다음), 일치하지 않으면 NO_MATCH, 데이터가 모자라면 NEED_MORE
+	 */
+	private int octet(int p, boolean dot) {
+		int n = 0;
+		while (n < 3) {
+			if (p + n >= count) {
+				if (!eof) {
+					return NEED_MORE;
+				}
+				break;
+			}
+			if (!isDigit(buf[p + n])) {
+				break;
+			}
+			n++;
+		}
+		for (int length = n; length >= 1; length--) {
+			if (length == 3 && !isOctet(p)) {
+				continue;
+			}
+			if (!dot) {
+				return p + length;
+			}
+			if (p + length >= count) {
+				return more();
+			}
+			if (buf[p + length] == '.') {
+				return p + length + 1;
+			}
+		}
+		return NO_MATCH;
+	}
+
+	/**
+	 * 1\d{2}|2[0-4]\d|25[0-5]
+	 */
+	private boolean isOctet(int p) {
+		int value = (buf[p] - '0') * 100 + (buf[p + 1] - '0') * 10 + (buf[p + 2] - '0');
+		return value >= 100 && value <= 255;
+	}
+
+	/**
+	 * (?:\w+\.)*\w+@(?:\w+\.)+[A-Za-z]+
+	 */
+	private int matchEmailAddress(int start) {
+		int limit = start + MAX_EMAIL;
+		int p = start;
+		while (true) {
+			p = word(p, limit);
+			if (p < 0) {
+				return p;
+			}
+			if (buf[p] == '@') {
+				break;
+			}
+			if (buf[p] != '.') {
+				return NO_MATCH;
+			}
+			p++;
+		}
+		int at = p;
+		int labels = 0;
+		p++;
+		while (true) {
+			int q = word(p, limit);
+			if (q == NEED_MORE) {
+				return NEED_MORE;
+			}
+			if (q < 0 || buf[q] != '.') {
+				break;
+			}
+			p = q + 1;
+			labelEnds[labels++] = p;
+		}
+		for (int i = labels - 1; i >= 0; i--) {
+			int q = labelEnds[i];
+			if (q >= count) {
+				if (!eof) {
+					return NEED_MORE;
+				}
+				continue;
+			}
+			if (!isAlpha(buf[q])) {
+				continue;
+			}
+			while (q < limit) {
+				if (q >= count) {
+					if (!eof) {
+						return NEED_MORE;
+					}
+					break;
+				}
+				if (!isAlpha(buf[q])) {
+					break;
+				}
+				q++;
+			}
+			maskStart = at - start > 2 ? start + 2 : start;
+			maskEnd = at;
+			return q;
+		}
+		return NO_MATCH;
+	}
+
+	/**
+	 * \w+ 를 검사한다.
+	 * @return \w 가 아닌 첫 위치, 일치하지 않으면 NO_MATCH, 데이터가 모자라면 NEED_MORE
+	 */
+	private int word(int p, int limit) {
+		if (p >= count) {
+			return more();
+		}
+		if (!isDigit(buf[p]) && !isWord(buf[p])) {
+			return NO_MATCH;
+		}
+		while (true) {
+			if (p >= limit) {
+				return NO_MATCH;
+			}
+			if (p >= count) {
+				return more();
+			}
+			if (!isDigit(buf[p]) && !isWord(buf[p])) {
+				return p;
+			}
+			p++;
+		}
+	}
+
+	/**
+	 * 숫자 length 개를 검사한다.
+	 * @return 다음 위치, 일치하지 않으면 NO_MATCH, 데이터가 모자라면 NEED_MORE
+	 */
+	private int digits(int p, int length) {
+		for (int q = p; q < p + length; q++) {
+			if (q >= count) {
+				return more();
+			}
+			if (!isDigit(buf[q])) {
+				return NO_MATCH;
+			}
+		}
+		return p + length;
+	}
+
+	/**
+	 * (?:\s|&amp;nbsp;)*[marks]?(?:\s|&amp;nbsp;)* 를 검사한다.
+	 * @return 다음 위치, 구분자가 너무 길면 NO_MATCH, 데이터가 모자라면 NEED_MORE
+	 */
+	private int separator(int p, String marks) {
+		int limit = p + MAX_SEPARATOR;
+		p = spaces(p, limit);
+		if (p < 0) {
+			return p;
+		}
+		if (p >= count) {
+			return eof ? p : NEED_MORE;
+		}
+		if (marks.indexOf(buf[p]) >= 0) {
+			p = spaces(p + 1, limit);
+		}
+		return p;
+	}
+
+	/**
+	 * (?:\s|&amp;nbsp;)*-(?:\s|&amp;nbsp;)* 를 검사한다.
+	 */
+	private int requiredSeparator(int p) {
+		int limit = p + MAX_SEPARATOR;
+		p = spaces(p, limit);
+		if (p < 0) {
+			return p;
+		}
+		if (p >= count) {
+			return more();
+		}
+		if (buf[p] != '-') {
+			return NO_MATCH;
+		}
+		return spaces(p + 1, limit);
+	}
+
+	/**
+	 * (?:\s|&amp;nbsp;)* 를 검사한다.
+	 */
+	private int spaces(int p, int limit) {
+		while (true) {
+			if (p > limit) {
+				return NO_MATCH;
+			}
+			if (p >= count) {
+				return eof ? p : NEED_MORE;
+			}
+			byte c = buf[p];
+			if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B) {
+				p++;
+			} else if (c == '&') {
+				int end = nbsp(p);
+				if (end == NEED_MORE) {
+					return NEED_MORE;
+				}
+				if (end < 0) {
+					return p;
+				}
+				p = end;
+			} else {
+				return p;
+			}
+		}
+	}
+
+	/**
+	 * &amp;nbsp; 를 검사한다.
+	 */
+	private int nbsp(int p) {
+		String nbsp = "&nbsp;";
+		for (int i = 0; i < nbsp.length(); i++) {
+			if (p + i >= count) {
+				return more();
+			}
+			if (buf[p + i] != nbsp.charAt(i)) {
+				return NO_MATCH;
+			}
+		}
+		return p + nbsp.length();
+	}
+
+	/**
+	 * 데이터가 모자랄 때의 결과, 더 이상 데이터가 없으면 일치하지 않는 것으로 본다.
+	 */
+	private int more() {
+		return eof ? NO_MATCH : NEED_MORE;
+	}
+
+	private static boolean isDigit(byte c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isAlpha(byte c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	/**
+	 * 숫자를 제외한 \w 문자인지 판별한다.
+	 */
+	private static boolean isWord(byte c) {
+		return isAlpha(c) || c == '_';
+	}
+}
@@ -1,46 +1,58 @@
 package kr.co.g2e.utils.filter;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpServletResponseWrapper;
 
 import com.googlecode.htmlcompressor.compressor.HtmlCompressor;
 
 /**
  * HTML, JavaScript, CSS Minify filter
+ * 응답 파이프라인(ResponsePipeline)의 Minify 단계로 동작하므로 다른 변환 필터와 응답 버퍼를 공유한다.
+ * 필터 초기화 파라미터 cacheSize 를 지정하면 정적 리소스의 Minify 결과를 캐시한다. (StaticResponseCache 참고)
  */
 public class MinifyFilter implements Filter {
 	private HtmlCompressor compressor;
 
+	/**
+	 * 정적 리소스 응답 캐시, 사용하지 않으면 null
+	 */
+	private StaticResponseCache cache = null;
+
+	/**
+	 * 응답 파이프라인의 Minify 단계
+	 */
+	private final ResponseStage stage = new ResponseStage() {
+		@Override
+		public int getOrder() {
+			return ORDER_MINIFY;
+		}
+
+		@Override
+		public boolean isApplicable(String contentType) {
+			return isTextualContentType(contentType) && isCompressibleContentType(contentType);
+		}
+
+		@Override
+		public String transform(String content) {
+			return compressor.compress(content);
+		}
+	};
+
 	@Override
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
-		MyResponseWrapper resWrapper = null;
-		try {
-			resWrapper = new MyResponseWrapper((HttpServletResponse) response);
-			filterChain.doFilter(request, resWrapper);
-			String contentType = nullToBlankString(resWrapper.getContentType());
-			if (isTextualContentType(contentType)) {
-				minifying(response, resWrapper, contentType);
-			} else {
-				resWrapper.writeTo(response.getOutputStream());
-			}
-		} finally {
-			if (resWrapper != null) {
-				resWrapper.close();
-				resWrapper = null;
-			}
+		if (ResponsePipeline.get(request) == null && cache != null && cache.isCacheable((HttpServletRequest) request)) {
+			doCachedFilter((HttpServletRequest) request, (HttpServletResponse) response, filterChain);
+			return;
 		}
+		ResponsePipeline.doFilter(request, response, filterChain, stage);
 	}
 
 	@Override
@@ -48,21 +60,38 @@ public class MinifyFilter implements Filter {
 		compressor = new HtmlCompressor();
 		compressor.setCompressCss(true);
 		compressor.setCompressJavaScript(true);
+		cache = StaticResponseCache.create(filterConfig);
 	}
 
 	@Override
 	public void destroy() {
 	}
 
-	private void minifying(ServletResponse response, MyResponseWrapper resWrapper, String contentType) throws IOException {
-		PrintWriter writer = response.getWriter();
-		String content = resWrapper.toString();
-		if (isCompressibleContentType(contentType)) {
-			writer.write(compressor.compress(content));
-		} else {
-			writer.write(content);
+	/**
+	 * 정적 리소스 요청을 캐시에서 응답한다. 캐시에 없으면 체인을 실행하고 Minify 한 결과를 저장한 뒤 응답한다.
+	 * 안쪽 필터(GZIPFilter 등)가 이미 인코딩한 응답은 Minify 하지 않고 그대로 내보낸다.
+	 */
+	private void doCachedFilter(HttpServletRequest req, HttpServletResponse res, FilterChain filterChain) throws IOException, ServletException {
+		StaticResponseCache.Entry entry = cache.get(req);
+		if (entry == null) {
+			StaticResponseCache.CaptureResponseWrapper capture = new StaticResponseCache.CaptureResponseWrapper(res);
+			filterChain.doFilter(req, capture);
+			byte[] body = capture.toByteArray();
+			String contentType = nullToBlankString(capture.getContentType());
+			if (!capture.containsHeader("Content-Encoding") && stage.isApplicable(contentType)) {
+				String charset = capture.getCharacterEncoding();
+				body = stage.transform(new String(body, charset)).getBytes(charset);
+			}
+			entry = cache.put(req, capture, body);
+			if (entry == null) {
+				if (body.length > 0) {
+					res.setContentLength(body.length);
+					res.getOutputStream().write(body);
+				}
+				return;
+			}
 		}
-		writer.flush();
+		cache.serve(req, res, entry, null, 0);
 	}
 
 	private boolean isTextualContentType(String contentType) {
@@ -82,72 +111,4 @@ public class MinifyFilter implements Filter {
 		}
 		return rval;
 	}
-
-	class MyResponseWrapper extends HttpServletResponseWrapper {
-		private ByteArrayOutputStream bytes;
-		private PrintWriter writer;
-
-		public MyResponseWrapper(HttpServletResponse res) {
-			super(res);
-			bytes = new ByteArrayOutputStream(8 * 1024);
-			writer = new PrintWriter(bytes);
-		}
-
-		@Override
-		public PrintWriter getWriter() {
-			return writer;
-		}
-
-		@Override
-		public ServletOutputStream getOutputStream() {
-			return new MyOutputStream(bytes);
-		}
-
-		@Override
-		public String toString() {
-			writer.flush();
-			return bytes.toString();
-		}
-
-		public void writeTo(OutputStream os) throws IOException {
-			bytes.writeTo(os);
-		}
-
-		public void close() throws IOException {
-			bytes.close();
-			writer.close();
-			bytes = null;
-			writer = null;
-		}
-	}
-
-	class MyOutputStream extends ServletOutputStream {
-		private ByteArrayOutputStream bytes;
-
-		public MyOutputStream(ByteArrayOutputStream bytes) {
-			this.bytes = bytes;
-		}
-
-		@Override
-		public void write(int c) throws IOException {
-			bytes.write(c);
-		}
-
-		@Override
-		public void write(byte[] b) throws IOException {
-			bytes.write(b);
-		}
-
-		@Override
-		public void write(byte[] b, int off, int len) throws IOException {
-			bytes.write(b, off, len);
-		}
-
-		@Override
-		public void close() throws IOException {
-			bytes.close();
-			super.close();
-			bytes = null;
-		}
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,288 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import kr.co.g2e.utils.cache.Cache;
+import kr.co.g2e.utils.util.StringUtil;
+
+/**
+ * 클라이언트별 요청 수와 URI 별 동시 처리 수를 제한하는 필터
+ * 클라이언트는 keyHeader 로 지정한 헤더 값 또는 IP 로 구분한다.
+ * IP 는 접속한 주소이며, 접속한 주소가 trustedProxies 에 있을 때만 X-Forwarded-For 를 오른쪽부터 보아 신뢰하는 프록시가 아닌 첫 주소를 사용한다.
+ * (trustedProxies: 쉼표로 구분한 프록시 주소, '.' 또는 ':' 로 끝나면 접두어로 비교, 기본 없음)
+ * limit 건/period 초(기본 60)를 넘기면 429 응답을, URI 별 처리 중인 요청이 maxConcurrent 를 넘기면 503 응답을 바로 보낸다.
+ * mode 가 local(기본)이면 서버별로 락 없는 토큰버킷(GCRA)으로 계산하고 burst(기본 limit)만큼 한번에 허용한다.
+ * mode 가 cluster 이면 Cache.incr 로 period 단위 고정 구간의 요청 수를 서버 간에 공유한다. 캐시 오류시에는 요청을 허용한다.
+ * (maxClients: local 모드에서 기억할 최대 클라이언트 수, 기본 100000, 넘으면 오래 요청하지 않은 클라이언트부터 잊는다 / maxUris: 동시 처리 수를 셀 최대 URI 수, 기본 1000, 넘으면 처리 중인 요청이 없는 URI 부터 잊고 그래도 넘으면 나머지 URI 를 한 묶음으로 센다)
+ */
+public class RateLimitFilter implements Filter {
+	private static final Log logger = LogFactory.getLog(RateLimitFilter.class);
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+	private static final String KEY_PREFIX = "ratelimit:";
+	private final ConcurrentMap<String, AtomicLong> bucketMap = new ConcurrentHashMap<String, AtomicLong>(); // 클라이언트별 다음 허용 시각 (나노초)
+	private final ConcurrentMap<String, AtomicInteger> inFlightMap = new ConcurrentHashMap<String, AtomicInteger>(); // URI 별 처리 중인 요청 수
+	private final AtomicInteger otherInFlight = new AtomicInteger(); // maxUris 를 넘은 URI 들이 함께 쓰는 처리 중인 요청 수
+	private final AtomicLong lastSweep = new AtomicLong();
+	private String keyHeader = null;
+	private String[] trustedProxies = new String[0];
+	private boolean cluster = false;
+	private int limit = 0;
+	private int period = 60;
+	private long intervalNanos = 0;
+	private long toleranceNanos = 0;
+	private int maxConcurrent = 0;
+	private int maxClients = 100000;
+	private int maxUris = 1000;
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+		HttpServletRequest req = (HttpServletRequest) request;
+		HttpServletResponse res = (HttpServletResponse) response;
+		if (limit > 0) {
+			long retryAfter = acquire(getClientKey(req));
+			if (retryAfter > 0) {
+				res.setHeader("Retry-After", String.valueOf(retryAfter));
+				res.sendError(SC_TOO_MANY_REQUESTS);
+				return;
+			}
+		}
+		AtomicInteger inFlight = null;
+		if (maxConcurrent > 0) {
+			inFlight = getInFlight(req.getRequestURI());
+			if (inFlight.incrementAndGet() > maxConcurrent) {
+				inFlight.decrementAndGet();
+				res.setHeader("Retry-After", "1");
+				res.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				return;
+			}
+		}
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			if (inFlight != null) {
+				inFlight.decrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+		this.keyHeader = StringUtil.isEmpty(filterConfig.getInitParameter("keyHeader")) ? null : filterConfig.getInitParameter("keyHeader").trim();
+		if (!StringUtil.isEmpty(filterConfig.getInitParameter("trustedProxies"))) {
+			this.trustedProxies = filterConfig.getInitParameter("trustedProxies").trim().split("\\s*,\\s*");
+		}
+		this.cluster = "cluster".equalsIgnoreCase(filterConfig.getInitParameter("mode"));
+		this.limit = getInt(filterConfig, "limit", 0);
+		this.period = getInt(filterConfig, "period", 60);
+		this.maxConcurrent = getInt(filterConfig, "maxConcurrent", 0);
+		this.maxClients = getInt(filterConfig, "maxClients", 100000);
+		this.maxUris = getInt(filterConfig, "maxUris", 1000);
+		this.lastSweep.set(System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+		if (limit > 0) {
+			if (period <= 0) {
+				throw new ServletException("period 는 0 보다 커야 합니다. : " + period);
+			}
+			int burst = getInt(filterConfig, "burst", limit);
+			this.intervalNanos = TimeUnit.SECONDS.toNanos(period) / limit;
+			this.toleranceNanos = intervalNanos * Math.max(burst, 1);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		bucketMap.clear();
+		inFlightMap.clear();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	private String getClientKey(HttpServletRequest request) {
+		if (keyHeader != null) {
+			String value = request.getHeader(keyHeader);
+			if (!StringUtil.isEmpty(value)) {
+				return value;
+			}
+		}
+		String address = request.getRemoteAddr();
+		if (!isTrustedProxy(address)) {
+			return address;
+		}
+		String forwardedFor = request.getHeader("X-Forwarded-For");
+		if (forwardedFor == null) {
+			return address;
+		}
+		// 신뢰하는 프록시가 덧붙인 오른쪽 주소부터 보고, 클라이언트가 임의로 넣을 수 있는 왼쪽 주소는 사용하지 않는다.
+		String[] hops = forwardedFor.split(",");
+		for (int i = hops.length - 1; i >= 0; i--) {
+			String hop = hops[i].trim();
+			if (hop.length() == 0) {
+				continue;
+			}
+			address = hop;
+			if (!isTrustedProxy(hop)) {
+				break;
+			}
+		}
+		return address;
+	}
+
+	private boolean isTrustedProxy(String address) {
+		for (String proxy : trustedProxies) {
+			if (proxy.endsWith(".") || proxy.endsWith(":") ? address.startsWith(proxy) : address.equals(proxy)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 클라이언트의 요청을 허용할지 계산한다.
+	 * @return 허용하면 0, 제한하면 다시 요청할 수 있을 때까지의 초
+	 */
+	private long acquire(String key) {
+		if (cluster) {
+			return acquireCluster(key);
+		}
+		long now = System.nanoTime();
+		AtomicLong bucket = bucketMap.get(key);
+		if (bucket == null) {
+			if (bucketMap.size() >= maxClients) {
+				sweep(now);
+			}
+			AtomicLong newBucket = new AtomicLong(now);
+			bucket = bucketMap.putIfAbsent(key, newBucket);
+			if (bucket == null) {
+				bucket = newBucket;
+			}
+		}
+		while (true) {
+			long tat = bucket.get(); // 버킷이 가득 차는 시각
+			long newTat = Math.max(tat, now) + intervalNanos;
+			if (newTat - now > toleranceNanos) {
+				return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(newTat - now - toleranceNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+			}
+			if (bucket.compareAndSet(tat, newTat)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Cache.incr 로 현재 구간의 요청 수를 센다.
+	 */
+	private long acquireCluster(String key) {
+		long nowSeconds = System.currentTimeMillis() / 1000;
+		long window = nowSeconds / period;
+		try {
+			long count = Cache.incr(KEY_PREFIX + key + ":" + window, 1, period + 1);
+			if (count > limit) {
+				return Math.max(1, (window + 1) * period - nowSeconds);
+			}
+		} catch (RuntimeException e) {
+			logger.warn("요청 수 제한 캐시 오류", e);
+		}
+		return 0;
+	}
+
+	/**
+	 * 버킷이 가득 찬(더 이상 기억할 필요가 없는) 클라이언트를 지운다. 1초에 한번만 수행한다.
+	 * 그래도 최대 클라이언트 수의 90% 를 넘으면 버킷이 가장 먼저 가득 차는(오래 요청하지 않은) 클라이언트부터 지운다.
+	 * 다음 정리 전까지 새로 온 클라이언트는 최대 클라이언트 수를 넘더라도 기억하여 제한한다.
+	 */
+	private void sweep(long now) {
+		long last = lastSweep.get();
+		if (now - last < TimeUnit.SECONDS.toNanos(1) || !lastSweep.compareAndSet(last, now)) {
+			return;
+		}
+		Iterator<Map.Entry<String, AtomicLong>> it = bucketMap.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().get() <= now) {
+				it.remove();
+			}
+		}
+		int target = maxClients / 10 * 9;
+		if (bucketMap.size() <= target) {
+			return;
+		}
+		long[] tats = new long[bucketMap.size()];
+		int count = 0;
+		for (AtomicLong bucket : bucketMap.values()) {
+			if (count == tats.length) {
+				break;
+			}
+			tats[count++] = bucket.get() - now;
+		}
+		Arrays.sort(tats, 0, count);
+		long cutoff = tats[Math.max(count - target - 1, 0)] + now;
+		it = bucketMap.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue().get() - cutoff <= 0) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * URI 의 처리 중인 요청 수를 얻어온다.
+	 * 최대 URI 수를 넘으면 처리 중인 요청이 없는 URI 를 잊고, 그래도 자리가 없으면 나머지 URI 가 함께 쓰는 카운터를 리턴한다.
+	 */
+	private AtomicInteger getInFlight(String uri) {
+		AtomicInteger inFlight = inFlightMap.get(uri);
+		if (inFlight == null) {
+			if (inFlightMap.size() >= maxUris) {
+				sweepInFlight();
+				if (inFlightMap.size() >= maxUris) {
+					return otherInFlight;
+				}
+			}
+			AtomicInteger newInFlight = new AtomicInteger();
+			inFlight = inFlightMap.putIfAbsent(uri, newInFlight);
+			if (inFlight == null) {
+				inFlight = newInFlight;
+			}
+		}
+		return inFlight;
+	}
+
+	/**
+	 * 처리 중인 요청이 없는 URI 를 최대 URI 수의 90% 까지 잊는다.
+	 */
+	private void sweepInFlight() {
+		int target = maxUris * 9 / 10;
+		Iterator<Map.Entry<String, AtomicInteger>> it = inFlightMap.entrySet().iterator();
+		while (it.hasNext() && inFlightMap.size() > target) {
+			Map.Entry<String, AtomicInteger> entry = it.next();
+			if (entry.getValue().get() == 0) {
+				inFlightMap.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private int getInt(FilterConfig filterConfig, String name, int defaultValue) {
+		String value = filterConfig.getInitParameter(name);
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		return Integer.parseInt(value.trim());
+	}
+}
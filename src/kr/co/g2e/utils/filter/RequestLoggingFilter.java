@@ -2,15 +2,16 @@ package kr.co.g2e.utils.filter;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -21,8 +22,11 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -31,103 +35,270 @@ import kr.co.g2e.utils.util.StringUtil;
 
 /**
  * 요청을 로깅 하는 필터
+ * 디버그 로깅이 꺼져 있으면 요청을 감싸지 않고 그대로 통과시킨다.
+ * 요청 본문(Body)은 처음 읽을 때 저장하며, bodyMemorySize(KB, 기본 1024)를 넘으면 임시파일로 옮겨 저장하고 로그에는 앞부분 bodyLogSize(KB, 기본 4)만 남긴다.
+ * accessLog 가 true 이면 디버그 로깅과 별도로 요청마다 JSON 접근로그를 비동기로 남기고 URI 별 지연시간을 JMX 로 노출한다.
+ * (accessLogFile: 기록할 파일, 없으면 kr.co.g2e.utils.filter.AccessLog.json 로거 / accessLogBufferSize: 링버퍼 크기, 기본 8192 / accessLogMaxUris: 지연시간을 기록할 최대 URI 수, 기본 500
+ * / accessLogUriPattern: URI 에서 {id} 로 바꾸어 모을 부분의 정규식, 기본 숫자, UUID, 16진수 경로 구간, 빈 값이면 바꾸지 않음)
  */
 public class RequestLoggingFilter implements Filter {
 	private static final Log logger = LogFactory.getLog(RequestLoggingFilter.class);
+	private int bodyLogSize = 4 * 1024; // 로그에 남길 요청 본문 크기
+	private int bodyMemorySize = 1024 * 1024; // 메모리에 저장할 요청 본문 최대 크기
+	private AccessLog accessLog = null; // 비동기 접근로그
 
 	@Override
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
-		MyRequestWrapper reqWrapper = new MyRequestWrapper((HttpServletRequest) request); // 요청 Body를 여러번 읽을 수 있도록 Wrapper로 감싼다.
-		long start = 0;
-		if (logger.isDebugEnabled()) {
-			start = System.nanoTime();
-			logger.debug("★★★ " + getIpAddr(reqWrapper) + " 로 부터 \"" + reqWrapper.getMethod() + " " + reqWrapper.getRequestURI() + "\" 요청이 시작되었습니다");
-			logger.debug("ContentLength: " + reqWrapper.getContentLength() + " bytes");
-			logger.debug(Params.getParamsFromHeader(reqWrapper).toString());
-			logger.debug(Params.getParamsFromCookie(reqWrapper).toString());
-			logger.debug(Params.getParams(reqWrapper).toString());
+		if (accessLog == null) {
+			doDebugFilter((HttpServletRequest) request, response, filterChain);
+			return;
 		}
-		filterChain.doFilter(reqWrapper, response);
-		if (logger.isDebugEnabled()) {
-			logger.debug("☆☆☆ " + getIpAddr(reqWrapper) + " 로 부터 \"" + reqWrapper.getMethod() + " " + reqWrapper.getRequestURI() + "\" 요청이 종료되었습니다 | duration : " + (System.nanoTime() - start) / 1000000 + " msecs");
+		HttpServletRequest req = (HttpServletRequest) request;
+		MyResponseWrapper resWrapper = new MyResponseWrapper((HttpServletResponse) response);
+		long time = System.currentTimeMillis();
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			doDebugFilter(req, resWrapper, filterChain);
+			success = true;
+		} finally {
+			int status = resWrapper.status;
+			if (!success && status < 400) {
+				status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+			}
+			accessLog.offer(time, System.nanoTime() - start, getIpAddr(req), req.getMethod(), req.getRequestURI(), status, req.getContentLength());
 		}
 	}
 
 	@Override
 	public void init(FilterConfig filterConfig) throws ServletException {
+		String bodyLogSize = filterConfig.getInitParameter("bodyLogSize");
+		if (bodyLogSize != null) {
+			this.bodyLogSize = Integer.parseInt(bodyLogSize.trim()) * 1024;
+		}
+		String bodyMemorySize = filterConfig.getInitParameter("bodyMemorySize");
+		if (bodyMemorySize != null) {
+			this.bodyMemorySize = Integer.parseInt(bodyMemorySize.trim()) * 1024;
+		}
+		this.accessLog = AccessLog.create(filterConfig);
 	}
 
 	@Override
 	public void destroy() {
+		if (accessLog != null) {
+			accessLog.close();
+			accessLog = null;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	/**
+	 * 디버그 로깅이 켜져 있으면 요청의 시작과 종료를 로깅한다.
+	 */
+	private void doDebugFilter(HttpServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+		if (!logger.isDebugEnabled()) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		MyRequestWrapper reqWrapper = new MyRequestWrapper(request); // 요청 Body를 여러번 읽을 수 있도록 Wrapper로 감싼다.
+		try {
+			long start = System.nanoTime();
+			logger.debug("★★★ " + getIpAddr(reqWrapper) + " 로 부터 \"" + reqWrapper.getMethod() + " " + reqWrapper.getRequestURI() + "\" 요청이 시작되었습니다");
+			logger.debug("ContentLength: " + reqWrapper.getContentLength() + " bytes");
+			logger.debug(Params.getParamsFromHeader(reqWrapper).toString());
+			logger.debug(Params.getParamsFromCookie(reqWrapper).toString());
+			logger.debug(toParamsString(reqWrapper.getParameterMap()));
+			filterChain.doFilter(reqWrapper, response);
+			if (reqWrapper.isBodyRead()) {
+				logger.debug("RequestBody: " + reqWrapper.getBodyPreview(bodyLogSize));
+			}
+			logger.debug("☆☆☆ " + getIpAddr(reqWrapper) + " 로 부터 \"" + reqWrapper.getMethod() + " " + reqWrapper.getRequestURI() + "\" 요청이 종료되었습니다 | duration : " + (System.nanoTime() - start) / 1000000 + " msecs");
+		} finally {
+			reqWrapper.release();
+		}
 	}
 
 	private String getIpAddr(HttpServletRequest request) {
 		return StringUtil.null2Str(request.getHeader("X-Forwarded-For"), request.getRemoteAddr());
 	}
 
+	/**
+	 * 파라미터 맵을 Params.toString() 과 같은 형식으로 변환한다.
+	 * Params.getParams() 와 달리 요청 본문을 읽거나 Multipart 요청을 파싱하지 않는다.
+	 */
+	private String toParamsString(Map<?, ?> parameterMap) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("Params={ ");
+		long currentRow = 0;
+		for (Map.Entry<?, ?> entry : parameterMap.entrySet()) {
+			if (currentRow++ > 0) {
+				buf.append(", ");
+			}
+			buf.append(entry.getKey()).append("=");
+			String[] values = (String[]) entry.getValue();
+			if (values.length == 1) {
+				buf.append(StringUtil.nullToBlankString(values[0]));
+			} else {
+				buf.append("[");
+				for (int i = 0; i < values.length; i++) {
+					if (i > 0) {
+						buf.append(",");
+					}
+					buf.append(StringUtil.nullToBlankString(values[i]));
+				}
+				buf.append("]");
+			}
+		}
+		buf.append(" }");
+		return buf.toString();
+	}
+
 	/**
 	 * 요청 본문(Body)를 여러번 읽을 수 있도록 만드는 Wrapper 객체
+	 * 본문은 처음 읽을 때 저장하며, 메모리 한도를 넘으면 임시파일에 저장한다.
 	 */
 	class MyRequestWrapper extends HttpServletRequestWrapper {
-		private final byte[] requestBody; // 요청본문
-		private final Charset charset; // 캐릭터셋
-		private final Map<String, String[]> parameterMap = new HashMap<String, String[]>(); // 파라미터 맵
+		private DeferredFileOutputStream body = null; // 요청본문
 
 		public MyRequestWrapper(HttpServletRequest request) {
 			super(request);
-			String charEncoding = request.getCharacterEncoding(); // 인코딩
-			for (Object obj : request.getParameterMap().keySet()) {
-				String key = (String) obj;
-				parameterMap.put(key, request.getParameterValues(key));
-			}
-			this.charset = StringUtil.isEmpty(charEncoding) ? StandardCharsets.UTF_8 : Charset.forName(charEncoding);
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			final InputStream is = openBody();
+			return new ServletInputStream() {
+				@Override
+				public int read() throws IOException {
+					return is.read();
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					return is.read(b, off, len);
+				}
+
+				@Override
+				public int available() throws IOException {
+					return is.available();
+				}
+
+				@Override
+				public void close() throws IOException {
+					is.close();
+				}
+			};
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException {
+			String charEncoding = getCharacterEncoding(); // 인코딩
+			Charset charset = StringUtil.isEmpty(charEncoding) ? StandardCharsets.UTF_8 : Charset.forName(charEncoding);
+			return new BufferedReader(new InputStreamReader(this.getInputStream(), charset));
+		}
+
+		/**
+		 * 요청 본문을 읽은 적이 있는지 여부
+		 */
+		public boolean isBodyRead() {
+			return body != null;
+		}
+
+		/**
+		 * 요청 본문의 앞부분을 문자열로 리턴한다.
+		 * @param maxSize 최대 바이트 수
+		 * @return 요청 본문 앞부분
+		 */
+		public String getBodyPreview(int maxSize) throws IOException {
+			long total = body.getByteCount();
+			byte[] head = new byte[(int) Math.min(total, maxSize)];
+			InputStream is = openBody();
 			try {
-				InputStream is = request.getInputStream();
-				requestBody = IOUtils.toByteArray(is);
-			} catch (IOException e) {
-				throw new RuntimeException(e);
+				new DataInputStream(is).readFully(head);
+			} finally {
+				is.close();
+			}
+			String charEncoding = getCharacterEncoding();
+			String preview = new String(head, StringUtil.isEmpty(charEncoding) ? StandardCharsets.UTF_8 : Charset.forName(charEncoding));
+			if (total > maxSize) {
+				return preview + "... (" + total + " bytes)";
 			}
+			return preview;
 		}
 
-		@Override
-		public String getParameter(String name) {
-			String[] values = parameterMap.get(name);
-			if (values == null) {
-				return null;
+		/**
+		 * 임시파일을 삭제한다.
+		 */
+		public void release() {
+			if (body != null && !body.isInMemory()) {
+				if (!body.getFile().delete()) {
+					body.getFile().deleteOnExit();
+				}
 			}
-			return values[0];
+		}
+
+		/**
+		 * 저장한 요청 본문을 읽는 스트림을 리턴한다. 처음 호출될 때 원래 요청의 본문을 모두 읽어 저장한다.
+		 */
+		private InputStream openBody() throws IOException {
+			if (body == null) {
+				super.getParameterMap(); // 폼 파라미터는 본문을 읽기 전에 파싱되어야 한다.
+				File file = new File(System.getProperty("java.io.tmpdir"), "g2e-request-" + UUID.randomUUID() + ".tmp");
+				DeferredFileOutputStream out = new DeferredFileOutputStream(bodyMemorySize, file);
+				try {
+					IOUtils.copyLarge(super.getInputStream(), out);
+				} finally {
+					out.close();
+					body = out;
+				}
+			}
+			if (body.isInMemory()) {
+				return new ByteArrayInputStream(body.getData());
+			}
+			return new FileInputStream(body.getFile());
+		}
+	}
+
+	/**
+	 * 응답 상태코드를 기억하는 Wrapper 객체 (Servlet 2.4 에는 getStatus() 가 없다)
+	 */
+	class MyResponseWrapper extends HttpServletResponseWrapper {
+		private int status = HttpServletResponse.SC_OK; // 응답 상태코드
+
+		public MyResponseWrapper(HttpServletResponse response) {
+			super(response);
 		}
 
 		@Override
-		public Map<String, String[]> getParameterMap() {
-			return Collections.unmodifiableMap(parameterMap);
+		public void setStatus(int sc) {
+			super.setStatus(sc);
+			this.status = sc;
 		}
 
 		@Override
-		@SuppressWarnings("rawtypes")
-		public Enumeration getParameterNames() {
-			return Collections.enumeration(parameterMap.keySet());
+		@SuppressWarnings("deprecation")
+		public void setStatus(int sc, String sm) {
+			super.setStatus(sc, sm);
+			this.status = sc;
 		}
 
 		@Override
-		public String[] getParameterValues(String name) {
-			return parameterMap.get(name);
+		public void sendError(int sc) throws IOException {
+			super.sendError(sc);
+			this.status = sc;
 		}
 
 		@Override
-		public ServletInputStream getInputStream() {
-			final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(requestBody);
-			return new ServletInputStream() {
-				@Override
-				public int read() {
-					return byteArrayInputStream.read();
-				}
-			};
+		public void sendError(int sc, String msg) throws IOException {
+			super.sendError(sc, msg);
+			this.status = sc;
 		}
 
 		@Override
-		public BufferedReader getReader() {
-			return new BufferedReader(new InputStreamReader(this.getInputStream(), charset));
+		public void sendRedirect(String location) throws IOException {
+			super.sendRedirect(location);
+			this.status = HttpServletResponse.SC_MOVED_TEMPORARILY;
 		}
 	}
-}
\ No newline at end of file
+}
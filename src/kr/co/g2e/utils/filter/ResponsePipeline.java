@@ -0,0 +1,543 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * 응답 변환 파이프라인
+ * 마스킹, Minify, 압축 필터가 각자 응답을 버퍼링하지 않고 하나의 출력 경로를 공유하도록 한다.
+ * 가장 바깥쪽 필터가 파이프라인을 만들고, 안쪽 필터는 자기 단계만 등록한다.
+ * 처음 출력할 때 Content-Type 에 적용할 단계를 정하며, 앞쪽의 스트림 단계(mask)는 쓰여지는 대로 바로 변환한다.
+ * 문자열 단계(minify)가 남아 있으면 응답을 풀에서 빌린 버퍼 하나에 모았다가 체인이 끝난 뒤 한번 디코딩하여 적용하고 한번 인코딩한다.
+ * 압축이 등록되어 있으면 항상 마지막에 압축한다.
+ */
+final class ResponsePipeline {
+
+	/**
+	 * 요청 속성 이름
+	 */
+	private static final String ATTRIBUTE = ResponsePipeline.class.getName();
+
+	/**
+	 * 버퍼 초기 크기
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * 풀에 돌려줄 버퍼의 최대 크기, 이보다 커진 버퍼는 버린다.
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+
+	/**
+	 * 풀에 보관할 최대 버퍼 수
+	 */
+	private static final int MAX_POOLED_BUFFERS = 64;
+
+	/**
+	 * 버퍼 풀
+	 */
+	private static final Queue<Buffer> bufferPool = new ConcurrentLinkedQueue<Buffer>();
+
+	/**
+	 * 버퍼 풀 크기
+	 */
+	private static final AtomicInteger bufferPoolSize = new AtomicInteger();
+
+	/**
+	 * 요청 객체
+	 */
+	private final ServletRequest request;
+
+	/**
+	 * 원래 응답 객체
+	 */
+	private final HttpServletResponse response;
+
+	/**
+	 * 응답 래퍼
+	 */
+	private final MyResponseWrapper wrapper;
+
+	/**
+	 * 변환 단계 목록 (순서대로 정렬)
+	 */
+	private final List<ResponseStage> stageList = new ArrayList<ResponseStage>(2);
+
+	/**
+	 * 버퍼에 모은 뒤 적용할 문자열 단계 목록
+	 */
+	private final List<ResponseStage> textStageList = new ArrayList<ResponseStage>(2);
+
+	/**
+	 * 압축 필터, 압축하지 않으면 null
+	 */
+	private GZIPFilter compressor = null;
+
+	/**
+	 * 압축 인코딩
+	 */
+	private String encoding = null;
+
+	/**
+	 * 문자열 단계를 위해 응답을 모으는 버퍼, 모으지 않으면 null
+	 */
+	private Buffer buffer = null;
+
+	/**
+	 * 스트림으로 압축하는 응답 래퍼, 압축하지 않거나 버퍼에 모으면 null
+	 */
+	private GZIPFilter.MyResponseWrapper compressing = null;
+
+	/**
+	 * 스트림 단계의 마지막 스트림
+	 */
+	private SinkOutputStream sink = null;
+
+	/**
+	 * 출력 스트림 (스트림 단계를 거쳐 버퍼, 압축 스트림 또는 원래 응답으로 이어진다)
+	 */
+	private OutputStream out = null;
+
+	/**
+	 * 적용할 단계가 없어 본문을 그대로 내보낼 때 Content-Length 를 전달할 응답 (원래 응답 또는 압축 응답), 그 외에는 null
+	 */
+	private HttpServletResponse passThrough = null;
+
+	/**
+	 * 생성자
+	 */
+	private ResponsePipeline(ServletRequest request, HttpServletResponse response) {
+		this.request = request;
+		this.response = response;
+		this.wrapper = new MyResponseWrapper(response);
+	}
+
+	/**
+	 * 변환 단계를 파이프라인으로 실행한다.
+	 * 요청에 이미 파이프라인이 있으면 단계만 등록하고, 없으면 파이프라인을 만들어 체인이 끝난 뒤 출력을 마무리한다.
+	 * @param request 요청 객체
+	 * @param response 응답 객체
+	 * @param filterChain 필터 체인
+	 * @param stage 변환 단계
+	 */
+	static void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain, ResponseStage stage) throws IOException, ServletException {
+		ResponsePipeline pipeline = get(request);
+		if (pipeline != null) {
+			pipeline.addStage(stage);
+			filterChain.doFilter(request, response);
+			return;
+		}
+		pipeline = new ResponsePipeline(request, (HttpServletResponse) response);
+		request.setAttribute(ATTRIBUTE, pipeline);
+		try {
+			pipeline.addStage(stage);
+			filterChain.doFilter(request, pipeline.wrapper);
+			pipeline.finish();
+		} finally {
+			pipeline.release();
+		}
+	}
+
+	/**
+	 * 요청에 연결된 파이프라인을 리턴한다.
+	 * @param request 요청 객체
+	 * @return 파이프라인, 없으면 null
+	 */
+	static ResponsePipeline get(ServletRequest request) {
+		return (ResponsePipeline) request.getAttribute(ATTRIBUTE);
+	}
+
+	/**
+	 * 변환 단계를 등록한다. 같은 단계는 한번만 등록된다.
+	 * @param stage 변환 단계
+	 */
+	void addStage(ResponseStage stage) {
+		if (stageList.contains(stage)) {
+			return;
+		}
+		int index = stageList.size();
+		while (index > 0 && stageList.get(index - 1).getOrder() > stage.getOrder()) {
+			index--;
+		}
+		stageList.add(index, stage);
+	}
+
+	/**
+	 * 마지막 단계로 압축을 등록한다.
+	 * @param compressor 압축 필터
+	 * @param encoding 압축 인코딩, 압축하지 않으면 null
+	 */
+	void setCompression(GZIPFilter compressor, String encoding) {
+		this.compressor = compressor;
+		this.encoding = encoding;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	/**
+	 * 처음 출력할 때 Content-Type 에 적용할 단계를 정하고 출력 스트림을 만든다.
+	 * 문자열 단계가 하나라도 있으면 그 이후 단계는 모두 버퍼에 모은 뒤 적용한다.
+	 */
+	private OutputStream open() throws IOException {
+		if (out != null) {
+			return out;
+		}
+		String contentType = nullToBlankString(wrapper.getContentType());
+		String charset = wrapper.getCharacterEncoding();
+		List<StreamingResponseStage> streamStageList = new ArrayList<StreamingResponseStage>(stageList.size());
+		for (ResponseStage stage : stageList) {
+			if (!stage.isApplicable(contentType)) {
+				continue;
+			}
+			if (textStageList.isEmpty() && stage instanceof StreamingResponseStage && ((StreamingResponseStage) stage).isStreamable(charset)) {
+				streamStageList.add((StreamingResponseStage) stage);
+			} else {
+				textStageList.add(stage);
+			}
+		}
+		OutputStream target;
+		if (!textStageList.isEmpty()) {
+			buffer = borrow();
+			target = buffer;
+		} else if (compressor != null) {
+			compressing = compressor.getCompressingResponse(response, encoding);
+			target = compressing.getOutputStream();
+		} else {
+			target = response.getOutputStream();
+		}
+		if (textStageList.isEmpty() && streamStageList.isEmpty()) {
+			// 본문을 바꾸지 않으므로 체인이 설정한 Content-Length 를 그대로 전달한다.
+			passThrough = (compressing != null) ? compressing : response;
+			if (wrapper.contentLength >= 0) {
+				passThrough.setContentLength(wrapper.contentLength);
+			}
+		}
+		sink = new SinkOutputStream(target);
+		out = sink;
+		for (int i = streamStageList.size() - 1; i >= 0; i--) {
+			out = streamStageList.get(i).wrap(out);
+		}
+		return out;
+	}
+
+	/**
+	 * 남은 데이터를 내보내고, 문자열 단계가 있으면 모은 본문에 적용하여 원래 응답으로 내보낸다.
+	 */
+	private void finish() throws IOException {
+		if (sink != null) {
+			sink.finishing = true;
+		}
+		wrapper.flushWriter();
+		if (out == null) {
+			forwardContentLength();
+			return;
+		}
+		out.close();
+		if (compressing != null) {
+			compressing.finish();
+			return;
+		}
+		if (buffer == null) {
+			return;
+		}
+		byte[] bytes = buffer.getBuffer();
+		int len = buffer.size();
+		if (len > 0) {
+			String charset = wrapper.getCharacterEncoding();
+			String content = buffer.decode(charset);
+			for (ResponseStage stage : textStageList) {
+				content = stage.transform(content);
+			}
+			bytes = content.getBytes(charset);
+			len = bytes.length;
+		}
+		if (compressor != null) {
+			compressor.compress(response, encoding, bytes, 0, len);
+			return;
+		}
+		if (len > 0) {
+			response.setContentLength(len);
+			ServletOutputStream stream = response.getOutputStream();
+			stream.write(bytes, 0, len);
+			stream.flush();
+		}
+	}
+
+	/**
+	 * 본문을 쓰지 않은 응답(HEAD 요청, 빈 본문)은 적용할 단계가 없으면 체인이 설정한 Content-Length 를 그대로 전달한다.
+	 * 압축 필터도 출력이 없으면 Content-Length 를 그대로 전달한다.
+	 */
+	private void forwardContentLength() {
+		if (wrapper.contentLength < 0) {
+			return;
+		}
+		String contentType = nullToBlankString(wrapper.getContentType());
+		for (ResponseStage stage : stageList) {
+			if (stage.isApplicable(contentType)) {
+				return;
+			}
+		}
+		response.setContentLength(wrapper.contentLength);
+	}
+
+	/**
+	 * 요청에서 파이프라인을 떼어내고 압축기를 정리한 뒤 버퍼를 풀에 돌려준다.
+	 */
+	private void release() {
+		request.removeAttribute(ATTRIBUTE);
+		wrapper.close();
+		if (compressing != null) {
+			compressing.abort();
+		}
+		if (buffer != null) {
+			giveBack(buffer);
+			buffer = null;
+		}
+	}
+
+	/**
+	 * 풀에서 버퍼를 빌린다. 응답 본문을 모아야 하는 다른 필터(ETagFilter)도 같은 풀을 사용한다.
+	 */
+	static Buffer borrow() {
+		Buffer buffer = bufferPool.poll();
+		if (buffer == null) {
+			return new Buffer();
+		}
+		bufferPoolSize.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * 버퍼를 풀에 돌려준다.
+	 */
+	static void giveBack(Buffer buffer) {
+		if (buffer.capacity() > MAX_POOLED_BUFFER_SIZE) {
+			return;
+		}
+		if (bufferPoolSize.incrementAndGet() > MAX_POOLED_BUFFERS) {
+			bufferPoolSize.decrementAndGet();
+			return;
+		}
+		buffer.reset();
+		bufferPool.offer(buffer);
+	}
+
+	private static String nullToBlankString(String str) {
+		String rval = "";
+		if (str == null) {
+			rval = "";
+		} else {
+			rval = str;
+		}
+		return rval;
+	}
+
+	/**
+	 * 복사 없이 내용을 읽을 수 있는 바이트 버퍼
+	 */
+	static final class Buffer extends ByteArrayOutputStream {
+
+		Buffer() {
+			super(BUFFER_SIZE);
+		}
+
+		byte[] getBuffer() {
+			return buf;
+		}
+
+		int capacity() {
+			return buf.length;
+		}
+
+		String decode(String charset) throws IOException {
+			return new String(buf, 0, count, charset);
+		}
+	}
+
+	/**
+	 * 스트림 단계의 마지막에 붙어 close() 가 버퍼, 압축 스트림, 원래 응답 스트림을 닫지 않도록 하는 스트림
+	 * 출력을 마무리하는 중에는 flush() 를 전달하지 않아 작은 응답이 압축되기 시작하지 않도록 한다.
+	 */
+	static final class SinkOutputStream extends OutputStream {
+		private final OutputStream out;
+		private boolean finishing = false;
+
+		SinkOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (!finishing) {
+				out.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+	class MyResponseWrapper extends HttpServletResponseWrapper {
+		private MyOutputStream stream;
+		private PrintWriter writer;
+		private int contentLength = -1;
+
+		public MyResponseWrapper(HttpServletResponse res) {
+			super(res);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (writer != null) {
+				throw new IllegalStateException("getWriter() has already been called for this response");
+			}
+			if (stream == null) {
+				stream = new MyOutputStream(open());
+			}
+			return stream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				if (stream != null) {
+					throw new IllegalStateException("getOutputStream() has already been called for this response");
+				}
+				writer = new PrintWriter(new OutputStreamWriter(open(), getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		/**
+		 * Content-Length 를 기억해두고, 본문을 그대로 내보낼 때만 전달한다.
+		 */
+		@Override
+		public void setContentLength(int len) {
+			contentLength = len;
+			if (passThrough != null) {
+				passThrough.setContentLength(len);
+			}
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				setContentLength(Integer.parseInt(value.trim()));
+			} else {
+				super.setHeader(name, value);
+			}
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				setContentLength(Integer.parseInt(value.trim()));
+			} else {
+				super.addHeader(name, value);
+			}
+		}
+
+		@Override
+		public void setIntHeader(String name, int value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				setContentLength(value);
+			} else {
+				super.setIntHeader(name, value);
+			}
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			flushWriter();
+			if (out != null && buffer == null) {
+				out.flush();
+				super.flushBuffer();
+			}
+		}
+
+		@Override
+		public void resetBuffer() {
+			flushWriter();
+			if (buffer != null) {
+				buffer.reset();
+			} else {
+				super.resetBuffer();
+			}
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			contentLength = -1;
+			flushWriter();
+			if (buffer != null) {
+				buffer.reset();
+			}
+		}
+
+		/**
+		 * Writer 에 남은 문자를 스트림으로 내보낸다.
+		 */
+		public void flushWriter() {
+			if (writer != null) {
+				writer.flush();
+			}
+		}
+
+		public void close() {
+			writer = null;
+			stream = null;
+		}
+	}
+
+	class MyOutputStream extends ServletOutputStream {
+		private final OutputStream out;
+
+		public MyOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			out.write(c);
+		}
+
+		@Override
+		public void write(byte[] b) throws IOException {
+			out.write(b, 0, b.length);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+	}
+}
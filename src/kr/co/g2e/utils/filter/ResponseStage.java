@@ -0,0 +1,39 @@
+package kr.co.g2e.utils.filter;
+
+/**
+ * 응답 파이프라인의 변환 단계
+ * 파이프라인이 응답 본문을 한번만 디코딩하여 순서(order)가 작은 단계부터 차례로 적용한 뒤 한번만 인코딩한다.
+ * 쓰여지는 바이트를 바로 변환할 수 있는 단계는 StreamingResponseStage 를 구현한다.
+ */
+interface ResponseStage {
+
+	/**
+	 * 마스킹 단계 순서
+	 */
+	int ORDER_MASK = 100;
+
+	/**
+	 * Minify 단계 순서
+	 */
+	int ORDER_MINIFY = 200;
+
+	/**
+	 * 적용 순서를 리턴한다.
+	 * @return 적용 순서
+	 */
+	int getOrder();
+
+	/**
+	 * 변환을 적용할 Content-Type 인지 판별한다.
+	 * @param contentType Content-Type (없으면 빈 문자열)
+	 * @return 적용하면 true
+	 */
+	boolean isApplicable(String contentType);
+
+	/**
+	 * 응답 본문을 변환한다.
+	 * @param content 응답 본문
+	 * @return 변환된 응답 본문
+	 */
+	String transform(String content);
+}
@@ -0,0 +1,312 @@
+package kr.co.g2e.utils.filter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 기준 시간을 넘긴 요청 스레드의 스택을 주기적으로 샘플링하여 URI 별 collapsed stack 으로 모으는 프로파일러
+ * 요청 스레드는 시작과 종료만 등록하고, 샘플링은 백그라운드 스레드가 ThreadMXBean 으로 느린 요청만 모아서 한번에 수행한다.
+ * 필터마다 JMX(kr.co.g2e.utils.filter:type=SlowRequestProfiler,name=필터이름)로 조회할 수 있다.
+ */
+public final class SlowRequestProfiler implements SlowRequestProfilerMBean {
+
+	/**
+	 * 로거객체 정의
+	 */
+	private static final Log logger = LogFactory.getLog(SlowRequestProfiler.class);
+
+	/**
+	 * 최대 URI 수 또는 URI 별 최대 스택 수를 넘은 샘플을 모아서 기록하는 이름
+	 */
+	public static final String OTHER = "(other)";
+
+	/**
+	 * maxDepth 에서 잘려 필터 프레임까지 닿지 못한 스택의 맨 앞에 붙이는 프레임 이름
+	 */
+	public static final String TRUNCATED = "(truncated)";
+
+	/**
+	 * 진행 중인 요청
+	 */
+	private final ConcurrentMap<Thread, Trace> inFlightMap = new ConcurrentHashMap<Thread, Trace>();
+
+	/**
+	 * URI 별 collapsed stack 과 샘플 수
+	 */
+	private final ConcurrentMap<String, ConcurrentMap<String, AtomicLong>> stackMap = new ConcurrentHashMap<String, ConcurrentMap<String, AtomicLong>>();
+
+	private final LongAdder slowRequestCount = new LongAdder();
+	private final AtomicLong sampleCount = new AtomicLong();
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	private final long thresholdNanos;
+	private final long intervalMillis;
+	private final int maxDepth;
+	private final int maxUris;
+	private final int maxStacks;
+	private ScheduledExecutorService sampler = null;
+	private ObjectName objectName = null;
+
+	SlowRequestProfiler(long thresholdMillis, long intervalMillis, int maxDepth, int maxUris, int maxStacks) {
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+		this.intervalMillis = intervalMillis;
+		this.maxDepth = maxDepth;
+		this.maxUris = maxUris;
+		this.maxStacks = maxStacks;
+	}
+
+	/**
+	 * 샘플링 스레드를 시작하고 JMX 서버에 등록한다.
+	 * @param name 필터 이름
+	 */
+	void start(String name) {
+		sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "slow-request-profiler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		sampler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample();
+				} catch (Throwable e) {
+					logger.error("느린 요청 샘플링 실패", e);
+				}
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("kr.co.g2e.utils.filter:type=SlowRequestProfiler,name=" + ObjectName.quote(name));
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch (Throwable e) {
+			logger.warn("느린 요청 프로파일러 JMX 등록 실패", e);
+		}
+	}
+
+	/**
+	 * 샘플링 스레드를 멈추고 JMX 서버에서 등록을 해제한다.
+	 */
+	void stop() {
+		if (sampler != null) {
+			sampler.shutdownNow();
+			sampler = null;
+		}
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (Throwable e) {
+				logger.warn("느린 요청 프로파일러 JMX 해제 실패", e);
+			}
+			objectName = null;
+		}
+	}
+
+	/**
+	 * 현재 스레드에서 요청이 시작되었음을 등록한다.
+	 * @param request 요청 객체
+	 * @return 요청 추적 객체
+	 */
+	Trace begin(HttpServletRequest request) {
+		Thread thread = Thread.currentThread();
+		Trace trace = new Trace(thread, request.getMethod(), request.getRequestURI(), System.nanoTime());
+		inFlightMap.put(thread, trace);
+		return trace;
+	}
+
+	/**
+	 * 요청이 끝났음을 등록한다.
+	 * @param trace 요청 추적 객체
+	 */
+	void end(Trace trace) {
+		inFlightMap.remove(trace.thread, trace);
+		if (System.nanoTime() - trace.start >= thresholdNanos) {
+			slowRequestCount.increment();
+		}
+	}
+
+	@Override
+	public long getThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+	}
+
+	@Override
+	public long getSlowRequestCount() {
+		return slowRequestCount.sum();
+	}
+
+	@Override
+	public long getSampleCount() {
+		return sampleCount.get();
+	}
+
+	@Override
+	public int getUriCount() {
+		return stackMap.size();
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder buf = new StringBuilder();
+		for (Map.Entry<String, ConcurrentMap<String, AtomicLong>> entry : stackMap.entrySet()) {
+			append(buf, entry.getKey().replace(';', '_') + ";", entry.getValue());
+		}
+		return buf.toString();
+	}
+
+	@Override
+	public String dumpUri(String uri) {
+		ConcurrentMap<String, AtomicLong> stacks = stackMap.get(uri);
+		if (stacks == null) {
+			return "";
+		}
+		StringBuilder buf = new StringBuilder();
+		append(buf, "", stacks);
+		return buf.toString();
+	}
+
+	@Override
+	public void reset() {
+		stackMap.clear();
+		slowRequestCount.reset();
+		sampleCount.set(0);
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 기준 시간을 넘긴 요청 스레드의 스택을 한번에 얻어 기록한다. 샘플링 스레드에서만 호출된다.
+	 */
+	private void sample() {
+		long now = System.nanoTime();
+		List<Trace> traces = new ArrayList<Trace>();
+		for (Trace trace : inFlightMap.values()) {
+			if (now - trace.start >= thresholdNanos) {
+				traces.add(trace);
+			}
+		}
+		if (traces.isEmpty()) {
+			return;
+		}
+		long[] ids = new long[traces.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = traces.get(i).thread.getId();
+		}
+		ThreadInfo[] infos = threadMXBean.getThreadInfo(ids, maxDepth);
+		for (int i = 0; i < infos.length; i++) {
+			Trace trace = traces.get(i);
+			// 스택을 얻는 사이에 요청이 끝났으면 다른 요청의 스택일 수 있으므로 버린다.
+			if (infos[i] == null || inFlightMap.get(trace.thread) != trace) {
+				continue;
+			}
+			record(trace.method + " " + trace.uri, infos[i].getStackTrace());
+		}
+	}
+
+	/**
+	 * 스택을 collapsed stack 형식(최상위 프레임부터 ; 로 연결)으로 변환하여 샘플 수를 더한다.
+	 * 필터의 doFilter 보다 바깥쪽(컨테이너) 프레임은 제외한다.
+	 * 스택이 maxDepth 에서 잘려 필터 프레임이 없으면 맨 앞에 TRUNCATED 프레임을 붙여, 잘린 스택이 서로 다른 루트로 흩어지지 않게 한다.
+	 */
+	private void record(String uri, StackTraceElement[] frames) {
+		if (frames.length == 0) {
+			return;
+		}
+		int root = -1;
+		for (int i = 0; i < frames.length; i++) {
+			if (SlowRequestProfilingFilter.class.getName().equals(frames[i].getClassName()) && "doFilter".equals(frames[i].getMethodName())) {
+				root = i;
+				break;
+			}
+		}
+		StringBuilder buf = new StringBuilder();
+		if (root < 0) {
+			root = frames.length - 1;
+			if (frames.length >= maxDepth) {
+				buf.append(TRUNCATED).append(';');
+			}
+		}
+		for (int i = root; i >= 0; i--) {
+			if (i < root) {
+				buf.append(';');
+			}
+			buf.append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+		}
+		ConcurrentMap<String, AtomicLong> stacks = stackMap.get(uri);
+		if (stacks == null) {
+			if (stackMap.size() >= maxUris) {
+				uri = OTHER;
+			}
+			stacks = stackMap.get(uri);
+			if (stacks == null) {
+				stacks = new ConcurrentHashMap<String, AtomicLong>();
+				stackMap.put(uri, stacks);
+			}
+		}
+		String stack = buf.toString();
+		AtomicLong count = stacks.get(stack);
+		if (count == null) {
+			if (stacks.size() >= maxStacks) {
+				stack = OTHER;
+				count = stacks.get(stack);
+			}
+			if (count == null) {
+				count = new AtomicLong();
+				stacks.put(stack, count);
+			}
+		}
+		count.incrementAndGet();
+		sampleCount.incrementAndGet();
+	}
+
+	/**
+	 * collapsed stack 을 한줄씩 붙인다.
+	 */
+	private void append(StringBuilder buf, String prefix, Map<String, AtomicLong> stacks) {
+		for (Map.Entry<String, AtomicLong> entry : stacks.entrySet()) {
+			buf.append(prefix).append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+		}
+	}
+
+	/**
+	 * 진행 중인 요청
+	 */
+	static final class Trace {
+		private final Thread thread;
+		private final String method;
+		private final String uri;
+		private final long start;
+
+		private Trace(Thread thread, String method, String uri, long start) {
+			this.thread = thread;
+			this.method = method;
+			this.uri = uri;
+			this.start = start;
+		}
+	}
+}
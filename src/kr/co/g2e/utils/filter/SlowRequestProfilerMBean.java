@@ -0,0 +1,43 @@
+package kr.co.g2e.utils.filter;
+
+/**
+ * 느린 요청 프로파일러를 JMX 로 노출하기 위한 MBean 인터페이스
+ */
+public interface SlowRequestProfilerMBean {
+
+	/**
+	 * 샘플링을 시작하는 요청 수행시간 (밀리초)
+	 */
+	long getThresholdMillis();
+
+	/**
+	 * 기준 시간을 넘긴 요청 건수
+	 */
+	long getSlowRequestCount();
+
+	/**
+	 * 수집한 스택 샘플 수
+	 */
+	long getSampleCount();
+
+	/**
+	 * 샘플을 수집한 URI 수
+	 */
+	int getUriCount();
+
+	/**
+	 * 모든 URI 의 샘플을 Flame Graph 용 collapsed stack 형식으로 리턴한다. (URI 가 최상위 프레임)
+	 */
+	String dump();
+
+	/**
+	 * URI 의 샘플을 Flame Graph 용 collapsed stack 형식으로 리턴한다.
+	 * @param uri "메소드 URI" 형식 (ex: GET /index.do)
+	 */
+	String dumpUri(String uri);
+
+	/**
+	 * 수집한 샘플을 모두 지운다.
+	 */
+	void reset();
+}
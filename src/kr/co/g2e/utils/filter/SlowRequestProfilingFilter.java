@@ -0,0 +1,69 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 느린 요청의 스택을 샘플링하는 필터
+ * 요청이 threshold(밀리초, 기본 1000)를 넘기면 sampleInterval(밀리초, 기본 20)마다 요청 스레드의 스택을 ThreadMXBean 으로 수집하여 URI 별 collapsed stack 으로 모은다.
+ * 수집한 스택은 JMX(kr.co.g2e.utils.filter:type=SlowRequestProfiler,name=필터이름)의 dump() 로 얻어 flamegraph.pl 등으로 그릴 수 있다.
+ * (maxDepth: 스택 최대 깊이, 기본 256 / maxUris: 최대 URI 수, 기본 100 / maxStacks: URI 별 최대 스택 수, 기본 1000)
+ * ThreadMXBean 은 스택의 위쪽(최근 호출)부터 maxDepth 개만 돌려주므로, 필터 프레임까지 닿지 못한 스택은 (truncated) 프레임 아래에 모인다.
+ * 프레임워크 호출이 깊어 (truncated) 샘플이 많으면 maxDepth 를 늘린다.
+ */
+public class SlowRequestProfilingFilter implements Filter {
+	private SlowRequestProfiler profiler = null;
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+		SlowRequestProfiler.Trace trace = profiler.begin((HttpServletRequest) request);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			profiler.end(trace);
+		}
+	}
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+		long threshold = getLong(filterConfig, "threshold", 1000);
+		long sampleInterval = getLong(filterConfig, "sampleInterval", 20);
+		int maxDepth = (int) getLong(filterConfig, "maxDepth", 256);
+		int maxUris = (int) getLong(filterConfig, "maxUris", 100);
+		int maxStacks = (int) getLong(filterConfig, "maxStacks", 1000);
+		this.profiler = new SlowRequestProfiler(threshold, sampleInterval, maxDepth, maxUris, maxStacks);
+		this.profiler.start(filterConfig.getFilterName());
+	}
+
+	@Override
+	public void destroy() {
+		if (profiler != null) {
+			profiler.stop();
+		}
+	}
+
+	/**
+	 * 프로파일러 객체를 리턴한다.
+	 * @return 프로파일러 객체
+	 */
+	public SlowRequestProfiler getProfiler() {
+		return profiler;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	private long getLong(FilterConfig filterConfig, String name, long defaultValue) {
+		String value = filterConfig.getInitParameter(name);
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		return Long.parseLong(value.trim());
+	}
+}
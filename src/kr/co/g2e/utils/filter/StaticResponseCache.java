@@ -0,0 +1,599 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * 정적 리소스(HTML, JavaScript, CSS 등) 응답 캐시
+ * 요청 URI 별로 응답 본문과 ETag 를 보관하고, 압축된 변형(gzip, deflate)은 처음 요청될 때 만들어 함께 보관한다.
+ * 전체 크기가 최대 크기를 넘으면 가장 오래 사용하지 않은 항목부터 버린다.
+ * 컨트롤러나 JSP 가 만든 응답이 다른 사용자에게 전달되지 않도록 원본 파일이 있는 요청만 캐시하고,
+ * Authorization 헤더가 있는 요청과 Set-Cookie 또는 Cache-Control(private, no-store, no-cache)이 붙은 응답은 캐시하지 않는다.
+ * 원본 파일의 수정 시각이 바뀌거나 유효시간이 지나면 항목을 버린다.
+ * 필터 초기화 파라미터
+ * cacheSize : 캐시 최대 크기 MB (기본 0, 0 이면 사용하지 않음)
+ * cacheEntrySize : 항목 하나의 최대 크기 KB (기본 1024)
+ * cacheSeconds : 항목 유효시간 초 (기본 3600)
+ * cacheExtensions : 캐시할 요청의 확장자 목록 (기본 html,htm,js,css,svg,xml,txt)
+ */
+final class StaticResponseCache {
+
+	/**
+	 * 항목 목록 (접근 순서)
+	 */
+	private final LinkedHashMap<String, Entry> entryMap = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+
+	/**
+	 * 서블릿 컨텍스트
+	 */
+	private final ServletContext context;
+
+	/**
+	 * 최대 크기
+	 */
+	private final long maxSize;
+
+	/**
+	 * 항목 하나의 최대 크기
+	 */
+	private final int maxEntrySize;
+
+	/**
+	 * 항목 유효시간 (ms)
+	 */
+	private final long ttlMillis;
+
+	/**
+	 * 캐시할 요청의 확장자 목록
+	 */
+	private final String[] extensions;
+
+	/**
+	 * 현재 크기
+	 */
+	private long size = 0;
+
+	/**
+	 * 생성자
+	 */
+	private StaticResponseCache(ServletContext context, long maxSize, int maxEntrySize, long ttlMillis, String[] extensions) {
+		this.context = context;
+		this.maxSize = maxSize;
+		this.maxEntrySize = maxEntrySize;
+		this.ttlMillis = ttlMillis;
+		this.extensions = extensions;
+	}
+
+	/**
+	 * 필터 초기화 파라미터로 캐시를 생성한다.
+	 * @param filterConfig 필터 설정
+	 * @return 캐시 객체, 사용하지 않으면 null
+	 */
+	static StaticResponseCache create(FilterConfig filterConfig) {
+		String cacheSize = filterConfig.getInitParameter("cacheSize");
+		if (cacheSize == null || Long.parseLong(cacheSize.trim()) <= 0) {
+			return null;
+		}
+		int maxEntrySize = 1024 * 1024;
+		String cacheEntrySize = filterConfig.getInitParameter("cacheEntrySize");
+		if (cacheEntrySize != null) {
+			maxEntrySize = Integer.parseInt(cacheEntrySize.trim()) * 1024;
+		}
+		long ttlMillis = 3600 * 1000L;
+		String cacheSeconds = filterConfig.getInitParameter("cacheSeconds");
+		if (cacheSeconds != null) {
+			ttlMillis = Long.parseLong(cacheSeconds.trim()) * 1000L;
+		}
+		String[] extensions = { "html", "htm", "js", "css", "svg", "xml", "txt" };
+		String cacheExtensions = filterConfig.getInitParameter("cacheExtensions");
+		if (cacheExtensions != null) {
+			extensions = cacheExtensions.trim().toLowerCase().split("\\s*,\\s*");
+		}
+		return new StaticResponseCache(filterConfig.getServletContext(), Long.parseLong(cacheSize.trim()) * 1024 * 1024, maxEntrySize, ttlMillis, extensions);
+	}
+
+	/**
+	 * 캐시할 수 있는 요청인지 판별한다. GET, HEAD 요청 중 확장자가 목록에 있고 원본 파일이 있는 요청만 캐시한다.
+	 * Authorization 헤더가 있는 요청은 캐시하지 않는다.
+	 * @param request 요청 객체
+	 * @return 캐시할 수 있으면 true
+	 */
+	boolean isCacheable(HttpServletRequest request) {
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method) || request.getHeader("Authorization") != null) {
+			return false;
+		}
+		String uri = request.getRequestURI();
+		int dot = uri.lastIndexOf('.');
+		if (dot < 0 || dot < uri.lastIndexOf('/')) {
+			return false;
+		}
+		String extension = uri.substring(dot + 1).toLowerCase();
+		for (String item : extensions) {
+			if (item.equals(extension)) {
+				return getLastModified(request) != 0;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 요청에 해당하는 유효한 항목을 리턴한다.
+	 * @param request 요청 객체
+	 * @return 항목, 없거나 만료되었으면 null
+	 */
+	Entry get(HttpServletRequest request) {
+		String key = getKey(request);
+		long lastModified = getLastModified(request);
+		synchronized (this) {
+			Entry entry = entryMap.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.lastModified != lastModified || System.currentTimeMillis() - entry.created > ttlMillis) {
+				remove(key);
+				return null;
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * 캡처한 응답을 캐시에 저장한다.
+	 * 정상 응답(200)이 아니거나, 이미 인코딩되었거나, 텍스트 응답이 아니거나, 최대 크기를 넘거나, 사용자별 응답이면 저장하지 않는다.
+	 * @param request 요청 객체
+	 * @param wrapper 응답을 캡처한 래퍼
+	 * @param body 저장할 응답 본문
+	 * @return 저장된 항목, 저장하지 않으면 null
+	 */
+	Entry put(HttpServletRequest request, CaptureResponseWrapper wrapper, byte[] body) {
+		String contentType = wrapper.getContentType();
+		if (wrapper.status != HttpServletResponse.SC_OK || wrapper.privateResponse || wrapper.containsHeader("Content-Encoding") || contentType == null || !isTextualContentType(contentType) || body.length > maxEntrySize) {
+			return null;
+		}
+		String key = getKey(request);
+		Entry entry = new Entry(key, contentType, wrapper.headerMap, body, getLastModified(request));
+		synchronized (this) {
+			remove(key);
+			entryMap.put(key, entry);
+			size += body.length;
+			evict();
+		}
+		return entry;
+	}
+
+	/**
+	 * 캐시된 항목으로 응답한다. If-None-Match 가 ETag 와 일치하면 본문 없이 304 로 응답한다.
+	 * @param request 요청 객체
+	 * @param response 응답 객체
+	 * @param entry 항목
+	 * @param encoding 압축 인코딩 (gzip, deflate), 압축하지 않으면 null
+	 * @param level 압축 레벨
+	 */
+	void serve(HttpServletRequest request, HttpServletResponse response, Entry entry, String encoding, int level) throws IOException {
+		response.setContentType(entry.contentType);
+		for (Map.Entry<String, String> header : entry.headerMap.entrySet()) {
+			response.setHeader(header.getKey(), header.getValue());
+		}
+		if (encoding != null) {
+			response.setHeader("Vary", "Accept-Encoding");
+		}
+		response.setHeader("ETag", entry.getETag(encoding));
+		if (matches(request.getHeader("If-None-Match"), entry.etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		byte[] body = entry.body;
+		if (encoding != null) {
+			body = getVariant(entry, encoding, level);
+			response.setHeader("Content-Encoding", encoding);
+		}
+		response.setContentLength(body.length);
+		if (!"HEAD".equals(request.getMethod())) {
+			ServletOutputStream out = response.getOutputStream();
+			out.write(body);
+			out.flush();
+		}
+	}
+
+	/**
+	 * 텍스트 응답인지 판별한다.
+	 */
+	static boolean isTextualContentType(String contentType) {
+		return contentType.contains("text") || contentType.contains("json") || contentType.contains("xml") || contentType.contains("javascript") || contentType.contains("css");
+	}
+
+	/**
+	 * 바이트 배열의 FNV-1a 64bit 해시로 ETag 를 만든다.
+	 */
+	static String computeETag(byte[] body) {
+		return computeETag(body, 0, body.length);
+	}
+
+	/**
+	 * 본문의 일부로 ETag 를 계산한다.
+	 * @param body 본문을 담은 배열
+	 * @param off 시작 위치
+	 * @param len 길이
+	 * @return 따옴표 없는 ETag
+	 */
+	static String computeETag(byte[] body, int off, int len) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = off, end = off + len; i < end; i++) {
+			hash ^= (body[i] & 0xff);
+			hash *= 0x100000001b3L;
+		}
+		return Long.toHexString(hash) + "-" + Integer.toHexString(len);
+	}
+
+	/**
+	 * If-None-Match 헤더의 ETag 목록 중 하나라도 일치하는지 판별한다.
+	 * 약한 비교를 사용하므로 W/ 접두어와 인코딩 접미어는 무시한다.
+	 * @param ifNoneMatch If-None-Match 헤더
+	 * @param etag 따옴표 없는 ETag
+	 * @return 일치하면 true
+	 */
+	static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String item : ifNoneMatch.split(",")) {
+			String tag = item.trim();
+			if ("*".equals(tag)) {
+				return true;
+			}
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.length() >= 2 && tag.charAt(0) == '"' && tag.charAt(tag.length() - 1) == '"') {
+				tag = tag.substring(1, tag.length() - 1);
+			}
+			if (tag.equals(etag) || tag.equals(etag + "-gzip") || tag.equals(etag + "-deflate")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	/**
+	 * 캐시 키를 리턴한다. 쿼리 문자열로 버전을 구분하는 경우가 있으므로 쿼리 문자열을 포함한다.
+	 */
+	private String getKey(HttpServletRequest request) {
+		String query = request.getQueryString();
+		if (query == null) {
+			return request.getRequestURI();
+		}
+		return request.getRequestURI() + "?" + query;
+	}
+
+	/**
+	 * 요청에 해당하는 파일의 수정 시각을 리턴한다. 파일을 찾을 수 없으면 0 을 리턴한다.
+	 */
+	private long getLastModified(HttpServletRequest request) {
+		if (context == null) {
+			return 0;
+		}
+		String path = request.getServletPath();
+		if (request.getPathInfo() != null) {
+			path += request.getPathInfo();
+		}
+		String realPath = context.getRealPath(path);
+		if (realPath == null) {
+			return 0;
+		}
+		File file = new File(realPath);
+		return file.isFile() ? file.lastModified() : 0;
+	}
+
+	/**
+	 * 압축된 변형을 리턴한다. 없으면 만들어서 보관한다.
+	 */
+	private byte[] getVariant(Entry entry, String encoding, int level) throws IOException {
+		byte[] variant;
+		synchronized (this) {
+			variant = entry.variantMap.get(encoding);
+		}
+		if (variant != null) {
+			return variant;
+		}
+		variant = compress(entry.body, encoding, level);
+		synchronized (this) {
+			if (!entry.variantMap.containsKey(encoding)) {
+				entry.variantMap.put(encoding, variant);
+				if (entryMap.get(entry.key) == entry) {
+					size += variant.length;
+					evict();
+				}
+			}
+		}
+		return variant;
+	}
+
+	/**
+	 * 바이트 배열을 압축한다.
+	 */
+	private static byte[] compress(byte[] body, String encoding, int level) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 3 + 64);
+		if ("gzip".equals(encoding)) {
+			GZIPFilter.LevelGZIPOutputStream gzos = new GZIPFilter.LevelGZIPOutputStream(bytes, level);
+			gzos.write(body);
+			gzos.finish();
+			gzos.getDeflater().end();
+		} else {
+			Deflater deflater = new Deflater(level);
+			DeflaterOutputStream dos = new DeflaterOutputStream(bytes, deflater);
+			dos.write(body);
+			dos.finish();
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * 항목을 제거한다.
+	 */
+	private void remove(String key) {
+		Entry entry = entryMap.remove(key);
+		if (entry != null) {
+			size -= entry.size();
+		}
+	}
+
+	/**
+	 * 최대 크기를 넘으면 가장 오래 사용하지 않은 항목부터 제거한다.
+	 */
+	private void evict() {
+		Iterator<Entry> it = entryMap.values().iterator();
+		while (size > maxSize && it.hasNext()) {
+			size -= it.next().size();
+			it.remove();
+		}
+	}
+
+	/**
+	 * 캐시 항목
+	 */
+	static final class Entry {
+		private final String key;
+		private final String contentType;
+		private final Map<String, String> headerMap;
+		private final byte[] body;
+		private final String etag;
+		private final long lastModified;
+		private final long created = System.currentTimeMillis();
+		private final Map<String, byte[]> variantMap = new HashMap<String, byte[]>();
+
+		Entry(String key, String contentType, Map<String, String> headerMap, byte[] body, long lastModified) {
+			this.key = key;
+			this.contentType = contentType;
+			this.headerMap = headerMap;
+			this.body = body;
+			this.etag = computeETag(body);
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * 인코딩별 ETag 를 리턴한다. 압축된 변형은 본문이 다르므로 인코딩을 접미어로 붙인다.
+		 */
+		String getETag(String encoding) {
+			if (encoding == null) {
+				return "\"" + etag + "\"";
+			}
+			return "\"" + etag + "-" + encoding + "\"";
+		}
+
+		/**
+		 * Content-Type 을 리턴한다.
+		 */
+		String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * 압축하지 않은 본문의 크기를 리턴한다.
+		 */
+		int length() {
+			return body.length;
+		}
+
+		private long size() {
+			long size = body.length;
+			for (byte[] variant : variantMap.values()) {
+				size += variant.length;
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * 응답 본문을 모두 모으고, 캐시된 응답에 다시 붙일 헤더를 기록하는 래퍼
+	 * 기록한 헤더 외의 헤더와 상태 코드는 원래 응답에도 그대로 반영한다.
+	 */
+	static final class CaptureResponseWrapper extends HttpServletResponseWrapper {
+		private static final String[] REPLAY_HEADERS = { "Cache-Control", "Expires", "Last-Modified", "Content-Language" };
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 * 1024);
+		private final Map<String, String> headerMap = new LinkedHashMap<String, String>();
+		private ServletOutputStream stream;
+		private PrintWriter writer;
+		private int status = HttpServletResponse.SC_OK;
+		private boolean privateResponse = false; // Set-Cookie 또는 Cache-Control(private, no-store, no-cache)이 붙은 응답
+
+		CaptureResponseWrapper(HttpServletResponse res) {
+			super(res);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (writer != null) {
+				throw new IllegalStateException("getWriter() has already been called for this response");
+			}
+			if (stream == null) {
+				stream = new ServletOutputStream() {
+					@Override
+					public void write(int c) throws IOException {
+						bytes.write(c);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						bytes.write(b, off, len);
+					}
+				};
+			}
+			return stream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				if (stream != null) {
+					throw new IllegalStateException("getOutputStream() has already been called for this response");
+				}
+				writer = new PrintWriter(new OutputStreamWriter(bytes, getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		@Override
+		public void setContentLength(int len) {
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+			super.setStatus(sc);
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public void setStatus(int sc, String sm) {
+			status = sc;
+			super.setStatus(sc, sm);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			status = sc;
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			status = sc;
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			status = HttpServletResponse.SC_FOUND;
+			super.sendRedirect(location);
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				return;
+			}
+			record(name, value);
+			super.setHeader(name, value);
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				return;
+			}
+			record(name, value);
+			super.addHeader(name, value);
+		}
+
+		@Override
+		public void addCookie(Cookie cookie) {
+			privateResponse = true;
+			super.addCookie(cookie);
+		}
+
+		@Override
+		public void setDateHeader(String name, long date) {
+			record(name, formatDate(date));
+			super.setDateHeader(name, date);
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (writer != null) {
+				writer.flush();
+			}
+		}
+
+		@Override
+		public void resetBuffer() {
+			bytes.reset();
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			bytes.reset();
+			headerMap.clear();
+			status = HttpServletResponse.SC_OK;
+			privateResponse = false;
+		}
+
+		/**
+		 * 모은 응답 본문을 리턴한다.
+		 * @return 응답 본문
+		 */
+		byte[] toByteArray() {
+			if (writer != null) {
+				writer.flush();
+			}
+			return bytes.toByteArray();
+		}
+
+		private String formatDate(long date) {
+			SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+			format.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return format.format(new Date(date));
+		}
+
+		private void record(String name, String value) {
+			if ("Set-Cookie".equalsIgnoreCase(name)) {
+				privateResponse = true;
+			} else if ("Cache-Control".equalsIgnoreCase(name) && value != null) {
+				String directives = value.toLowerCase();
+				if (directives.contains("private") || directives.contains("no-store") || directives.contains("no-cache")) {
+					privateResponse = true;
+				}
+			}
+			for (String header : REPLAY_HEADERS) {
+				if (header.equalsIgnoreCase(name)) {
+					headerMap.put(header, value);
+				}
+			}
+		}
+	}
+}
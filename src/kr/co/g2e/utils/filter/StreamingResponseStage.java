@@ -0,0 +1,26 @@
+package kr.co.g2e.utils.filter;
+
+import java.io.OutputStream;
+
+/**
+ * 쓰여지는 바이트를 바로 변환할 수 있는 응답 파이프라인의 변환 단계
+ * 앞선 단계가 모두 스트림 단계이고 isStreamable 이 true 이면 응답을 버퍼에 모으지 않고 바로 변환한다.
+ * 그렇지 않으면 ResponseStage 와 같이 모은 본문에 transform 을 적용한다.
+ */
+interface StreamingResponseStage extends ResponseStage {
+
+	/**
+	 * 쓰여지는 바이트를 바로 변환할 수 있는지 판별한다.
+	 * @param charset 응답 문자셋
+	 * @return 스트림으로 변환할 수 있으면 true
+	 */
+	boolean isStreamable(String charset);
+
+	/**
+	 * 쓰여지는 바이트를 바로 변환하는 스트림을 리턴한다. isStreamable 이 true 일 때만 호출된다.
+	 * 리턴한 스트림의 close() 는 남은 데이터를 내보내고 아래 스트림을 닫아야 한다.
+	 * @param out 변환한 바이트를 내보낼 스트림
+	 * @return 변환 스트림
+	 */
+	OutputStream wrap(OutputStream out);
+}
@@ -1,7 +1,12 @@
 package kr.co.g2e.utils.filter;
 
 import java.io.IOException;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -14,35 +19,14 @@ import javax.servlet.http.HttpServletRequestWrapper;
 
 /**
  * Anti cross-site scripting (XSS) filter
+ * Parameters are sanitized once per request and memoized; values without any of '<', ':', '(', '=' or '\0' are returned untouched.
  */
 public class XSSFilter implements Filter {
-	// Avoid anything between script tags
-	private static final Pattern scriptPattern1 = Pattern.compile("<script>(.*?)</script>", Pattern.CASE_INSENSITIVE);
+	// Length of the longest keyword ("expression(")
+	private static final int MAX_KEYWORD = 11;
 
-	// Avoid anything in a src='...' type of expression
-	private static final Pattern scriptPattern2 = Pattern.compile("src[\r\n]*=[\r\n]*\\\'(.*?)\\\'", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-	private static final Pattern scriptPattern3 = Pattern.compile("src[\r\n]*=[\r\n]*\\\"(.*?)\\\"", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-
-	// Remove any lonesome </script> tag
-	private static final Pattern scriptPattern4 = Pattern.compile("</script>", Pattern.CASE_INSENSITIVE);
-
-	// Remove any lonesome <script ...> tag
-	private static final Pattern scriptPattern5 = Pattern.compile("<script(.*?)>", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-
-	// Avoid eval(...) expressions
-	private static final Pattern scriptPattern6 = Pattern.compile("eval\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-
-	// Avoid expression(...) expressions
-	private static final Pattern scriptPattern7 = Pattern.compile("expression\\((.*?)\\)", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
-
-	// Avoid javascript:... expressions
-	private static final Pattern scriptPattern8 = Pattern.compile("javascript:", Pattern.CASE_INSENSITIVE);
-
-	// Avoid vbscript:... expressions
-	private static final Pattern scriptPattern9 = Pattern.compile("vbscript:", Pattern.CASE_INSENSITIVE);
-
-	// Avoid onload= expressions
-	private static final Pattern scriptPattern10 = Pattern.compile("onload(.*?)=", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
+	// How far back a removal may look for "src" followed by CR/LF characters
+	private static final int MAX_REWIND = 64;
 
 	@Override
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
@@ -57,50 +41,310 @@ public class XSSFilter implements Filter {
 	public void destroy() {
 	}
 
+	/**
+	 * Removes script fragments from the value in a single pass.
+	 * Text exposed by a removal is scanned again, so the result contains none of the removed fragments.
+	 * @param value value to sanitize
+	 * @return sanitized value (the same instance when nothing was removed)
+	 */
+	static String stripXSS(String value) {
+		if (value == null || !hasTrigger(value)) {
+			return value;
+		}
+		Scanner scanner = new Scanner(value);
+		scanner.run();
+		return scanner.removed ? scanner.toString() : value;
+	}
+
 	class XSSRequestWrapper extends HttpServletRequestWrapper {
+		private Map<String, String[]> parameterMap = null; // sanitized parameters, built on first access
+		private Map<String, String> headerMap = null; // sanitized headers by lower-case name
+
 		public XSSRequestWrapper(HttpServletRequest servletRequest) {
 			super(servletRequest);
 		}
 
+		@Override
+		public Map<String, String[]> getParameterMap() {
+			if (parameterMap == null) {
+				Map<?, ?> source = super.getParameterMap();
+				Map<String, String[]> sanitized = new LinkedHashMap<String, String[]>(source.size() * 4 / 3 + 1);
+				for (Map.Entry<?, ?> entry : source.entrySet()) {
+					String[] values = (String[]) entry.getValue();
+					String[] encodedValues = values;
+					for (int i = 0; i < values.length; i++) {
+						String value = stripXSS(values[i]);
+						if (value != values[i]) {
+							if (encodedValues == values) {
+								encodedValues = values.clone();
+							}
+							encodedValues[i] = value;
+						}
+					}
+					sanitized.put((String) entry.getKey(), encodedValues);
+				}
+				parameterMap = Collections.unmodifiableMap(sanitized);
+			}
+			return parameterMap;
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public Enumeration getParameterNames() {
+			return Collections.enumeration(getParameterMap().keySet());
+		}
+
 		@Override
 		public String[] getParameterValues(String parameter) {
-			String[] values = super.getParameterValues(parameter);
+			String[] values = getParameterMap().get(parameter);
 			if (values == null) {
 				return null;
 			}
-			int count = values.length;
-			String[] encodedValues = new String[count];
-			for (int i = 0; i < count; i++) {
-				encodedValues[i] = stripXSS(values[i]);
-			}
-			return encodedValues;
+			return values.clone();
 		}
 
 		@Override
 		public String getParameter(String parameter) {
-			return stripXSS(super.getParameter(parameter));
+			String[] values = getParameterMap().get(parameter);
+			if (values == null || values.length == 0) {
+				return null;
+			}
+			return values[0];
 		}
 
 		@Override
 		public String getHeader(String name) {
-			return stripXSS(super.getHeader(name));
-		}
-
-		private String stripXSS(String value) {
-			if (value != null) {
-				value = value.replaceAll("\0", ""); // Avoid null characters
-				value = scriptPattern1.matcher(value).replaceAll("");
-				value = scriptPattern2.matcher(value).replaceAll("");
-				value = scriptPattern3.matcher(value).replaceAll("");
-				value = scriptPattern4.matcher(value).replaceAll("");
-				value = scriptPattern5.matcher(value).replaceAll("");
-				value = scriptPattern6.matcher(value).replaceAll("");
-				value = scriptPattern7.matcher(value).replaceAll("");
-				value = scriptPattern8.matcher(value).replaceAll("");
-				value = scriptPattern9.matcher(value).replaceAll("");
-				value = scriptPattern10.matcher(value).replaceAll("");
+			if (name == null) {
+				return stripXSS(super.getHeader(name));
+			}
+			if (headerMap == null) {
+				headerMap = new HashMap<String, String>();
 			}
+			String key = name.toLowerCase(Locale.ENGLISH);
+			if (headerMap.containsKey(key)) {
+				return headerMap.get(key);
+			}
+			String value = stripXSS(super.getHeader(name));
+			headerMap.put(key, value);
 			return value;
 		}
 	}
-}
\ No newline at end of file
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	/**
+	 * Checks for characters every removal rule needs: '<', ':', '(', '=' and '\0'.
+	 */
+	private static boolean hasTrigger(String value) {
+		for (int i = 0, len = value.length(); i < len; i++) {
+			switch (value.charAt(i)) {
+			case '<':
+			case ':':
+			case '(':
+			case '=':
+			case '\0':
+				return true;
+			default:
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Single-pass tokenizer over a gap buffer.
+	 * Kept characters are [0, write), unread characters are [read, length); positions below are logical (gap closed).
+	 */
+	private static class Scanner {
+		private final char[] buf;
+		private final int length;
+		private int write = 0;
+		private int read = 0;
+		private boolean removed = false;
+
+		private Scanner(String value) {
+			this.buf = value.toCharArray();
+			this.length = buf.length;
+		}
+
+		private int size() {
+			return write + length - read;
+		}
+
+		private char charAt(int pos) {
+			return pos < write ? buf[pos] : buf[pos - write + read];
+		}
+
+		private void run() {
+			int pos = 0;
+			while (pos < size()) {
+				int end = match(pos);
+				if (end < 0) {
+					if (pos == write) {
+						buf[write++] = buf[read++];
+					}
+					pos++;
+					continue;
+				}
+				remove(pos, end);
+				pos = rewind(pos);
+			}
+		}
+
+		/**
+		 * Returns the end of a removable fragment starting at pos, or -1.
+		 */
+		private int match(int pos) {
+			switch (charAt(pos)) {
+			case '\0':
+				// Avoid null characters
+				return pos + 1;
+			case '<':
+				// Avoid anything between script tags
+				if (regionMatches(pos, "<script>")) {
+					int end = indexOf(pos + 8, "</script>", true);
+					if (end >= 0) {
+						return end + 9;
+					}
+				}
+				// Remove any lonesome </script> tag
+				if (regionMatches(pos, "</script>")) {
+					return pos + 9;
+				}
+				// Remove any lonesome <script ...> tag
+				if (regionMatches(pos, "<script")) {
+					return indexOf(pos + 7, '>');
+				}
+				return -1;
+			case 's':
+			case 'S':
+				// Avoid anything in a src='...' or src="..." type of expression
+				if (regionMatches(pos, "src")) {
+					int p = skipNewlines(pos + 3);
+					if (p < size() && charAt(p) == '=') {
+						p = skipNewlines(p + 1);
+						if (p < size() && (charAt(p) == '\'' || charAt(p) == '"')) {
+							return indexOf(p + 1, charAt(p));
+						}
+					}
+				}
+				return -1;
+			case 'e':
+			case 'E':
+				// Avoid eval(...) and expression(...) expressions
+				if (regionMatches(pos, "eval(")) {
+					return indexOf(pos + 5, ')');
+				}
+				if (regionMatches(pos, "expression(")) {
+					return indexOf(pos + 11, ')');
+				}
+				return -1;
+			case 'j':
+			case 'J':
+				// Avoid javascript:... expressions
+				return regionMatches(pos, "javascript:") ? pos + 11 : -1;
+			case 'v':
+			case 'V':
+				// Avoid vbscript:... expressions
+				return regionMatches(pos, "vbscript:") ? pos + 9 : -1;
+			case 'o':
+			case 'O':
+				// Avoid onload= expressions
+				if (regionMatches(pos, "onload")) {
+					return indexOf(pos + 6, '=');
+				}
+				return -1;
+			default:
+				return -1;
+			}
+		}
+
+		/**
+		 * Removes [from, to). Unread characters are dropped by moving the read pointer, so no copying happens in the common case.
+		 */
+		private void remove(int from, int to) {
+			removed = true;
+			if (to <= write) {
+				System.arraycopy(buf, to, buf, from, write - to);
+				write -= to - from;
+			} else {
+				read += to - write;
+				write = from;
+			}
+		}
+
+		/**
+		 * Steps back far enough that a keyword split by the removed fragment is found again.
+		 */
+		private int rewind(int pos) {
+			int p = pos;
+			while (p > 0 && pos - p < MAX_REWIND && (charAt(p - 1) == '\r' || charAt(p - 1) == '\n')) {
+				p--;
+			}
+			p -= MAX_KEYWORD - 1;
+			if (p < 0) {
+				p = 0;
+			}
+			// Characters before pos are already kept, so scanning resumes inside the kept region
+			return p;
+		}
+
+		private boolean regionMatches(int pos, String keyword) {
+			int len = keyword.length();
+			if (pos + len > size()) {
+				return false;
+			}
+			for (int i = 0; i < len; i++) {
+				char c = charAt(pos + i);
+				char k = keyword.charAt(i);
+				if (c != k && !(c >= 'A' && c <= 'Z' && c + ('a' - 'A') == k)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the position just after the first c at or after pos, or -1.
+		 */
+		private int indexOf(int pos, char c) {
+			for (int i = pos, size = size(); i < size; i++) {
+				if (charAt(i) == c) {
+					return i + 1;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the position of the keyword at or after pos, or -1. With singleLine the search stops at a line terminator.
+		 */
+		private int indexOf(int pos, String keyword, boolean singleLine) {
+			for (int i = pos, size = size(); i < size; i++) {
+				char c = charAt(i);
+				if (singleLine && (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')) {
+					return -1;
+				}
+				if (c == '<' && regionMatches(i, keyword)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private int skipNewlines(int pos) {
+			int p = pos;
+			while (p < size() && (charAt(p) == '\r' || charAt(p) == '\n')) {
+				p++;
+			}
+			return p;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(size());
+			sb.append(buf, 0, write);
+			sb.append(buf, read, length - read);
+			return sb.toString();
+		}
+	}
+}
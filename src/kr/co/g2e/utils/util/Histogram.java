@@ -0,0 +1,151 @@
+package kr.co.g2e.utils.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 지수 구간을 다시 8개로 나누어 기록하는 락 없는 히스토그램 (HdrHistogram 방식, 상대오차 12.5% 이내)
+ * 지연시간(마이크로초), 크기(바이트) 등 0 이상의 long 값 분포를 기록하고 백분위수를 구할 때 사용한다.
+ */
+public class Histogram {
+
+	/**
+	 * 지수 구간별 하위 구간 수 (2^3)
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * 그대로 기록하는 작은 값의 범위 (0 ~ 15)
+	 */
+	private static final int LINEAR_COUNT = SUB_BUCKET_COUNT * 2;
+
+	/**
+	 * 구간 수 (long 전체 범위)
+	 */
+	private static final int BUCKET_COUNT = LINEAR_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * 값을 기록한다.
+	 * @param value 0 이상의 값, 음수는 0으로 기록한다.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * 기록된 건수를 리턴한다.
+	 * @return 건수
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * 기록된 값의 합을 리턴한다.
+	 * @return 합
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * 기록된 최대 값을 리턴한다.
+	 * @return 최대 값
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * 기록된 값의 평균을 리턴한다.
+	 * @return 평균, 기록이 없으면 0
+	 */
+	public double getMean() {
+		long n = getCount();
+		return (n == 0) ? 0 : (double) getSum() / n;
+	}
+
+	/**
+	 * 백분위수 값을 리턴한다.
+	 * @param percentile 백분위 (0 ~ 100)
+	 * @return 백분위수가 속한 구간의 상한 값, 기록이 없으면 0
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100.0);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * 기록을 모두 지운다.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////Private 메소드
+
+	/**
+	 * 값이 속한 구간의 인덱스를 리턴한다.
+	 */
+	private static int indexOf(long value) {
+		if (value < LINEAR_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return LINEAR_COUNT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + sub;
+	}
+
+	/**
+	 * 구간에 속하는 가장 큰 값을 리턴한다.
+	 */
+	private static long upperBoundOf(int index) {
+		if (index < LINEAR_COUNT) {
+			return index;
+		}
+		int exponent = (index - LINEAR_COUNT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+		int sub = (index - LINEAR_COUNT) % SUB_BUCKET_COUNT;
+		long lower = (1L << exponent) + ((long) sub << (exponent - SUB_BUCKET_BITS));
+		return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -54,7 +54,6 @@ public class Params {
 			String key = (String) obj;
 			params.put(key, request.getParameterValues(key));
 		}
-		params.requestBody = getBody(request);
 		if (ServletFileUpload.isMultipartContent(request)) {
 			try {
 				DiskFileItemFactory factory = new DiskFileItemFactory();
@@ -87,6 +86,8 @@ public class Params {
 			} catch (Throwable e) {
 				throw new RuntimeException(e);
 			}
+		} else {
+			params.requestBody = getBody(request); // Multipart 요청의 본문은 파일업로드 파싱에서 한번만 읽는다.
 		}
 		return params;
 	}
@@ -101,6 +101,28 @@ public class RecordSet implements Iterable<RecordMap>, Serializable {
 		}
 	}
 
+	/**
+	 * 컬럼정보와 Row 목록으로 새로운 RecordSet 객체를 생성한다 (캐시 역직렬화 용도)
+	 * @param colNms 컬럼명
+	 * @param colSize 컬럼 Size
+	 * @param colSizeReal 컬럼 실제 Size
+	 * @param colScale 컬럼 Scale
+	 * @param colInfo 컬럼 타입명
+	 * @param columnsType 컬럼 타입
+	 * @param rows Row 목록
+	 */
+	public RecordSet(String[] colNms, int[] colSize, int[] colSizeReal, int[] colScale, String[] colInfo, int[] columnsType, List<RecordMap> rows) {
+		this.colNms = colNms;
+		this.colSize = colSize;
+		this.colSizeReal = colSizeReal;
+		this.colScale = colScale;
+		this.colInfo = colInfo;
+		this.columnsType = columnsType;
+		if (rows != null) {
+			this.rows.addAll(rows);
+		}
+	}
+
 	/**
 	 * 주어진 쿼리를 수행 후 컬럼명을 String[] 로 반환
 	 * @return String[]
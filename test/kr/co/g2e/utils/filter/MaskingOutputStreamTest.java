@@ -0,0 +1,111 @@
+package kr.co.g2e.utils.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * MaskingOutputStream 의 주민등록번호 마스킹이 기존 JuminMaskFilter 의 정규식 치환과 같은 결과를 내는지 검사한다.
+ * 알려진 차이
+ * 1. 기존 정규식은 (?&lt;=[^0-9]) 때문에 본문 맨 앞(offset 0)의 번호를 찾지 못했지만, 스트림은 본문 앞을 숫자가 아닌 것으로 보고 마스킹한다.
+ * 2. 구분자(공백, &amp;nbsp;)는 MaskingOutputStream.MAX_SEPARATOR 바이트까지만 허용한다.
+ */
+public class MaskingOutputStreamTest {
+
+	/**
+	 * 기존 JuminMaskFilter 의 정규식
+	 */
+	private static final Pattern JUMIN_PATTERN = Pattern.compile("(?<=[^0-9])(\\d{2}(?:0[1-9]|1[0-2])(?:0[1-9]|[12][0-9]|3[01])(?:\\s|&nbsp;)*[-|~]?(?:\\s|&nbsp;)*)[1-8]\\d{6}(?=[^0-9])?", Pattern.MULTILINE);
+
+	/**
+	 * 임의 본문을 만들 때 쓰는 조각
+	 */
+	private static final String[] TOKENS = { "900101", "991231", "001332", "850229", "1234567", "2345678", "9234567", "12", "7", "-", "~", "|", " ", "\t", "\r\n", "&nbsp;", "&nb", "주민번호", "abc", "<td>", "</td>" };
+
+	private static final MaskingOutputStream.Type[] TYPES = { MaskingOutputStream.Type.RESIDENT_REGISTRATION_NO };
+
+	@Test
+	public void chunkedWritesMatchOldPattern() throws IOException {
+		Random random = new Random(20161018L);
+		for (int n = 0; n < 5000; n++) {
+			StringBuilder sb = new StringBuilder("<p>");
+			int tokens = 1 + random.nextInt(40);
+			for (int i = 0; i < tokens; i++) {
+				sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+			}
+			String content = sb.toString();
+			assertEquals(content, oldMask(content), chunkedMask(content, random));
+		}
+	}
+
+	@Test
+	public void singleByteWritesMatchOldPattern() throws IOException {
+		String[] samples = { " 900101-1234567 ", "<td>900101 - 2345678</td>", "x900101&nbsp;~&nbsp;1234567", "a900101|1234567890", "a9001011234567", "a9013011234567", "a900101-9234567", "a1900101-1234567" };
+		for (String content : samples) {
+			byte[] bytes = content.getBytes("UTF-8");
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			MaskingOutputStream out = new MaskingOutputStream(result, TYPES);
+			for (byte b : bytes) {
+				out.write(b);
+			}
+			out.close();
+			assertEquals(content, oldMask(content), result.toString("UTF-8"));
+		}
+	}
+
+	/**
+	 * 본문 맨 앞의 번호는 기존 정규식과 달리 마스킹된다.
+	 */
+	@Test
+	public void masksNumberAtOffsetZero() {
+		String content = "900101-1234567 입니다";
+		assertEquals(content, oldMask(content));
+		assertEquals("900101-****** 입니다", MaskingOutputStream.mask(content, TYPES));
+		assertEquals(" 900101-****** 입니다", MaskingOutputStream.mask(" " + content, TYPES));
+	}
+
+	/**
+	 * MAX_SEPARATOR 보다 긴 구분자는 기존 정규식과 달리 마스킹하지 않는다.
+	 */
+	@Test
+	public void ignoresSeparatorLongerThanLimit() {
+		StringBuilder sb = new StringBuilder(" 900101");
+		for (int i = 0; i <= MaskingOutputStream.MAX_SEPARATOR; i++) {
+			sb.append(' ');
+		}
+		String content = sb.append("-1234567 ").toString();
+		assertEquals(content.replace("1234567", "******"), oldMask(content));
+		assertEquals(content, MaskingOutputStream.mask(content, TYPES));
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////// Private 메소드
+
+	private static String oldMask(String content) {
+		return JUMIN_PATTERN.matcher(content).replaceAll("$1******");
+	}
+
+	/**
+	 * 임의 크기로 나누어 쓰고, 중간중간 flush() 를 호출한다.
+	 */
+	private static String chunkedMask(String content, Random random) throws IOException {
+		byte[] bytes = content.getBytes("UTF-8");
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		MaskingOutputStream out = new MaskingOutputStream(result, TYPES);
+		int off = 0;
+		while (off < bytes.length) {
+			int len = Math.min(bytes.length - off, 1 + random.nextInt(17));
+			out.write(bytes, off, len);
+			off += len;
+			if (random.nextInt(4) == 0) {
+				out.flush();
+			}
+		}
+		out.close();
+		return result.toString("UTF-8");
+	}
+}